@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+
+/** Class: App.java
+ *
+ *  This Class - Access to the application from the benchmarks. The application lives in the default package, which code in a
+ *  named package cannot refer to, while JMH only accepts benchmarks in a named package. So the benchmarks reach the application
+ *  classes through method handles looked up here. A handle kept in a static final field is inlined by the JIT like a direct call,
+ *  so it does not show up in the numbers.
+ *  Also starts the JavaFX toolkit for the benchmarks that need it. They run headless on Monocle: see their @Fork arguments.
+ */
+final class App {
+
+	/** Code run on the JavaFX thread by onFx(). May throw whatever a method handle throws. */
+	interface FxCode<T> {
+		T call() throws Throwable;
+	}
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static boolean started;
+
+	private App() {}
+
+	/** @return the application class with the given name, e.g. "ClockPane" */
+	static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		}
+		catch(ClassNotFoundException e) {
+			throw new IllegalStateException("Not on the class path: " + name, e);
+		}
+	}
+
+	/** @return a handle on the public constructor of the given class with the given parameter types */
+	static MethodHandle constructor(String type, Class<?>... params) {
+		try {
+			return LOOKUP.findConstructor(type(type), MethodType.methodType(void.class, params));
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** @return a handle on the given instance method. Private and package-private methods are made accessible. */
+	static MethodHandle method(String type, String name, Class<?> returns, Class<?>... params) {
+		try {
+			java.lang.reflect.Method m = type(type).getDeclaredMethod(name, params);
+			m.setAccessible(true);
+			if(m.getReturnType() != returns) throw new NoSuchMethodException(name + " does not return " + returns);
+			return LOOKUP.unreflect(m);
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Start the JavaFX toolkit, once per JVM. */
+	static synchronized void startToolkit() throws InterruptedException {
+		if(started) return;
+		CountDownLatch latch = new CountDownLatch(1);
+		Platform.startup(latch::countDown);
+		latch.await();
+		Platform.setImplicitExit(false);
+		started = true;
+	}
+
+	/** Run the given code on the JavaFX thread and wait for its result. */
+	static <T> T onFx(FxCode<T> code) throws Exception {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			try {
+				result.complete(code.call());
+			}
+			catch(Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+		return result.get(30, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class: ClockPaneBenchmark.java
+ *
+ *  This Class - The clock's once-a-second tick: ClockPane.setCurrentTime() followed by the repaint that the scene runs before the
+ *  next layout pass (paintClock()). Every operation moves the time on by one second, so the hands and the digital time change each
+ *  time, as on screen. Run with -prof gc for the bytes allocated per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw", "-Djava.awt.headless=true" })
+public class ClockPaneBenchmark {
+
+	private static final MethodHandle NEW_CLOCK = App.constructor("ClockPane", ZoneId.class);
+	private static final MethodHandle SET_CURRENT_TIME = App.method("ClockPane", "setCurrentTime", void.class, long.class);
+	private static final MethodHandle REPAINT = App.method("ClockPane", "repaint", void.class);
+
+	private Object clock;
+	private long millis;
+
+	@Setup
+	public void setUp() throws Throwable {
+		App.startToolkit();
+		clock = App.onFx(() -> NEW_CLOCK.invoke(ZoneId.of("Europe/Berlin")));
+		millis = System.currentTimeMillis();
+	}
+
+	/** One tick of the clock, painted */
+	@Benchmark
+	public void tick() throws Throwable {
+		millis += 1000;
+		SET_CURRENT_TIME.invoke(clock, millis);
+		REPAINT.invoke(clock);
+	}
+
+	/** Ten changes within one pulse, e.g. several setters in a row: still one paint */
+	@Benchmark
+	public void tenChangesOnePaint() throws Throwable {
+		for(int i = 0; i < 10; i++) {
+			millis += 1000;
+			SET_CURRENT_TIME.invoke(clock, millis);
+		}
+		REPAINT.invoke(clock);
+	}
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import javafx.event.Event;
+import javafx.event.EventTarget;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class: CountdownTimerBenchmark.java
+ *
+ *  This Class - The hot paths of a countdown window, on a CountdownTimer whose service runs on a VirtualClock:
+ *  updateTimer() when nothing changed, the per-frame tick handler while running (engine.tick(), which repaints through
+ *  updateTimer()), and typing a six-digit time through the key handler, as KEY_TYPED events. Run with -prof gc for the bytes
+ *  allocated per operation.
+ *  The countdown service keeps its journal and history files in the working directory, so run it from an empty one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw", "-Djava.awt.headless=true" })
+public class CountdownTimerBenchmark {
+
+	private static final long FRAME_NANOS = 16666667;
+	private static final Class<?> TIME_SOURCE = App.type("CountdownEngine$TimeSource");
+	private static final MethodHandle NEW_CLOCK = App.constructor("VirtualClock", long.class, ZoneId.class);
+	private static final MethodHandle ADVANCE = App.method("VirtualClock", "advance", void.class, long.class);
+	private static final MethodHandle NEW_WHEEL = App.constructor("TimingWheel", TIME_SOURCE, long.class);
+	private static final MethodHandle NEW_SCHEDULER = App.constructor("PulseScheduler");
+	private static final MethodHandle NEW_SERVICE = App.constructor("CountdownService", App.type("TimingWheel"), App.type("PulseScheduler"));
+	private static final MethodHandle NEW_TIMER = App.constructor("CountdownTimer", Stage.class, App.type("CountdownService"));
+	private static final MethodHandle UPDATE_TIMER = App.method("CountdownTimer", "updateTimer", void.class);
+	private static final MethodHandle RESET_TIMER = App.method("CountdownTimer", "resetTimer", void.class);
+	private static final MethodHandle GET_ENGINE = App.method("CountdownTimer", "getEngine", App.type("CountdownEngine"));
+	private static final MethodHandle START = App.method("CountdownEngine", "start", boolean.class);
+	private static final MethodHandle TICK = App.method("CountdownEngine", "tick", void.class);
+	private static final MethodHandle IS_RUNNING = App.method("CountdownEngine", "isRunning", boolean.class);
+	private static final MethodHandle ENTER_DIGIT = App.method("CountdownEngine", "enterDigit", boolean.class, int.class);
+
+	private Object clock, timer, engine;
+	private final KeyEvent[] digits = new KeyEvent[6];
+
+	@Setup
+	public void setUp() throws Throwable {
+		App.startToolkit();
+		clock = NEW_CLOCK.invoke(System.currentTimeMillis(), ZoneId.systemDefault());
+		timer = App.onFx(() -> {
+			Object service = NEW_SERVICE.invoke(NEW_WHEEL.invoke(clock, 1000000L), NEW_SCHEDULER.invoke());
+			return NEW_TIMER.invoke(new Stage(), service);
+		});
+		engine = GET_ENGINE.invoke(timer);
+		String typed = "235959";
+		for(int i = 0; i < digits.length; i++) {
+			digits[i] = new KeyEvent(KeyEvent.KEY_TYPED, typed.substring(i, i + 1), "", KeyCode.UNDEFINED, false, false, false, false);
+		}
+	}
+
+	/** The display refresh when no digit changed */
+	@Benchmark
+	public void updateTimer() throws Throwable {
+		UPDATE_TIMER.invoke(timer);
+	}
+
+	/** One frame of a running countdown: the tick handler's engine.tick(), which repaints the changed digits */
+	@Benchmark
+	public void tickRunning() throws Throwable {
+		if(!(boolean) IS_RUNNING.invoke(engine)) {		//starting turns the service's wheel on, which must happen on the JavaFX thread
+			App.onFx(() -> {
+				RESET_TIMER.invoke(timer);
+				for(int i = 0; i < 6; i++) ENTER_DIGIT.invoke(engine, 9);	//99:99:99, far longer than any run of the benchmark
+				return START.invoke(engine);
+			});
+		}
+		ADVANCE.invoke(clock, FRAME_NANOS);
+		TICK.invoke(engine);
+	}
+
+	/** Typing 23:59:59 through the key handler, then resetting for the next round */
+	@Benchmark
+	public void typeDigits() throws Throwable {
+		for(KeyEvent e : digits) Event.fireEvent((EventTarget) timer, e);
+		RESET_TIMER.invoke(timer);
+	}
+}
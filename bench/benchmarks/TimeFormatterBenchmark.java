@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class: TimeFormatterBenchmark.java
+ *
+ *  This Class - The text of a countdown's labels for one frame, made by TimeFormatter and by the String.format() calls it
+ *  replaced: "00:00:00 " for hours, minutes and seconds and "000" for the milliseconds. Every operation moves the countdown on
+ *  by a frame, so the milliseconds change each time and the seconds every 60 or so, as on screen. Run with -prof gc for the
+ *  bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeFormatterBenchmark {
+
+	private static final long FRAME_MILLIS = 16;
+	private static final MethodHandle NEW_FORMATTER = App.constructor("TimeFormatter", String.class);
+	private static final MethodHandle SET = App.method("TimeFormatter", "set", boolean.class, int.class, int.class);
+	private static final MethodHandle TO_STRING = App.method("TimeFormatter", "toString", String.class);
+
+	private Object timerFmt, millisecFmt;
+	private long left = TimeUnit.HOURS.toMillis(10);
+	private String timerText, millisecText;
+
+	@Setup
+	public void setUp() throws Throwable {
+		timerFmt = NEW_FORMATTER.invoke("00:00:00 ");
+		millisecFmt = NEW_FORMATTER.invoke("000");
+	}
+
+	private void nextFrame() {
+		left -= FRAME_MILLIS;
+		if(left < 0) left += TimeUnit.HOURS.toMillis(10);
+	}
+
+	/** The labels' text for one frame, from TimeFormatter: only what changed is formatted */
+	@Benchmark
+	public Object timeFormatter() throws Throwable {
+		nextFrame();
+		int sec = (int) (left / 1000);
+		if((boolean) SET.invoke(timerFmt, 0, sec / 3600) | (boolean) SET.invoke(timerFmt, 1, sec / 60 % 60)
+				| (boolean) SET.invoke(timerFmt, 2, sec % 60)) {
+			timerText = (String) TO_STRING.invoke(timerFmt);
+		}
+		if((boolean) SET.invoke(millisecFmt, 0, (int) (left % 1000))) millisecText = (String) TO_STRING.invoke(millisecFmt);
+		return millisecText;
+	}
+
+	/** The labels' text for one frame, from String.format(), as CountdownTimer made it before */
+	@Benchmark
+	public Object stringFormat() {
+		nextFrame();
+		int sec = (int) (left / 1000);
+		timerText = String.format("%02d:%02d:%02d ", sec / 3600, sec / 60 % 60, sec % 60);
+		millisecText = String.format("%03d", (int) (left % 1000));
+		return millisecText;
+	}
+}
@@ -0,0 +1,176 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class: TimingWheelBenchmark.java
+ *
+ *  This Class - The TimingWheel with 1k, 10k and 100k countdowns pending, on a VirtualClock with the 1 ms ticks CountdownService
+ *  uses:
+ *  frame - CPU per display frame: the clock moves on by one frame and the wheel is advanced, as on every JavaFX pulse. The
+ *  countdowns are spread over the next ten minutes, and each one that expires is started again, so the number pending stays
+ *  the same and about timers / 36000 of them expire per frame.
+ *  burst - expiry lateness: every countdown due in the same tick, and the time advance() takes to run them all. The last one
+ *  runs that much after the frame it was due in, which is at most one frame plus one tick after its deadline.
+ *  pollEveryTimer - the cost per frame of checking every countdown's deadline, as when each countdown had its own timer: what
+ *  the wheel replaced, for comparison with frame.
+ *  jumpAnHour - the first advance() after the wheel was left alone for an hour, e.g. while the machine slept: 3.6 million ticks
+ *  at once. The countdowns are spread over the next day and started again as they expire, so about timers / 24 run per jump.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+	private static final long FRAME_NANOS = 16666667;
+	private static final long TICK_NANOS = 1000000;
+	private static final long SPREAD_NANOS = TimeUnit.MINUTES.toNanos(10);
+	private static final Class<?> TIME_SOURCE = App.type("CountdownEngine$TimeSource");
+	private static final MethodHandle NEW_CLOCK = App.constructor("VirtualClock", long.class, ZoneId.class);
+	private static final MethodHandle ADVANCE_CLOCK = App.method("VirtualClock", "advance", void.class, long.class);
+	private static final MethodHandle NANO_TIME = App.method("VirtualClock", "nanoTime", long.class);
+	private static final MethodHandle NEW_WHEEL = App.constructor("TimingWheel", TIME_SOURCE, long.class);
+	private static final MethodHandle SCHEDULE = App.method("TimingWheel", "schedule", App.type("TimingWheel$Timeout"), long.class, Runnable.class);
+	private static final MethodHandle ADVANCE = App.method("TimingWheel", "advance", int.class, long.class);
+
+	@Param({ "1000", "10000", "100000" })
+	public int timers;
+
+	private Object clock, wheel;
+	private long now;
+	private final Random random = new Random(42);
+	private long[] deadlines;		//for pollEveryTimer
+	private long expired;
+
+	/** A countdown that starts again as soon as it expires, somewhere in the next ten minutes */
+	private final class Countdown implements Runnable {
+		@Override
+		public void run() {
+			expired++;
+			try {
+				SCHEDULE.invoke(wheel, now + 1 + (long) (random.nextDouble() * SPREAD_NANOS), (Runnable) this);
+			}
+			catch(Throwable t) {
+				throw new IllegalStateException(t);
+			}
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		clock = NEW_CLOCK.invoke(1790000000000L, ZoneId.of("UTC"));
+		wheel = NEW_WHEEL.invoke(clock, TICK_NANOS);
+		now = (long) NANO_TIME.invoke(clock);
+		deadlines = new long[timers];
+		for(int i = 0; i < timers; i++) {
+			SCHEDULE.invoke(wheel, now + 1 + (long) (random.nextDouble() * SPREAD_NANOS), (Runnable) new Countdown());
+			deadlines[i] = now + 1 + (long) (random.nextDouble() * SPREAD_NANOS);
+		}
+	}
+
+	/** One frame of the wheel with this many countdowns pending */
+	@Benchmark
+	public int frame() throws Throwable {
+		ADVANCE_CLOCK.invoke(clock, FRAME_NANOS);
+		now += FRAME_NANOS;
+		return (int) ADVANCE.invoke(wheel, now);
+	}
+
+	/** One frame of checking every countdown's own deadline */
+	@Benchmark
+	public int pollEveryTimer() {
+		now += FRAME_NANOS;
+		int count = 0;
+		for(int i = 0; i < deadlines.length; i++) {
+			if(deadlines[i] <= now) {
+				deadlines[i] = now + 1 + (long) (random.nextDouble() * SPREAD_NANOS);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** Every countdown due in the same tick */
+	@State(Scope.Thread)
+	public static class Burst {
+		private static final Runnable TASK = () -> {};
+		Object clock, wheel;
+		long due;
+
+		@Setup(Level.Invocation)
+		public void schedule(TimingWheelBenchmark b) throws Throwable {
+			if(clock == null) {
+				clock = NEW_CLOCK.invoke(1790000000000L, ZoneId.of("UTC"));
+				wheel = NEW_WHEEL.invoke(clock, TICK_NANOS);
+			}
+			ADVANCE_CLOCK.invoke(clock, FRAME_NANOS);
+			due = (long) NANO_TIME.invoke(clock) + TICK_NANOS;
+			for(int i = 0; i < b.timers; i++) SCHEDULE.invoke(wheel, due, TASK);
+		}
+	}
+
+	/** Countdowns spread over the next day, the clock an hour on at every invocation */
+	@State(Scope.Thread)
+	public static class Jump {
+		private static final long SPREAD_NANOS = TimeUnit.DAYS.toNanos(1), JUMP_NANOS = TimeUnit.HOURS.toNanos(1);
+		private final Random random = new Random(42);
+		Object clock, wheel;
+		long now;
+
+		/** Starts again somewhere in the next day as soon as it expires */
+		private final Runnable countdown = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					SCHEDULE.invoke(wheel, now + 1 + (long) (random.nextDouble() * SPREAD_NANOS), (Runnable) this);
+				}
+				catch(Throwable t) {
+					throw new IllegalStateException(t);
+				}
+			}
+		};
+
+		@Setup(Level.Trial)
+		public void schedule(TimingWheelBenchmark b) throws Throwable {
+			clock = NEW_CLOCK.invoke(1790000000000L, ZoneId.of("UTC"));
+			wheel = NEW_WHEEL.invoke(clock, TICK_NANOS);
+			now = (long) NANO_TIME.invoke(clock);
+			for(int i = 0; i < b.timers; i++) countdown.run();
+		}
+
+		@Setup(Level.Invocation)
+		public void jump() throws Throwable {
+			ADVANCE_CLOCK.invoke(clock, JUMP_NANOS);
+			now += JUMP_NANOS;
+		}
+	}
+
+	/** The first frame an hour after the last one */
+	@Benchmark
+	public int jumpAnHour(Jump jump) throws Throwable {
+		return (int) ADVANCE.invoke(jump.wheel, jump.now);
+	}
+
+	/** Run a tick's worth of countdowns that are all due at once */
+	@Benchmark
+	public int burst(Burst burst) throws Throwable {
+		return (int) ADVANCE.invoke(burst.wheel, burst.due);
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Class: WorldClockGridBenchmark.java
+ *
+ *  This Class - A second of the world clock grid with 1 and with 200 zones, at the size ClockAnimation opens it: the tick from
+ *  the shared SecondTicker, then the repaint the scene runs before the next layout pass. The grid is laid out once, in a scene
+ *  of its own that is never shown, so no pulse runs alongside the benchmark. Every operation moves the time on by one second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw", "-Djava.awt.headless=true" })
+public class WorldClockGridBenchmark {
+
+	private static final Class<?> SCHEDULER = App.type("PulseScheduler"), TICKER = App.type("SecondTicker");
+	private static final MethodHandle NEW_SCHEDULER = App.constructor("PulseScheduler");
+	private static final MethodHandle NEW_TICKER = App.constructor("SecondTicker", SCHEDULER);
+	private static final MethodHandle NEW_GRID = App.constructor("WorldClockGrid", Stage.class, List.class, int.class, TICKER);
+	private static final MethodHandle TICK = App.method("WorldClockGrid", "tick", void.class, long.class);
+	private static final MethodHandle REPAINT = App.method("WorldClockGrid", "repaint", void.class);
+
+	@Param({ "1", "200" })
+	public int zones;
+
+	private Object grid;
+	private long millis;
+
+	@Setup
+	public void setUp() throws Throwable {
+		App.startToolkit();
+		List<ZoneId> shown = new ArrayList<>();
+		for(String id : new TreeSet<>(ZoneId.getAvailableZoneIds())) {
+			if(shown.size() < zones) shown.add(ZoneId.of(id));
+		}
+		grid = App.onFx(() -> {
+			Object g = NEW_GRID.invoke(new Stage(), shown, 4, NEW_TICKER.invoke(NEW_SCHEDULER.invoke()));
+			Scene scene = new Scene((Parent) g, 4 * 160 + 30, 600);
+			scene.getRoot().applyCss();
+			scene.getRoot().layout();		//the list view makes the row cells that fit
+			return g;
+		});
+		millis = System.currentTimeMillis();
+	}
+
+	/** One second of the grid: every clock in use ticked, then painted */
+	@Benchmark
+	public void second() throws Throwable {
+		millis += 1000;
+		TICK.invoke(grid, millis);
+		REPAINT.invoke(grid);
+	}
+}
@@ -0,0 +1,95 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import javafx.geometry.Insets;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.VBox;
+import javafx.stage.Screen;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+
+/** Class: AlarmNotifier.java
+ *
+ *  This Class - AlarmPipeline action that shows a small notification in the bottom right corner of the screen when a countdown
+ *  expires. All alarms share one notification window, which lists the last few of them and hides itself once no alarm has gone
+ *  off for a while, so a thousand countdowns expiring together make one window rather than a thousand.
+ *  Nothing is done on the action's own thread except formatting the line; the window is only touched on the JavaFX thread.
+ */
+public class AlarmNotifier implements AlarmPipeline.Action {
+
+	private static final int MAX_LINES = 5;
+	private static final long HIDE_AFTER_NANOS = 8000000000L;
+	private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+	private final PulseScheduler.Handle hideTimer;
+	private Stage stage;
+	private VBox lines;		//one label per alarm, at most MAX_LINES
+	private Label more;
+	private long hiddenCount;	//alarms pushed off the bottom of the list since the window was last shown
+
+	/** Construct the notifier. The window is only built when the first alarm goes off. */
+	public AlarmNotifier(PulseScheduler scheduler) {
+		hideTimer = scheduler.every(HIDE_AFTER_NANOS, now -> hide());
+	}
+
+	@Override
+	public String getName() {
+		return "notification";
+	}
+
+	@Override
+	public Runnable run(AlarmPipeline.Alarm alarm) {
+		String text = TIME_FMT.format(Instant.ofEpochMilli(alarm.expiredAtMillis)) + "  Countdown expired"
+				+ (alarm.note.isEmpty() ? "" : ": " + alarm.note.replace('\n', ' '));
+		return () -> show(text);
+	}
+
+	/** Add a line to the notification window, showing it if need be. Invoked on the JavaFX thread. */
+	private void show(String text) {
+		if(stage == null) build();
+		Label line = new Label(text);
+		line.setMaxWidth(320);
+		line.setStyle("-fx-text-fill: white");
+		lines.getChildren().add(0, line);	//most recent first
+		if(lines.getChildren().size() > MAX_LINES) {
+			lines.getChildren().remove(MAX_LINES);	//the oldest one listed
+			more.setText("and " + ++hiddenCount + " more");
+			more.setManaged(true);
+			more.setVisible(true);
+		}
+		if(!stage.isShowing()) stage.show();
+		stage.sizeToScene();
+		Rectangle2D bounds = Screen.getPrimary().getVisualBounds();
+		stage.setX(bounds.getMaxX() - stage.getWidth() - 10);
+		stage.setY(bounds.getMaxY() - stage.getHeight() - 10);
+		hideTimer.startIn(HIDE_AFTER_NANOS);	//stays up for a while after the latest alarm
+	}
+
+	private void build() {
+		lines = new VBox(2);
+		more = new Label();
+		more.setStyle("-fx-text-fill: silver");
+		VBox box = new VBox(2, lines, more);
+		box.setPadding(new Insets(8));
+		box.setStyle("-fx-background-color: rgba(0, 0, 0, 0.8)");
+		box.setOnMouseClicked(e -> hide());	//click to dismiss
+		Scene scn = new Scene(box);
+		stage = new Stage(StageStyle.UNDECORATED);
+		stage.setScene(scn);
+		stage.setAlwaysOnTop(true);
+		more.setManaged(false);
+		more.setVisible(false);
+	}
+
+	private void hide() {
+		hideTimer.stop();
+		if(stage == null) return;
+		stage.hide();
+		lines.getChildren().clear();
+		more.setManaged(false);
+		more.setVisible(false);
+		hiddenCount = 0;
+	}
+}
@@ -0,0 +1,366 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Class: AlarmPipeline.java
+ *
+ *  This Class - Side effects of a countdown expiring, beyond the alarm sound: running a script, appending to a log, posting to a
+ *  local webhook, showing a notification, or any other Action that is added. fire() is called on the JavaFX thread and returns
+ *  at once; every action then runs on its own thread, so a slow script or webhook never holds up rendering, nor any other
+ *  countdown expiring at the same moment. Virtual threads are used where the JVM has them (Java 21 and newer), and otherwise a
+ *  small pool of platform threads per action, so that an action that hangs cannot hold up the others.
+ *  Each run of an action has a timeout, counted from when it starts, after which it is interrupted and counted as timed out. At
+ *  most MAX_PENDING runs of each action may be queued or running at once; beyond that new runs are rejected and counted rather
+ *  than queued without limit, so a burst of expiries can never exhaust memory or threads. An action that needs to update the UI returns a Runnable, which is handed to
+ *  the JavaFX thread; updates arriving together are passed over in one go.
+ */
+public class AlarmPipeline {
+
+	/** Most runs of any one action that may be queued or running at once. */
+	public static final int MAX_PENDING = 2048;
+	/** Threads per action when there are no virtual threads. */
+	private static final int POOL_THREADS = 16;
+	/** Timeout for actions that do not set their own. */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	/** A countdown that expired. */
+	public static final class Alarm {
+		public final long timerId;
+		public final String note, sound;
+		public final long expiredAtMillis;		//wall-clock time of the expiry
+
+		public Alarm(long timerId, String note, String sound, long expiredAtMillis) {
+			this.timerId = timerId;
+			this.note = note;
+			this.sound = sound;
+			this.expiredAtMillis = expiredAtMillis;
+		}
+	}
+
+	/** Something to do when a countdown expires. Runs on a background thread, and should give up when interrupted. */
+	public interface Action {
+		String getName();
+
+		/** @return how long the action may take before it is interrupted */
+		default long getTimeoutMillis() {
+			return DEFAULT_TIMEOUT_MILLIS;
+		}
+
+		/**
+		 * Method: run
+		 * @return an update to make on the JavaFX thread afterwards, or null
+		 */
+		Runnable run(Alarm alarm) throws Exception;
+	}
+
+	private final List<Lane> lanes = new CopyOnWriteArrayList<>();
+	private final ExecutorService virtualThreads = newVirtualThreadExecutor();	//null before Java 21
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "alarm-dispatch");
+		t.setDaemon(true);
+		return t;
+	});		//its queue holds at most MAX_PENDING runs per action, as fire() takes the permit before queueing
+	private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "alarm-watchdog");
+		t.setDaemon(true);
+		return t;
+	});
+	private final Executor fxExecutor;
+	private final ConcurrentLinkedQueue<Runnable> uiUpdates = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean uiDrainScheduled = new AtomicBoolean();
+	private final AtomicLong completed = new AtomicLong(), failed = new AtomicLong(), timedOut = new AtomicLong(), rejected = new AtomicLong();
+
+	/**
+	 * Construct a pipeline with no actions.
+	 * @param fxExecutor runs UI updates on the JavaFX thread, e.g. Platform::runLater
+	 */
+	public AlarmPipeline(Executor fxExecutor) {
+		this.fxExecutor = fxExecutor;
+	}
+
+	/** Looked up reflectively so this still compiles and runs on JVMs without virtual threads. */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/** The runs of one action. Each action has its own limit, and without virtual threads its own threads as well, so an action
+	 *  that hangs only ever holds up itself. */
+	private class Lane {
+		final Action action;
+		final Semaphore pending = new Semaphore(MAX_PENDING);
+		final ExecutorService workers;
+
+		Lane(Action action) {
+			this.action = action;
+			if(virtualThreads != null) workers = virtualThreads;
+			else {
+				ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_PENDING), r -> {
+					Thread t = new Thread(r, "alarm-" + action.getName());
+					t.setDaemon(true);
+					return t;
+				});
+				pool.allowCoreThreadTimeOut(true);
+				workers = pool;
+			}
+		}
+	}
+
+	public void addAction(Action action) {
+		lanes.add(new Lane(action));
+	}
+
+	public void removeAction(Action action) {
+		for(Lane lane : lanes) {
+			if(lane.action == action && lanes.remove(lane) && lane.workers != virtualThreads) lane.workers.shutdown();
+		}
+	}
+
+	/**
+	 * Method: fire
+	 * Run every action for the given alarm in the background. Returns immediately.
+	 */
+	public void fire(Alarm alarm) {
+		for(Lane lane : lanes) {
+			if(!lane.pending.tryAcquire()) {		//backed up: drop the run rather than queue without limit
+				rejected.incrementAndGet();
+				continue;
+			}
+			Run run = new Run(lane, alarm);
+			try {
+				dispatcher.execute(run::submit);	//starting threads can take a while, so leave that to the dispatcher
+			}
+			catch(RejectedExecutionException ree) {		//closed
+				lane.pending.release();
+				rejected.incrementAndGet();
+			}
+		}
+	}
+
+	/** One run of one action for one alarm. Holds a permit of its lane until it is done. */
+	private class Run implements Runnable {
+		private final Lane lane;
+		private final Alarm alarm;
+		private volatile boolean timedOut;
+		private volatile Future<?> future;
+
+		Run(Lane lane, Alarm alarm) {
+			this.lane = lane;
+			this.alarm = alarm;
+		}
+
+		/** Hand the run to its lane's threads. Invoked on the dispatcher thread. */
+		void submit() {
+			try {
+				future = lane.workers.submit(this);
+			}
+			catch(RejectedExecutionException ree) {		//closed in the meantime
+				lane.pending.release();
+				rejected.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void run() {
+			Action action = lane.action;
+			//The timeout counts from when the action starts, not from when it was queued behind other alarms
+			Future<?> watch = watchdog.schedule(this::timeout, action.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+			try {
+				Runnable ui = action.run(alarm);
+				if(!timedOut) {
+					completed.incrementAndGet();
+					if(ui != null) runOnFx(ui);
+				}
+			}
+			catch(Exception e) {
+				if(!timedOut) {
+					failed.incrementAndGet();
+					System.out.printf("Alarm action %s failed for timer %d: %s\n", action.getName(), alarm.timerId, e);
+				}
+			}
+			finally {
+				watch.cancel(false);
+				lane.pending.release();
+			}
+		}
+
+		/** Invoked by the watchdog once the timeout is up. */
+		private void timeout() {
+			Future<?> f = future;
+			if(f == null || f.isDone()) return;
+			timedOut = true;
+			AlarmPipeline.this.timedOut.incrementAndGet();
+			System.out.printf("Alarm action %s timed out for timer %d\n", lane.action.getName(), alarm.timerId);
+			f.cancel(true);		//interrupt it
+		}
+	}
+
+	/** Hand a UI update to the JavaFX thread. Updates queued before the JavaFX thread gets round to them all go in one runLater. */
+	private void runOnFx(Runnable ui) {
+		uiUpdates.add(ui);
+		if(uiDrainScheduled.compareAndSet(false, true)) {
+			fxExecutor.execute(() -> {
+				uiDrainScheduled.set(false);
+				Runnable r;
+				while((r = uiUpdates.poll()) != null) r.run();
+			});
+		}
+	}
+
+	/** @return number of action runs waiting or running right now */
+	public int getPendingCount() {
+		int count = 0;
+		for(Lane lane : lanes) count += MAX_PENDING - lane.pending.availablePermits();
+		return count;
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	public long getTimedOutCount() {
+		return timedOut.get();
+	}
+
+	/** @return number of action runs dropped because too many were pending */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/** Stop accepting alarms and interrupt whatever is still running. */
+	public void close() {
+		dispatcher.shutdownNow();
+		for(Lane lane : lanes) lane.workers.shutdownNow();
+		if(virtualThreads != null) virtualThreads.shutdownNow();
+		watchdog.shutdownNow();
+	}
+
+	/** Runs a local command with the timer id, wall-clock expiry time and note as arguments. */
+	public static class ScriptAction implements Action {
+		private final List<String> command;
+		private final long timeoutMillis;
+
+		public ScriptAction(List<String> command, long timeoutMillis) {
+			this.command = command;
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		@Override
+		public String getName() {
+			return "script";
+		}
+
+		@Override
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		@Override
+		public Runnable run(Alarm alarm) throws Exception {
+			List<String> args = new ArrayList<>(command);		//the command is shared by every run, so never add to it
+			args.add(String.valueOf(alarm.timerId));
+			args.add(Instant.ofEpochMilli(alarm.expiredAtMillis).toString());
+			args.add(alarm.note);
+			ProcessBuilder pb = new ProcessBuilder(args);
+			pb.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+			Process p = pb.start();
+			try {
+				if(p.waitFor() != 0) throw new IOException("Exit code " + p.exitValue());
+			}
+			finally {
+				if(p.isAlive()) p.destroyForcibly();		//interrupted by the timeout
+			}
+			return null;
+		}
+	}
+
+	/** Appends one line per alarm to a log file. */
+	public static class LogAction implements Action {
+		private final File file;
+
+		public LogAction(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public String getName() {
+			return "log";
+		}
+
+		@Override
+		public Runnable run(Alarm alarm) throws IOException {
+			String line = String.format("%s\ttimer %d expired\t%s%n", Instant.ofEpochMilli(alarm.expiredAtMillis), alarm.timerId,
+					alarm.note.replace('\n', ' '));
+			synchronized(this) {		//one line at a time, however many alarms go off together
+				try(BufferedWriter w = new BufferedWriter(new FileWriter(file, true))) {
+					w.write(line);
+				}
+			}
+			return null;
+		}
+	}
+
+	/** POSTs the alarm as JSON to a URL, normally a local webhook receiver. */
+	public static class WebhookAction implements Action {
+		private final URI uri;
+		private final long timeoutMillis;
+		private final HttpClient client;
+
+		public WebhookAction(URI uri, long timeoutMillis) {
+			this.uri = uri;
+			this.timeoutMillis = timeoutMillis;
+			this.client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMillis)).build();
+		}
+
+		@Override
+		public String getName() {
+			return "webhook";
+		}
+
+		@Override
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		@Override
+		public Runnable run(Alarm alarm) throws Exception {
+			String json = "{\"id\":" + alarm.timerId + ",\"expiredAt\":" + alarm.expiredAtMillis + ",\"note\":" + Json.quote(alarm.note) + "}";
+			HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofMillis(timeoutMillis))
+					.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(json)).build();
+			int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+			if(status >= 300) throw new IOException("HTTP " + status);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javafx.application.Platform;
+import javafx.scene.media.AudioClip;
+
+/** Class: AlarmPlayer.java
+ *
+ *  This Class - Plays the alarm sound when a countdown expires. Every sound is decoded into memory ahead of time (as a JavaFX
+ *  AudioClip), in the background, so that firing an alarm just hands the ready buffer to the audio thread and returns at once,
+ *  instead of opening a MediaPlayer pipeline on the JavaFX thread. Several sounds can be registered by name.
+ *  Each alarm is played on behalf of an owner (e.g. a countdown window). A sound keeps looping until every owner that started it
+ *  has stopped it, so one window going quiet does not silence another.
+ *  For every alarm that starts a sound, the time from the countdown's deadline to the moment the sound was handed to the audio
+ *  output is recorded; see getLastLatencyNanos() and getMaxLatencyNanos(). An alarm for a sound that is still loading is
+ *  recorded when the sound starts, once loaded, and one that finds its sound already playing is not recorded at all. Run with
+ *  -Dclock.audio=null to use a silent sink instead of real audio, e.g. on a headless machine.
+ *  Must be used from the JavaFX application thread.
+ */
+public class AlarmPlayer {
+
+	/** A loaded, ready to play sound. */
+	public interface Sink {
+		/** Start looping the sound. Must return without waiting for the audio. */
+		void play();
+		/** Stop the sound. */
+		void stop();
+	}
+
+	/** Name of the sound that ships with the application. */
+	public static final String DEFAULT_SOUND = "coolNotes";
+
+	private final boolean silent = "null".equals(System.getProperty("clock.audio"));
+	private final Set<String> names = new LinkedHashSet<>();				//every registered sound, loaded or not
+	private final Map<String, Sink> sounds = new LinkedHashMap<>();			//sounds that have finished loading
+	private final Map<String, Set<Object>> owners = new LinkedHashMap<>();	//who is currently playing each sound
+	private final Map<String, Long> waitingSince = new HashMap<>();		//deadline of the first alarm waiting for a sound to load
+	private final CountdownEngine.TimeSource timeSource;
+	private long lastLatencyNanos, maxLatencyNanos, alarmCount;
+
+	/** Construct a player on System.nanoTime() and start loading the default sound in the background. */
+	public AlarmPlayer() {
+		this(CountdownEngine.SYSTEM_TIME);
+	}
+
+	/**
+	 * Construct a player and start loading the default sound in the background.
+	 * @param timeSource the clock the deadlines passed to play() are on, e.g. the countdowns' TimingWheel's
+	 */
+	public AlarmPlayer(CountdownEngine.TimeSource timeSource) {
+		this.timeSource = timeSource;
+		addSound(DEFAULT_SOUND, getClass().getResource("Audio/coolNotes.mp3"));
+	}
+
+	/**
+	 * Method: addSound
+	 * Register a sound. It is decoded on a background thread; until it is ready, play() requests for it are remembered and
+	 * honored as soon as it is.
+	 * @param name name used to play the sound
+	 * @param url location of the audio file
+	 */
+	public void addSound(String name, URL url) {
+		if(silent) {
+			addSink(name, new NullSink());
+			return;
+		}
+		addSound(name, () -> {
+			AudioClip clip = new AudioClip(url.toString());	//decodes the whole file into memory
+			clip.setCycleCount(AudioClip.INDEFINITE);
+			return new ClipSink(clip);
+		});
+	}
+
+	/**
+	 * Method: addSound
+	 * Register a sound that the given loader makes ready to play. The loader is run on a background thread; until it has
+	 * finished, play() requests for the sound are remembered and honored as soon as it has.
+	 * @param name name used to play the sound
+	 * @param loader loads the sound. If it fails, the sound stays silent.
+	 */
+	public void addSound(String name, Callable<Sink> loader) {
+		names.add(name);
+		Thread thread = new Thread(() -> {
+			try {
+				Sink sink = loader.call();
+				Platform.runLater(() -> addSink(name, sink));
+			}
+			catch(Exception e) {
+				System.out.printf("Could not load alarm sound %s: %s\n", name, e);
+			}
+		}, "alarm-loader-" + name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Method: addSink
+	 * Register an already loaded sound, e.g. a test sink.
+	 */
+	public void addSink(String name, Sink sink) {
+		names.add(name);
+		sounds.put(name, sink);
+		Set<Object> waiting = owners.get(name);
+		Long deadline = waitingSince.remove(name);
+		if(waiting != null && !waiting.isEmpty()) {		//it went off while still loading
+			sink.play();
+			if(deadline != null) recordLatency(deadline);
+		}
+	}
+
+	/** @return names of the registered sounds, in the order they were added */
+	public Set<String> getSoundNames() {
+		return names;
+	}
+
+	/** Start looping the given sound on behalf of the owner, right now rather than for a countdown's deadline. */
+	public void play(String name, Object owner) {
+		play(name, owner, timeSource.nanoTime());
+	}
+
+	/**
+	 * Method: play
+	 * Start looping the given sound on behalf of the owner. If that starts the sound, record how late it is relative to the
+	 * countdown's deadline; if the sound is still loading, that is recorded once it has loaded and started.
+	 * @param name name of the sound. Falls back to the default sound if there is no sound by that name.
+	 * @param owner whoever is sounding the alarm. Used by stop().
+	 * @param deadlineNanos the time on this player's time source at which the countdown expired
+	 */
+	public void play(String name, Object owner, long deadlineNanos) {
+		if(!names.contains(name)) name = DEFAULT_SOUND;
+		Set<Object> playing = owners.get(name);
+		if(playing == null) owners.put(name, playing = new HashSet<>());
+		boolean alreadyPlaying = !playing.isEmpty();
+		playing.add(owner);
+		if(alreadyPlaying) return;		//nothing starts, so there is no latency to record
+		Sink sink = sounds.get(name);
+		if(sink == null) waitingSince.putIfAbsent(name, deadlineNanos);		//still loading; see addSink()
+		else {
+			sink.play();
+			recordLatency(deadlineNanos);
+		}
+	}
+
+	/** Record the time from the given deadline to now, when a sound has just been started for it. */
+	private void recordLatency(long deadlineNanos) {
+		long latency = timeSource.nanoTime() - deadlineNanos;
+		lastLatencyNanos = latency;
+		if(latency > maxLatencyNanos) maxLatencyNanos = latency;
+		alarmCount++;
+		Telemetry.record(Telemetry.Metric.ALARM_LATENCY, latency);
+	}
+
+	/**
+	 * Method: stop
+	 * Stop whatever the owner is playing. A sound only goes quiet once none of its owners are playing it.
+	 */
+	public void stop(Object owner) {
+		for(Map.Entry<String, Set<Object>> entry : owners.entrySet()) {
+			if(entry.getValue().remove(owner) && entry.getValue().isEmpty()) {
+				Sink sink = sounds.get(entry.getKey());
+				if(sink != null) sink.stop();
+				else waitingSince.remove(entry.getKey());	//silenced before it could start
+			}
+		}
+	}
+
+	/** @return time from deadline to sound for the most recent alarm, in nanoseconds */
+	public long getLastLatencyNanos() {
+		return lastLatencyNanos;
+	}
+
+	/** @return worst time from deadline to sound seen so far, in nanoseconds */
+	public long getMaxLatencyNanos() {
+		return maxLatencyNanos;
+	}
+
+	/** @return number of alarms that started a sound so far */
+	public long getAlarmCount() {
+		return alarmCount;
+	}
+
+	/** Plays an AudioClip. AudioClip.play() hands the decoded buffer to its own audio thread and returns immediately. */
+	private static class ClipSink implements Sink {
+		private final AudioClip clip;
+
+		ClipSink(AudioClip clip) {
+			this.clip = clip;
+		}
+
+		@Override
+		public void play() {
+			clip.play();
+		}
+
+		@Override
+		public void stop() {
+			clip.stop();
+		}
+	}
+
+	/** Makes no sound. Used with -Dclock.audio=null. */
+	private static class NullSink implements Sink {
+		@Override
+		public void play() {}
+
+		@Override
+		public void stop() {}
+	}
+}
@@ -0,0 +1,164 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.scene.image.Image;
+
+/** Class: AssetCache.java
+ *
+ *  This Class - Decoded images, shared by every pane and window. Each image is decoded once per size, on a background thread,
+ *  straight to the size it is shown at in device pixels (the Image requested-size constructor), so neither the JavaFX thread
+ *  nor the heap ever sees the full-resolution original. On a HiDPI screen a "name@2x.ext" variant of the resource is used
+ *  where one exists, and otherwise the original is decoded at twice the size.
+ *  Entries are only weakly held: once no ImageView or window icon uses an image any more it can be collected, and its entry is
+ *  dropped on the next load. The number, heap footprint and decode time of the decoded images are reported by report().
+ *  May be used from any thread.
+ */
+public final class AssetCache {
+
+	private static final AssetCache SHARED = new AssetCache();
+
+	/** What was asked for: a resource at a size in device pixels */
+	private static final class Key {
+		final String name;
+		final int width, height;
+
+		Key(String name, int width, int height) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) return false;
+			Key k = (Key) o;
+			return name.equals(k.name) && width == k.width && height == k.height;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, width, height);
+		}
+	}
+
+	/** A decoded image, for as long as something else holds on to it */
+	private static final class Entry extends WeakReference<Image> {
+		final Key key;
+		final long bytes;		//heap taken by the decoded pixels
+
+		Entry(Key key, Image image, ReferenceQueue<Image> queue) {
+			super(image, queue);
+			this.key = key;
+			this.bytes = (long) image.getWidth() * (long) image.getHeight() * 4;	//JavaFX keeps decoded images as 32-bit ARGB
+		}
+	}
+
+	private final Map<Key, Entry> decoded = new HashMap<>();
+	private final Map<Key, CompletableFuture<Image>> loading = new HashMap<>();
+	private final ReferenceQueue<Image> collected = new ReferenceQueue<>();
+	private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "asset-decode");
+		t.setDaemon(true);
+		return t;
+	});
+	private long liveBytes, decodeCount, decodeNanos, hitCount;
+
+	private AssetCache() {}
+
+	/** @return the cache shared by the whole application */
+	public static AssetCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Method: load
+	 * Get an image, decoded in the background if it is not already in the cache. The image is stretched to exactly the given
+	 * size, like an ImageView with fitWidth and fitHeight set.
+	 * @param name resource name, relative to this class
+	 * @param width width it is shown at, in logical pixels
+	 * @param height height it is shown at, in logical pixels
+	 * @param outputScale scale of the screen it is shown on (Window.getOutputScaleX()), e.g. 2 on a HiDPI screen
+	 * @return the image, completed on the decoding thread, or right away if it is in the cache
+	 */
+	public synchronized CompletableFuture<Image> load(String name, double width, double height, double outputScale) {
+		purge();
+		double scale = Math.max(outputScale, 1);
+		Key key = new Key(name, (int) Math.ceil(width * scale), (int) Math.ceil(height * scale));
+		Entry entry = decoded.get(key);
+		Image image = (entry == null ? null : entry.get());
+		if(image != null) {
+			hitCount++;
+			return CompletableFuture.completedFuture(image);
+		}
+		CompletableFuture<Image> future = loading.get(key);
+		if(future == null) {		//not already being decoded for someone else
+			future = CompletableFuture.supplyAsync(() -> decode(key, scale), decoder);
+			loading.put(key, future);
+			future.whenComplete((img, e) -> finished(key, img));
+		}
+		return future;
+	}
+
+	private Image decode(Key key, double scale) {
+		URL url = null;
+		if(scale > 1) url = getClass().getResource(key.name.replaceFirst("(\\.[^./]+)$", "@2x$1"));	//HiDPI variant, if any
+		if(url == null) url = getClass().getResource(key.name);
+		if(url == null) throw new IllegalArgumentException("No such image: " + key.name);
+		long begin = System.nanoTime();
+		Image image = new Image(url.toString(), key.width, key.height, false, true, false);		//decoded right here, at this size
+		long nanos = System.nanoTime() - begin;
+		if(image.isError()) throw new IllegalStateException("Could not decode " + url, image.getException());
+		Telemetry.record(Telemetry.Metric.ASSET_DECODE, nanos);
+		synchronized(this) {
+			decodeCount++;
+			decodeNanos += nanos;
+		}
+		return image;
+	}
+
+	private synchronized void finished(Key key, Image image) {
+		loading.remove(key);
+		if(image == null) return;		//failed; the caller gets the exception
+		Entry entry = new Entry(key, image, collected);
+		decoded.put(key, entry);
+		liveBytes += entry.bytes;
+	}
+
+	/** Drop the entries of images nothing uses any more */
+	private void purge() {
+		Entry entry;
+		while((entry = (Entry) collected.poll()) != null) {
+			liveBytes -= entry.bytes;
+			if(decoded.get(entry.key) == entry) decoded.remove(entry.key);
+		}
+	}
+
+	/** @return the heap taken by decoded images that are still in use, in bytes */
+	public synchronized long getLiveBytes() {
+		purge();
+		return liveBytes;
+	}
+
+	/** @return number of decoded images that are still in use */
+	public synchronized int getLiveCount() {
+		purge();
+		return decoded.size();
+	}
+
+	/**
+	 * Method: report
+	 * @return the images in use and their footprint, how many were decoded and how many found in the cache, and how long decoding took
+	 */
+	public synchronized String report() {
+		purge();
+		return String.format("%-26s %7d%n%-26s %7d%n%-26s %7d%n%-26s %7d%n%-26s %7.2f%n", "images in use", decoded.size(),
+				"image heap KiB", liveBytes / 1024, "images decoded", decodeCount, "image cache hits", hitCount,
+				"image decode ms (mean)", decodeCount == 0 ? 0 : decodeNanos / 1e6 / decodeCount);
+	}
+}
@@ -1,13 +1,19 @@
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongConsumer;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
@@ -16,8 +22,9 @@ import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.layout.BorderPane;
-import javafx.util.Duration;
-import javafx.scene.image.Image;
+import javafx.scene.layout.StackPane;
+import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.input.KeyCode;
 
 /** Class: ClockAnimation.java
@@ -34,12 +41,33 @@ public class ClockAnimation extends Application {
 	private MenuBar menuBar;		//menu bar
 	private final Menu MENU01 = new Menu("File");	//File menu
 
-	private final String SAV_FILE = "ClockAnimation.sav";	//save file w/options
+	private final String SAV_FILE = "ClockAnimation.sav";	//old save file w/options. Migrated to SETTINGS_FILE.
+	private final String SETTINGS_FILE = "ClockAnimation.properties";
 	private BorderPane bp;
-	private Timeline animation;
-	private CheckBox onTopchkbox;
+	private final PulseScheduler scheduler = new PulseScheduler();	//wakes the JavaFX thread for every periodic piece of UI work
+	private LongConsumer animation;		//ticks the clock once a second, from secondTicker
+	private final CheckBox onTopchkbox = new CheckBox(), sweepChkbox = new CheckBox(), darkChkbox = new CheckBox();
+	private ClockPane clock;
 	private boolean isAlwaysOnTop;
-	private boolean countdownStageIsVisible;
+	private Settings settings;		//saved options. Read and written in the background.
+	private final StatsOverlay statsOverlay = new StatsOverlay(scheduler);	//hidden timing stats, toggled with Alt+S
+	private final String STATS_FILE = "ClockAnimation-stats.csv";
+	private final String HISTORY_FILE = "ClockAnimation-history.csv", TOTALS_FILE = "ClockAnimation-totals.csv";
+	private static final String ICON = "Image/pooh.png";
+	private static final int[] ICON_SIZES = {16, 32, 64};	//in device pixels
+	/* Soak test (see SoakMonitor): -Dclock.soak=48 runs the clock and countdowns for 48 virtual hours on a virtual clock, moved on
+	 * by -Dclock.soak.step seconds (default 1) every pulse, then exits with status 1 if anything kept growing. */
+	private static final double SOAK_HOURS = Double.parseDouble(System.getProperty("clock.soak", "0"));
+	private static final double SOAK_STEP = Double.parseDouble(System.getProperty("clock.soak.step", "1"));
+	private final String SOAK_FILE = "ClockAnimation-soak.csv";
+	private static volatile int exitStatus;
+	private final VirtualClock soakClock = (SOAK_HOURS > 0 ? new VirtualClock(System.currentTimeMillis(), ZoneId.systemDefault()) : null);
+	private SoakMonitor soakMonitor;
+	private final SecondTicker secondTicker = (soakClock != null ? new SecondTicker(soakClock, scheduler) : new SecondTicker(scheduler));	//shared once-a-second tick for the clock and world clocks
+	private Stage worldClockStage;
+	private final List<Stage> countdownSlots = new ArrayList<>();	//open countdown windows by place below the primary stage. Null where one was closed.
+	private CountdownService countdownService;	//shared scheduling backend for the countdown timer(s)
+	private ControlServer controlServer;		//local HTTP/WebSocket API. Only started with -Dclock.api.port
 
 
 	/**
@@ -48,30 +76,25 @@ public class ClockAnimation extends Application {
 	 */
 	@Override // Override the start method in the Application class
 	public void start(Stage primaryStage) {
+		StartupProfiler profiler = new StartupProfiler("clock");
 
 		this.primaryStage = primaryStage;		//Primary stage.
-		this.countdownStageIsVisible = false;	//This is a separate stage for countdown timer. Initially will be invisible.
+		File dataDir = soakDirectory();		//null: the working directory
+		this.countdownService = (soakClock != null ? new CountdownService(new TimingWheel(soakClock, 1000000), scheduler, dataDir) : new CountdownService(scheduler));
+		startControlServer();
+		setUpAlarmActions();
 
-		//Will primary stage always be on top? Set boolean value to false before loading any saved options from save file
+		//Will primary stage always be on top? False until the saved options have been read.
 		isAlwaysOnTop = false;
 
-		/* Try to open save file and read settings from it if the save file exists. If not just move on */
-		try {
-			Scanner fileSc = new Scanner(new File(SAV_FILE));	//try to open save file
-			int i = 0;
-			/* Read each line from save file and set options accordingly */
-			while(fileSc.hasNext()) {
-				i++;
-				if(i == 1) this.isAlwaysOnTop = (fileSc.nextLine().startsWith("t") ? true: false);
-			}
-			fileSc.close();
-			System.out.println("Loaded from Save File:\nalways on top? " + this.isAlwaysOnTop);	//testing
-		}
-		catch(FileNotFoundException fnf) {
-			System.out.printf("File %s not found! Moving on...\n", SAV_FILE);
-		}
+		/* The saved options are read in the background and applied once they are in (see applySettings()), so a slow disk
+		 * never holds up the window. An old ClockAnimation.sav is migrated on the way. */
+		this.settings = new Settings(new File(dataDir, SETTINGS_FILE), new File(dataDir, SAV_FILE));
+		settings.load(loaded -> applySettings());
+		profiler.mark("load settings");
 
-		ClockPane clock = new ClockPane(); // Create a clock from custom class
+		this.clock = new ClockPane(); // Create a clock from custom class
+		profiler.mark("build clock");
 
 		// Create a handler for animation
 		/*EventHandler<ActionEvent> eventHandler = new EventHandler<ActionEvent>() {
@@ -81,15 +104,22 @@ public class ClockAnimation extends Application {
 			}
 		};*/
 
-		//ALT: Shorter way to do the above
-		EventHandler<ActionEvent> eventHandler = e -> {
-			clock.setCurrentTime(); // Set clock to the current time every time this handler is invoked
+		/* The animation for a running clock. The shared second ticker calls this just after every whole second, with the time
+		 * it read for all its clocks. Ticks are due 1 ms into the second, so how much later than that they come is the lateness. */
+		this.animation = millis -> {
+			if(Telemetry.begin() != 0) Telemetry.record(Telemetry.Metric.CLOCK_TICK_LATENESS, (Math.floorMod(millis, 1000L) - 1) * 1000000L);
+			clock.setCurrentTime(millis); // Set clock to the current time every time this handler is invoked
 		};
 
-		/* Create an animation for a running clock. This calls the above event handler every second. */
-		this.animation = new Timeline(new KeyFrame(Duration.millis(1000), eventHandler));
-		animation.setCycleCount(Timeline.INDEFINITE);	//This animation goes on forever.
-		animation.play(); // Start animation
+		/* The animation only runs while the clock can actually be seen. It is started once the stage shows, stopped while the stage
+		 * is iconified or hidden, and on restore the clock jumps straight to the current time before the animation carries on. */
+		new RenderGovernor(primaryStage, () -> {
+			secondTicker.removeListener(animation);
+			clock.setRendering(false);
+		}, () -> {
+			clock.setRendering(true);
+			secondTicker.addListener(animation); // Start animation. This sets the clock to the current time right away.
+		});
 
 		this.bp = new BorderPane();
 		bp.setCenter(clock);
@@ -104,58 +134,34 @@ public class ClockAnimation extends Application {
 //		MENU01.setVisible(this.fileMenuVisible);	//Setting menu itself to invisible (as opposed to menubar)
 													//causes the other nodes to scoot up or down as a result.
 
+		/* The File menu items are only needed once the user goes for the menu, so they are built right after the first frame.
+		 * See buildMenuItems(). */
+		/* Upon exit, remember where the window was. The settings are written in the background; see stop(). */
+		primaryStage.setOnCloseRequest(we -> settings.setWindowPosition(primaryStage.getX(), primaryStage.getY()));
 
-		/* Create items to be included in the File menu. This includes:
-		 * Countdown timer
-		 * Always On Top (with a checkbox)
-		 * Exit */
-		MenuItem countdownItem = new MenuItem("Countdown Timer (Alt+C)");
-		onTopchkbox = new CheckBox();
-		/* This checkbox will be initially auto-selected or not depending on the save file setting */
-		onTopchkbox.setSelected(this.isAlwaysOnTop);
-		MenuItem alwaysOnTopItem = new MenuItem("Always On Top (Alt+T) ", onTopchkbox);
-		MenuItem exitItem = new MenuItem("Exit (Alt+F4)");
-
-		/* Add these items to the File menu */
-		MENU01.getItems().addAll(countdownItem, alwaysOnTopItem, exitItem);
-
-		/* Add event listener for choosing countdown from file menu */
-		countdownItem.setOnAction(new Countdown());		//invoke inner class to handle this one
-
-		/* Add event listener for choosing always On Top from file menu. */
-		alwaysOnTopItem.setOnAction(new AlwaysOnTopEvent());
-
-		/* Add event listener for choosing exit from file menu. */
-		exitItem.setOnAction(e -> primaryStage.close());
-
-		/* Add event listener upon exit (stage close). */
-		primaryStage.setOnCloseRequest(new EventHandler<WindowEvent>() {
-			/**
-			 * Method: handle
-			 * Upon primary stage closing, try to save settings to a text file.
-			 */
-			@Override
-			public void handle(WindowEvent we) {
-				try {
-					PrintWriter pw = new PrintWriter(SAV_FILE);
-					pw.println(isAlwaysOnTop + "=isAlwaysOnTop");
-					pw.close();
-				}
-				catch(FileNotFoundException fnf) {
-					System.out.printf("File %s not found while trying to save settings.", SAV_FILE);
-				}
-			}
-		});
-
-		/* Create scene, add borderpane to it, add to stage and show */
-		Scene scene = new Scene(bp);
+		/* Create scene, add borderpane to it with the stats overlay on top, add to stage and show */
+		StackPane root = new StackPane(bp, statsOverlay);
+		StackPane.setAlignment(statsOverlay, Pos.BOTTOM_LEFT);
+		Scene scene = new Scene(root);
 		primaryStage.setTitle("Pooh Crew Wall Clock v1.0"); // Set the stage title
 		primaryStage.setScene(scene); // Place the scene in the stage
 		primaryStage.setWidth(STAGE_WIDTH); primaryStage.setHeight(STAGE_HEIGHT);
 		primaryStage.setResizable(false);	//Make it so that end-user cannot resize window
 		primaryStage.setAlwaysOnTop(this.isAlwaysOnTop);	//initialize as either true or false
-		primaryStage.getIcons().add(new Image(getClass().getResourceAsStream("Image/pooh.png")));	//Set icon for the stage using URL.
+		setIcons(primaryStage);	//Set icon for the stage. Decoded in the background.
+		profiler.mark("build scene");
 		primaryStage.show(); // Display the stage
+		profiler.mark("show stage");
+		profiler.reportOnFirstFrame(scene);
+		Platform.runLater(this::buildMenuItems);
+		if(soakClock != null) {
+			soakMonitor = new SoakMonitor(scheduler, soakClock, animation, this::openCountdown, (long) (SOAK_STEP * 1e9),
+					(long) (SOAK_HOURS * 3.6e12), 10000000000L, new File(SOAK_FILE));
+			soakMonitor.start();
+		}
+
+		/* Read the countdown journal in the background, and carry on with any countdown that was still going last time. */
+		countdownService.getJournal().load(entries -> Platform.runLater(() -> restoreCountdowns(entries)));
 
 		/* Event listener to detect mouse movement and to show the file menu bar when
 		 * the mouse gets close. */
@@ -185,6 +191,30 @@ public class ClockAnimation extends Application {
 				new AlwaysOnTopEvent().handle(new ActionEvent());
 //				System.out.println("Alt-T pressed");
 			}
+			/* ALT+W toggles the sweeping second hand */
+			else if(e.getCode() == KeyCode.W && e.isAltDown()) {
+				new SweepEvent().handle(new ActionEvent());
+			}
+			/* ALT+D toggles the dark theme */
+			else if(e.getCode() == KeyCode.D && e.isAltDown()) {
+				new ThemeEvent().handle(new ActionEvent());
+			}
+			/* ALT+G brings up the world clocks */
+			else if(e.getCode() == KeyCode.G && e.isAltDown()) {
+				openWorldClocks();
+			}
+			/* ALT+S shows or hides the timing stats */
+			else if(e.getCode() == KeyCode.S && e.isAltDown()) {
+				statsOverlay.toggle();
+			}
+			/* ALT+E exports the timing stats to a CSV file */
+			else if(e.getCode() == KeyCode.E && e.isAltDown()) {
+				statsOverlay.export(new File(STATS_FILE));
+			}
+			/* ALT+H exports the timer history */
+			else if(e.getCode() == KeyCode.H && e.isAltDown()) {
+				exportHistory();
+			}
 			/* ALT+F shows the File menu items ONLY IF the menubar is already visible */
 			else if(e.getCode() == KeyCode.F && e.isAltDown() && menuBar.isVisible())
 				MENU01.show();
@@ -192,6 +222,130 @@ public class ClockAnimation extends Application {
 	}
 	//End start
 
+	/**
+	 * Method: startControlServer
+	 * Start the local HTTP/WebSocket control API if -Dclock.api.port is set (0 picks a free port). It only listens on the
+	 * loopback interface, and only answers web pages from loopback origins and those listed in -Dclock.api.origins (comma
+	 * separated). POST /timers opens a new countdown window, just like the menu does.
+	 */
+	private void startControlServer() {
+		String port = System.getProperty("clock.api.port");
+		if(port == null) return;
+		countdownService.getRegistry().setCreator(() -> openCountdown().getTimerId());
+		try {
+			controlServer = new ControlServer(countdownService.getRegistry(), Platform::runLater, Integer.parseInt(port));
+			for(String origin : System.getProperty("clock.api.origins", "").split(",")) {
+				if(!origin.trim().isEmpty()) controlServer.allowOrigin(origin.trim());
+			}
+			System.out.printf("Control API listening on http://127.0.0.1:%d/timers\n", controlServer.getPort());
+		}
+		catch(IOException | NumberFormatException e) {
+			System.out.printf("Could not start control API on port %s: %s\n", port, e);
+		}
+	}
+
+	/**
+	 * Method: setUpAlarmActions
+	 * Choose what happens, besides the alarm sound, when a countdown expires. A notification is always shown. On top of that
+	 * -Dclock.alarm.script="command args" runs a command with the timer id, expiry time and note appended as arguments,
+	 * -Dclock.alarm.log=file appends a line to a file, and -Dclock.alarm.webhook=url POSTs the alarm as JSON.
+	 */
+	private void setUpAlarmActions() {
+		AlarmPipeline pipeline = countdownService.getAlarmPipeline();
+		pipeline.addAction(new AlarmNotifier(scheduler));
+		String script = System.getProperty("clock.alarm.script");
+		if(script != null) pipeline.addAction(new AlarmPipeline.ScriptAction(List.of(script.trim().split("\\s+")),
+				AlarmPipeline.DEFAULT_TIMEOUT_MILLIS));
+		String log = System.getProperty("clock.alarm.log");
+		if(log != null) pipeline.addAction(new AlarmPipeline.LogAction(new File(log)));
+		String webhook = System.getProperty("clock.alarm.webhook");
+		if(webhook != null) {
+			try {
+				pipeline.addAction(new AlarmPipeline.WebhookAction(URI.create(webhook), 2000));
+			}
+			catch(IllegalArgumentException iae) {
+				System.out.printf("Ignoring alarm webhook %s: %s\n", webhook, iae.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Method: applySettings
+	 * Apply the options read from the settings file. Invoked on the JavaFX thread once they have been loaded, and from then on
+	 * any change the user makes is written back by the settings store.
+	 */
+	private void applySettings() {
+		isAlwaysOnTop = settings.isAlwaysOnTop();
+		onTopchkbox.setSelected(isAlwaysOnTop);
+		primaryStage.setAlwaysOnTop(isAlwaysOnTop);
+		clock.setSweep(settings.isSweep());
+		sweepChkbox.setSelected(clock.isSweep());
+		clock.setTheme(settings.getTheme());
+		darkChkbox.setSelected(ClockPane.THEME_DARK.equals(clock.getTheme()));
+		if(!Double.isNaN(settings.getWindowX())) {
+			primaryStage.setX(settings.getWindowX());
+			primaryStage.setY(settings.getWindowY());
+		}
+		System.out.println("Loaded settings:\nalways on top? " + this.isAlwaysOnTop);	//testing
+
+		/* Moving the window is saved as well. The settings store waits for the moves to settle before writing. */
+		primaryStage.xProperty().addListener(o -> windowMoved());
+		primaryStage.yProperty().addListener(o -> windowMoved());
+	}
+
+	private void windowMoved() {
+		settings.setWindowPosition(primaryStage.getX(), primaryStage.getY());
+		settings.changed();
+	}
+
+	/**
+	 * Method: buildMenuItems
+	 * Create the items of the File menu and their event listeners. Invoked once, right after the primary stage is first shown.
+	 */
+	private void buildMenuItems() {
+		/* Create items to be included in the File menu. This includes:
+		 * Countdown timer
+		 * World clocks
+		 * Always On Top (with a checkbox)
+		 * Sweep Second Hand (with a checkbox)
+		 * Dark Theme (with a checkbox)
+		 * Export Timer History
+		 * Exit */
+		MenuItem countdownItem = new MenuItem("Countdown Timer (Alt+C)");
+		MenuItem worldClockItem = new MenuItem("World Clocks (Alt+G)");
+		/* This checkbox will be initially auto-selected or not depending on the saved settings */
+		onTopchkbox.setSelected(this.isAlwaysOnTop);
+		MenuItem alwaysOnTopItem = new MenuItem("Always On Top (Alt+T) ", onTopchkbox);
+		MenuItem sweepItem = new MenuItem("Sweep Second Hand (Alt+W) ", sweepChkbox);
+		MenuItem darkItem = new MenuItem("Dark Theme (Alt+D) ", darkChkbox);
+		MenuItem historyItem = new MenuItem("Export Timer History (Alt+H)");
+		MenuItem exitItem = new MenuItem("Exit (Alt+F4)");
+
+		/* Add these items to the File menu */
+		MENU01.getItems().addAll(countdownItem, worldClockItem, alwaysOnTopItem, sweepItem, darkItem, historyItem, exitItem);
+
+		/* Add event listener for choosing countdown from file menu */
+		countdownItem.setOnAction(new Countdown());		//invoke inner class to handle this one
+
+		/* Add event listener for choosing world clocks from file menu */
+		worldClockItem.setOnAction(e -> openWorldClocks());
+
+		/* Add event listener for choosing always On Top from file menu. */
+		alwaysOnTopItem.setOnAction(new AlwaysOnTopEvent());
+
+		/* Add event listener for choosing sweep second hand from file menu. */
+		sweepItem.setOnAction(new SweepEvent());
+
+		/* Add event listener for choosing dark theme from file menu. */
+		darkItem.setOnAction(new ThemeEvent());
+
+		/* Add event listener for choosing to export the timer history from file menu. */
+		historyItem.setOnAction(e -> exportHistory());
+
+		/* Add event listener for choosing exit from file menu. */
+		exitItem.setOnAction(e -> primaryStage.close());
+	}
+
 	/**
 	 * Class that implements event handler. Invoked by choosing "Countdown Timer" from
 	 * file menu in the GUI.
@@ -199,24 +353,124 @@ public class ClockAnimation extends Application {
 	class Countdown implements EventHandler<ActionEvent> {
 		@Override
 		public void handle(ActionEvent e) {
-			/* If there is already a countdown window, then do nothing. Otherwise, do the following... */
-			if(!countdownStageIsVisible) {
-				countdownStageIsVisible = true;
-				Stage cdownStage = new Stage();			//Create new stage to hold the countdown timer.
-				CountdownTimer cdownTimer = new CountdownTimer(cdownStage);		//Instantiate custom class that extends a borderpane.
-				Scene cdownScene = new Scene(cdownTimer);	//add to scene
-				cdownStage.setScene(cdownScene);			//add scene to stage
-				cdownStage.setTitle("Countdown Timer");		//set title
-				cdownStage.show();
-				cdownStage.setY(primaryStage.getY() + primaryStage.getHeight());	//set the x and y location of this stage right below primary stage
-				cdownStage.setX(primaryStage.getX());
-				cdownStage.requestFocus();
-				cdownStage.setOnCloseRequest(f -> {		//event handler for when the countdown stage is closed
-					countdownStageIsVisible = false;
-					cdownTimer.resetTimer();			//Reset the timer when the stage closes (as in, don't keep the timer running upon close)
-				});
+			openCountdown();
+		}
+	}
+
+	/**
+	 * Method: openCountdown
+	 * Open a new countdown timer window below the primary stage. Any number can be open at once, each with its own countdown and
+	 * notes, all of them scheduled by the one CountdownService and sounding their alarms through its AlarmPlayer.
+	 * @return the new countdown timer
+	 */
+	private CountdownTimer openCountdown() {
+		int slot = countdownSlots.indexOf(null);	//the first place left free by a closed window, if any
+		if(slot < 0) {
+			slot = countdownSlots.size();
+			countdownSlots.add(null);
+		}
+		StartupProfiler profiler = new StartupProfiler("countdown");
+		Stage cdownStage = new Stage();			//Create new stage to hold the countdown timer.
+		countdownSlots.set(slot, cdownStage);
+		CountdownTimer cdownTimer = new CountdownTimer(cdownStage, countdownService);		//Instantiate custom class that extends a borderpane.
+		Scene cdownScene = new Scene(cdownTimer);	//add to scene
+		cdownStage.setScene(cdownScene);			//add scene to stage
+		cdownStage.setTitle(slot == 0 ? "Countdown Timer" : "Countdown Timer " + (slot + 1));		//set title
+		setIcons(cdownStage);
+		cdownTimer.setAlarmSound(settings.getAlarmSound());
+		cdownTimer.getEngine().addListener(new DurationRecorder());
+		profiler.mark("build timer");
+		cdownStage.show();
+		tile(cdownStage, slot);
+		cdownStage.requestFocus();
+		profiler.mark("show stage");
+		profiler.reportOnFirstFrame(cdownScene);
+		final int place = slot;
+		cdownStage.setOnCloseRequest(f -> {		//event handler for when the countdown stage is closed
+			countdownSlots.set(place, null);	//its place can be taken by the next window opened
+			cdownTimer.resetTimer();			//Reset the timer when the stage closes (as in, don't keep the timer running upon close)
+			countdownService.getRegistry().unregister(cdownTimer.getTimerId());
+		});
+		return cdownTimer;
+	}
+
+	/**
+	 * Method: tile
+	 * Put a countdown window in its place below the primary stage: the first one right below it, the next ones to its right, and
+	 * once the screen is full across, on a new row further down. When the screen is full, further windows start again at the top,
+	 * shifted a little so they do not hide the ones underneath completely.
+	 * @param slot the window's place, counting from 0
+	 */
+	private void tile(Stage stage, int slot) {
+		List<Screen> screens = Screen.getScreensForRectangle(primaryStage.getX(), primaryStage.getY(), primaryStage.getWidth(), primaryStage.getHeight());
+		Rectangle2D bounds = (screens.isEmpty() ? Screen.getPrimary() : screens.get(0)).getVisualBounds();
+		double w = stage.getWidth(), h = stage.getHeight();
+		double left = Math.max(bounds.getMinX(), Math.min(primaryStage.getX(), bounds.getMaxX() - w));
+		double top = Math.min(primaryStage.getY() + primaryStage.getHeight(), bounds.getMaxY() - h);
+		int cols = Math.max(1, (int) ((bounds.getMaxX() - left) / w));
+		int rows = Math.max(1, (int) ((bounds.getMaxY() - top) / h));
+		int col = slot % cols, row = (slot / cols) % rows, layer = slot / (cols * rows);
+		stage.setX(left + col * w + layer * 24);
+		stage.setY(top + row * h + layer * 24);
+	}
+
+	/**
+	 * Method: openWorldClocks
+	 * Open the world clock grid, or bring it to the front if it is already open. The zones come from -Dclock.zones (a comma
+	 * separated list of zone ids), or else every region based zone known to the JVM.
+	 */
+	private void openWorldClocks() {
+		if(worldClockStage != null) {
+			worldClockStage.show();
+			worldClockStage.toFront();
+			return;
+		}
+		List<ZoneId> zones = new ArrayList<>();
+		String zoneList = System.getProperty("clock.zones");
+		if(zoneList != null) {
+			for(String id : zoneList.split(",")) zones.add(ZoneId.of(id.trim()));
+		}
+		else {
+			List<String> ids = new ArrayList<>(ZoneId.getAvailableZoneIds());
+			ids.sort(null);
+			for(String id : ids) {
+				if(id.indexOf('/') > 0 && !id.startsWith("Etc/") && !id.startsWith("SystemV/")) zones.add(ZoneId.of(id));
 			}
 		}
+		worldClockStage = new Stage();
+		worldClockStage.setTitle("World Clocks");
+		setIcons(worldClockStage);
+		worldClockStage.setScene(new Scene(new WorldClockGrid(worldClockStage, zones, 4, secondTicker), 4 * 160 + 30, 600));
+		worldClockStage.show();
+	}
+
+	/**
+	 * Method: exportHistory
+	 * Write every countdown event to one CSV file and the daily and weekly totals to another, in the background.
+	 */
+	private void exportHistory() {
+		countdownService.getHistory().export(new File(HISTORY_FILE), new File(TOTALS_FILE));
+	}
+
+	/**
+	 * Method: setIcons
+	 * Give a window the application icon, in the sizes window managers usually ask for. The icons are decoded once, in the
+	 * background, and the same images are shared by every window.
+	 */
+	private void setIcons(Stage stage) {
+		for(int size : ICON_SIZES) {
+			AssetCache.getShared().load(ICON, size, size, 1).thenAccept(icon -> Platform.runLater(() -> stage.getIcons().add(icon)));
+		}
+	}
+
+	/**
+	 * Method: restoreCountdowns
+	 * Bring back every countdown that was running or paused when the application last went down (e.g. it was killed or the
+	 * machine rebooted), each in its own window.
+	 * @param entries the countdowns saved in the journal
+	 */
+	private void restoreCountdowns(Collection<TimerJournal.Entry> entries) {
+		for(TimerJournal.Entry entry : entries) openCountdown().restore(entry);
 	}
 
 	/**
@@ -229,9 +483,89 @@ public class ClockAnimation extends Application {
 			isAlwaysOnTop = !isAlwaysOnTop;
 			onTopchkbox.setSelected(isAlwaysOnTop);
 			primaryStage.setAlwaysOnTop(isAlwaysOnTop);
+			settings.setAlwaysOnTop(isAlwaysOnTop);
+			settings.changed();
+		}
+	}
+
+	/**
+	 * Inner class implementing event handler.
+	 * Invoked when the Sweep Second Hand option is toggled.
+	 */
+	class SweepEvent implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent e) {
+			clock.setSweep(!clock.isSweep());
+			sweepChkbox.setSelected(clock.isSweep());
+			settings.setSweep(clock.isSweep());
+			settings.changed();
+		}
+	}
+
+	/**
+	 * Inner class implementing event handler.
+	 * Invoked when the Dark Theme option is toggled.
+	 */
+	class ThemeEvent implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent e) {
+			boolean dark = !ClockPane.THEME_DARK.equals(clock.getTheme());
+			clock.setTheme(dark ? ClockPane.THEME_DARK : ClockPane.THEME_CLASSIC);
+			darkChkbox.setSelected(dark);
+			settings.setTheme(clock.getTheme());
+			settings.changed();
 		}
 	}
 
+	/**
+	 * Inner class listening to a countdown. Remembers the duration of every countdown the user starts from scratch,
+	 * so the last few durations are kept in the settings.
+	 */
+	class DurationRecorder implements CountdownEngine.Listener {
+		private CountdownEngine.State previous = CountdownEngine.State.IDLE;
+
+		@Override
+		public void stateChanged(CountdownEngine engine, CountdownEngine.State state) {
+			/* A countdown restored from the journal has no typed digits, and is not a duration the user picked */
+			if(previous == CountdownEngine.State.IDLE && state == CountdownEngine.State.RUNNING && !engine.keyTypedOrderIsEmpty()) {
+				settings.addTimerDuration((int) Math.round(engine.getRemainingNanos() / 1e9));
+				settings.changed();
+			}
+			previous = state;
+		}
+	}
+
+	/**
+	 * Method: soakDirectory
+	 * @return a new temporary directory for the countdown journal, history and settings of a soak test, so it never touches the
+	 * real ones; null when not soak testing
+	 */
+	private File soakDirectory() {
+		if(soakClock == null) return null;
+		try {
+			File dir = Files.createTempDirectory("clock-soak").toFile();
+			System.out.printf("Soak test keeps its journal, history and settings in %s\n", dir);
+			return dir;
+		}
+		catch(IOException ioe) {
+			throw new UncheckedIOException("Could not make a directory for the soak test", ioe);
+		}
+	}
+
+	/**
+	 * Method: stop
+	 * Invoked when the application exits. Writes out anything still queued for the countdown journal and history, and the settings.
+	 */
+	@Override
+	public void stop() {
+		if(controlServer != null) controlServer.close();
+		settings.close();
+		countdownService.getJournal().close();
+		countdownService.getHistory().close();
+		countdownService.getAlarmPipeline().close();
+		if(soakMonitor != null && !soakMonitor.hasPassed()) exitStatus = 1;
+	}
+
 	/**
 	 * Method: main
 	 * Launch the GUI stage.
@@ -239,5 +573,6 @@ public class ClockAnimation extends Application {
 	 */
 	public static void main(String[] args) {
 		Application.launch(args);
+		if(exitStatus != 0) System.exit(exitStatus);	//a failed soak test
 	}
 }
\ No newline at end of file
@@ -1,6 +1,26 @@
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.concurrent.CompletableFuture;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.geometry.Insets;
+import javafx.scene.CacheHint;
+import javafx.scene.Group;
+import javafx.scene.Scene;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -9,195 +29,565 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Text;
+import javafx.scene.transform.Rotate;
+import javafx.stage.Screen;
+import javafx.stage.Window;
 
 public class ClockPane extends Pane {
-	private int hour;
-	private int minute;
-	private int second;
-	private boolean isPM;
-	private String date;
+	/** Names of the available color themes. See setTheme(). */
+	public static final String THEME_CLASSIC = "classic", THEME_DARK = "dark";
+
+	/* The time and size shown, as properties other components can bind to. A change only marks the clock dirty; it is painted
+	 * once, just before the next layout pass, however many properties changed in between. See repaint(). */
+	private final IntegerProperty hour = new SimpleIntegerProperty(this, "hour");
+	private final IntegerProperty minute = new SimpleIntegerProperty(this, "minute");
+	private final IntegerProperty second = new SimpleIntegerProperty(this, "second");
+	private final BooleanProperty pm = new SimpleBooleanProperty(this, "pm");
+	private final ReadOnlyObjectWrapper<LocalTime> time = new ReadOnlyObjectWrapper<>(this, "time", LocalTime.MIDNIGHT);
+	private boolean settingTime;		//inside setTime(): the time property is updated once, at the end
+	private final TimeFormatter timeFmt = new TimeFormatter("00:00:00 ");			//digital time, followed by AM or PM
+	private final TimeFormatter dateFmt = new TimeFormatter("Today: 00/00/0000");	//today's date
+
+	/* Source of the current time. The zone offset is cached until the next DST transition, and the date until the day rolls over. */
+	private Clock timeSource = Clock.systemDefaultZone();
+	private long offsetMillis;							//zone offset in effect between offsetFromMillis and offsetUntilMillis
+	private long offsetFromMillis = Long.MAX_VALUE, offsetUntilMillis = Long.MIN_VALUE;
+	private long epochDay = Long.MIN_VALUE;				//local day currently shown on the date label
 
 	// Clock pane's width and height
-	private double w = 300, h = 300;
+	private final DoubleProperty w = new SimpleDoubleProperty(this, "w", 300), h = new SimpleDoubleProperty(this, "h", 300);
+
+	/* Whether anything changed since the last repaint, and whether the size did. Starts dirty, so the clock is painted when it
+	 * is first shown. */
+	private boolean dirty = true, sizeDirty;
+	private final Runnable repaint = this::repaint;		//run by the scene before each layout pass. See setSelfRepainting().
+	private final InvalidationListener timeChanged = o -> {
+		if(!settingTime) updateTime();
+		markDirty();
+	};
+	private final InvalidationListener sizeChanged = o -> {
+		sizeDirty = true;
+		markDirty();
+	};
+	/* Registered with the scene the clock is in and with its window, and taken off again when the clock moves elsewhere, so a
+	 * scene or window the clock has left does not keep it alive. See followOutputScale(). */
+	private final ChangeListener<Window> windowChanged = (o, oldWindow, window) -> followOutputScale(oldWindow, window);
+	private final ChangeListener<Number> outputScaleChanged = (o, was, scale) -> {
+		loadImage(scale.doubleValue());
+		invalidateFace();
+	};
+
+	/* Nodes making up the clock. These are built once (see buildClock()) and then only moved or
+	 * updated, rather than thrown away and re-created on every paint. */
+	private Circle circle;
+	private Text t12, t3, t6, t9;
+	private Line sLine, mLine, hLine;
+	private Rotate sRotate, mRotate, hRotate;	//rotation of each hand about the center of the clock
+	private Label lblTime, lblDate;
+	private ImageView iview;
+	private static final String IMAGE = "Image/Poohcrew.jpg";
+	private static final double IMAGE_WIDTH = 150, IMAGE_HEIGHT = 100;
+	private double imageScale;		//output scale the image was decoded for
+	/* The parts of the face that do not move (circle, numerals, image), kept in one cached group: they are rendered into a
+	 * bitmap once and then only composited under the hands and labels. Run with -Dclock.faceCache=false to draw them every
+	 * frame instead, e.g. to compare frame times. */
+	private Group face;
+	private static final boolean CACHE_FACE = !"false".equals(System.getProperty("clock.faceCache"));
+
+	/* Sweep mode: the second hand moves continuously on every pulse instead of jumping once a second. The sweeper is only made
+	 * once sweep mode is first turned on, and never for a clock repainted by its owner (see setSelfRepainting()). */
+	private boolean sweep, rendering = true;
+	private boolean selfRepainting = true;
+	private String theme = THEME_CLASSIC;
+	private AnimationTimer sweeper;
 
 	/** Construct a default clock with the current time*/
 	public ClockPane() {
+		buildClock();
+		setCurrentTime();
+	}
+
+	/** Construct a clock showing the current time in the given time zone */
+	public ClockPane(ZoneId zone) {
+		this.timeSource = Clock.system(zone);
+		buildClock();
 		setCurrentTime();
 	}
 
 	/** Construct a clock with specified hour, minute, and second */
 	public ClockPane(int hour, int minute, int second) {
-		this.hour = hour;
-		this.minute = minute;
-		this.second = second;
-		paintClock();
+		buildClock();
+		setTime(hour, minute, second, false);
 	}
 
 	/** Return hour */
 	public int getHour() {
-		return hour;
+		return hour.get();
 	}
 
 	/** Set a new hour */
 	public void setHour(int hour) {
-		this.hour = hour;
-		paintClock();
+		this.hour.set(hour);
+	}
+
+	/** The hour shown, 0 to 12. Changes are painted on the next pulse. */
+	public IntegerProperty hourProperty() {
+		return hour;
 	}
 
 	/** Return minute */
 	public int getMinute() {
-		return minute;
+		return minute.get();
 	}
 
 	/** Set a new minute */
 	public void setMinute(int minute) {
-		this.minute = minute;
-		paintClock();
+		this.minute.set(minute);
+	}
+
+	/** The minute shown. Changes are painted on the next pulse. */
+	public IntegerProperty minuteProperty() {
+		return minute;
 	}
 
 	/** Return second */
 	public int getSecond() {
-		return second;
+		return second.get();
 	}
 
 	/** Set a new second */
 	public void setSecond(int second) {
-		this.second = second;
-		paintClock();
+		this.second.set(second);
+	}
+
+	/** The second shown. Changes are painted on the next pulse. */
+	public IntegerProperty secondProperty() {
+		return second;
 	}
 
 	/**
 	 * @return the isPM
 	 */
 	public boolean isPM() {
-		return isPM;
+		return pm.get();
 	}
 
 	/**
 	 * @param isPM the isPM to set
 	 */
 	public void setPM(boolean isPM) {
-		this.isPM = isPM;
+		pm.set(isPM);
+	}
+
+	/** Whether the time shown is after noon. Changes are painted on the next pulse. */
+	public BooleanProperty pmProperty() {
+		return pm;
+	}
+
+	/**
+	 * Method: setTime
+	 * Set the whole time shown at once. The clock is painted once on the next pulse, and the time property changes once, so a
+	 * listener never sees the new hour with the old minute. Listeners of the separate hour, minute, second and PM properties
+	 * are told about each one as it is set.
+	 * @param hour 0 to 12
+	 * @param minute 0 to 59
+	 * @param second 0 to 59
+	 * @param pm whether it is after noon
+	 */
+	public void setTime(int hour, int minute, int second, boolean pm) {
+		settingTime = true;
+		try {
+			this.hour.set(hour);
+			this.minute.set(minute);
+			this.second.set(second);
+			this.pm.set(pm);
+		}
+		finally {
+			settingTime = false;
+		}
+		updateTime();
+	}
+
+	/** Return the time shown, as a time of day */
+	public LocalTime getTime() {
+		return time.get();
+	}
+
+	/**
+	 * The time shown as a time of day, for components that follow the clock: it changes once per tick, or once per setTime(),
+	 * with hour, minute, second and PM always consistent with each other.
+	 */
+	public ReadOnlyObjectProperty<LocalTime> timeProperty() {
+		return time.getReadOnlyProperty();
+	}
+
+	private void updateTime() {
+		int hour24 = Math.floorMod(getHour(), 12) + (isPM() ? 12 : 0);
+		LocalTime now = LocalTime.of(hour24, Math.floorMod(getMinute(), 60), Math.floorMod(getSecond(), 60));
+		if(!now.equals(time.get())) time.set(now);
+	}
+
+	/** Return whether the second hand sweeps continuously */
+	public boolean isSweep() {
+		return sweep;
+	}
+
+	/**
+	 * Set sweep mode. When on, the second hand moves continuously with the time source at the display pulse rate,
+	 * instead of jumping once a second.
+	 */
+	public void setSweep(boolean sweep) {
+		this.sweep = sweep;
+		updateSweeper();
+		markDirty();
+	}
+
+	/**
+	 * Tell the clock whether it is being shown. While it is not, sweep mode stops animating the second hand.
+	 * See RenderGovernor.
+	 */
+	public void setRendering(boolean rendering) {
+		this.rendering = rendering;
+		updateSweeper();
+	}
+
+	private void updateSweeper() {
+		if(sweep && rendering && selfRepainting) {
+			if(sweeper == null) sweeper = new AnimationTimer() {
+				@Override
+				public void handle(long now) {
+					sweepSecondHand();
+				}
+			};
+			sweeper.start();
+		}
+		else if(sweeper != null) sweeper.stop();
+	}
+
+	/**
+	 * Method: sweepSecondHand
+	 * In sweep mode, move the second hand to where the time source is now. Run on every pulse by the clock's own sweeper, or by
+	 * the owner of a clock that does not repaint itself. Does nothing outside sweep mode.
+	 */
+	public void sweepSecondHand() {
+		if(!sweep) return;
+		/* Milliseconds into the current minute, straight from the time source. The hand is a rotation transform, so this is the
+		 * only work per frame: no trig and no new nodes. */
+		long msIntoMinute = Math.floorMod(timeSource.millis() + offsetMillis, 60000L);
+		sRotate.setAngle(msIntoMinute * 0.006);		//360 degrees / 60000 ms
+	}
+
+	/** Return whether the clock repaints itself before each layout pass */
+	public boolean isSelfRepainting() {
+		return selfRepainting;
+	}
+
+	/**
+	 * Set whether the clock repaints itself. By default it registers with the scene it is in, to be repainted before each layout
+	 * pass, and animates the second hand itself in sweep mode. A view showing many clocks, such as WorldClockGrid, turns this off
+	 * and runs repaint() and sweepSecondHand() on all of them from one listener of its own instead.
+	 */
+	public void setSelfRepainting(boolean selfRepainting) {
+		if(this.selfRepainting == selfRepainting) return;
+		this.selfRepainting = selfRepainting;
+		Scene scene = getScene();
+		if(scene != null) {
+			if(selfRepainting) scene.addPreLayoutPulseListener(repaint);
+			else scene.removePreLayoutPulseListener(repaint);
+		}
+		updateSweeper();
+	}
+
+	/** Return the name of the color theme */
+	public String getTheme() {
+		return theme;
+	}
+
+	/** Set the color theme of the clock face: THEME_CLASSIC (white face) or THEME_DARK. Unknown names fall back to classic. */
+	public void setTheme(String theme) {
+		this.theme = (THEME_DARK.equals(theme) ? THEME_DARK : THEME_CLASSIC);
+		applyTheme();
+	}
+
+	/** Style the face and numerals for the current theme. */
+	private void applyTheme() {
+		boolean dark = THEME_DARK.equals(theme);
+		circle.setStyle(dark ? "-fx-fill: #2b2b2b; -fx-stroke: goldenrod; -fx-stroke-width: 3"
+				: "-fx-fill: white; -fx-stroke: saddlebrown; -fx-stroke-width: 3");
+		Color numerals = (dark ? Color.WHITESMOKE : Color.BLACK);
+		t12.setFill(numerals); t3.setFill(numerals); t6.setFill(numerals); t9.setFill(numerals);
+	}
+
+	/** Return the source of the current time */
+	public Clock getTimeSource() {
+		return timeSource;
+	}
+
+	/**
+	 * Set the source of the current time used by setCurrentTime() and sweep mode. Defaults to the system clock in the
+	 * default time zone. Tests and benchmarks can pass a fixed, offset or custom accelerated Clock.
+	 */
+	public void setTimeSource(Clock timeSource) {
+		this.timeSource = timeSource;
+		offsetFromMillis = Long.MAX_VALUE; offsetUntilMillis = Long.MIN_VALUE;	//the zone may have changed
+		epochDay = Long.MIN_VALUE;
+		setCurrentTime();
+	}
+
+	/** Return the time zone the clock shows */
+	public ZoneId getZone() {
+		return timeSource.getZone();
+	}
+
+	/** Show the time in another time zone, keeping the same source of the current instant */
+	public void setZone(ZoneId zone) {
+		if(!zone.equals(timeSource.getZone())) setTimeSource(timeSource.withZone(zone));
 	}
 
 	/** Return clock pane's width */
 	public double getW() {
-		return w;
+		return w.get();
 	}
 
 	/** Set clock pane's width */
 	public void setW(double w) {
-		this.w = w;
-		paintClock();
+		this.w.set(w);
+	}
+
+	/** Clock pane's width. The clock is laid out anew on the next pulse. */
+	public DoubleProperty wProperty() {
+		return w;
 	}
 
 	/** Return clock pane's height */
 	public double getH() {
-		return h;
+		return h.get();
 	}
 
 	/** Set clock pane's height */
 	public void setH(double h) {
-		this.h = h;
-		paintClock();
+		this.h.set(h);
+	}
+
+	/** Clock pane's height. The clock is laid out anew on the next pulse. */
+	public DoubleProperty hProperty() {
+		return h;
 	}
 
 	/* Set the current time for the clock */
 	public void setCurrentTime() {
-		// Construct a calendar for the current date and time
-		Calendar calendar = new GregorianCalendar();
+		setCurrentTime(timeSource.millis());
+	}
 
-		this.date = String.format("%02d/%02d/%s", calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DATE), calendar.get(Calendar.YEAR));
+	/**
+	 * Set the clock to the given instant, shown in the clock's time zone. Lets one tick source read the time once and hand it to
+	 * many clocks (see SecondTicker).
+	 * @param millis milliseconds since the epoch
+	 */
+	public void setCurrentTime(long millis) {
+
+		/* Look up the zone offset only when we move outside the period it is valid for, i.e. at a DST transition. */
+		if(millis < offsetFromMillis || millis >= offsetUntilMillis) {
+			Instant now = Instant.ofEpochMilli(millis);
+			offsetMillis = timeSource.getZone().getRules().getOffset(now).getTotalSeconds() * 1000L;
+			ZoneOffsetTransition next = timeSource.getZone().getRules().nextTransition(now);
+			offsetFromMillis = millis;
+			offsetUntilMillis = (next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000);
+		}
+		long localMillis = millis + offsetMillis;
+
+		/* The date only changes once a day */
+		long day = Math.floorDiv(localMillis, 86400000L);
+		if(day != epochDay) {
+			epochDay = day;
+			LocalDate date = LocalDate.ofEpochDay(day);
+			dateFmt.set(0, date.getMonthValue()); dateFmt.set(1, date.getDayOfMonth()); dateFmt.set(2, date.getYear());
+			markDirty();
+		}
 
 		// Set current hour, minute and second
-		int tempHour = calendar.get(Calendar.HOUR_OF_DAY);
-		this.hour = (tempHour > 12 ? tempHour - 12 : tempHour);
-		this.minute = calendar.get(Calendar.MINUTE);
-		this.second = calendar.get(Calendar.SECOND);
-		if(tempHour >= 12) this.isPM = true; else this.isPM = false;
-
-		paintClock(); // Repaint the clock
+		int secOfDay = (int) (Math.floorMod(localMillis, 86400000L) / 1000);
+		int tempHour = secOfDay / 3600;
+		setTime(tempHour > 12 ? tempHour - 12 : tempHour, secOfDay / 60 % 60, secOfDay % 60, tempHour >= 12);
 	}
 
 	private void setTextStyle(Text t, String fontWeight, int fontSize) {
 		t.setStyle(String.format("-fx-font-weight: %s; -fx-font-size: %s", fontWeight, fontSize));
 	}
 
-	/** Paint the clock */
-	private void paintClock() {
-		// Initialize clock parameters
-		double clockRadius = Math.min(w, h) * 0.8 * 0.5;
-		double centerX = w / 2;
-		double centerY = h / 2 + 20;
-
-		// Draw circle
-		Circle circle = new Circle(centerX, centerY, clockRadius);
-		circle.setStyle("-fx-fill: white; -fx-stroke: saddlebrown; -fx-stroke-width: 3");
-		Text t1 = new Text(centerX - 9, centerY - clockRadius + 18, "12");
-		Text t2 = new Text(centerX - clockRadius + 5, centerY + 5, "9");
-		Text t3 = new Text(centerX + clockRadius - 14, centerY + 3, "3");
-		Text t4 = new Text(centerX - 6, centerY + clockRadius - 5, "6");
-		setTextStyle(t1, "bold", 18); setTextStyle(t2, "bold", 18); setTextStyle(t3, "bold", 18); setTextStyle(t4, "bold", 18);
-
-		// Draw second hand
-		double sLength = clockRadius * 0.8;
-		double secondX = centerX + sLength *
-				Math.sin(second * (2 * Math.PI / 60));
-		double secondY = centerY - sLength *
-				Math.cos(second * (2 * Math.PI / 60));
-		Line sLine = new Line(centerX, centerY, secondX, secondY);
+	/**
+	 * Method: buildClock
+	 * Create every node of the clock exactly once and add them to this pane. Styles, colors and the face image
+	 * are set up here as well; only setTheme() changes them later. Positions are left to layoutClock().
+	 */
+	private void buildClock() {
+		// Circle and the 12/3/6/9 numerals
+		circle = new Circle();
+		t12 = new Text("12"); t9 = new Text("9"); t3 = new Text("3"); t6 = new Text("6");
+		setTextStyle(t12, "bold", 18); setTextStyle(t9, "bold", 18); setTextStyle(t3, "bold", 18); setTextStyle(t6, "bold", 18);
+		applyTheme();
+
+		/* Each hand is drawn pointing straight up at 12 o'clock and then turned by its Rotate transform.
+		 * A tick therefore only has to change three angles. */
+		sRotate = new Rotate(); mRotate = new Rotate(); hRotate = new Rotate();
+		sLine = new Line();
 		sLine.setStroke(Color.RED);
-
-		// Draw minute hand
-		double mLength = clockRadius * 0.8;
-		double xMinute = centerX + mLength *
-				Math.sin(minute * (2 * Math.PI / 60));
-		double minuteY = centerY - mLength *
-				Math.cos(minute * (2 * Math.PI / 60));
-		Line mLine = new Line(centerX, centerY, xMinute, minuteY);
+		sLine.getTransforms().add(sRotate);
+		mLine = new Line();
 		mLine.setStroke(Color.BLUE);
 		mLine.setStrokeWidth(5);
-
-		// Draw hour hand
-		double hLength = clockRadius * 0.6;
-		double hourX = centerX + hLength *
-				Math.sin((hour % 12 + minute / 60.0) * (2 * Math.PI / 12));
-		double hourY = centerY - hLength *
-				Math.cos((hour % 12 + minute / 60.0) * (2 * Math.PI / 12));
-		Line hLine = new Line(centerX, centerY, hourX, hourY);
+		mLine.getTransforms().add(mRotate);
+		hLine = new Line();
 		hLine.setStroke(Color.TEAL);
 		hLine.setStrokeWidth(5);
+		hLine.getTransforms().add(hRotate);
 
-		//Set digital time
-		String timeString = String.format("%02d:%02d:%02d %s",
-				this.getHour(), this.getMinute(), this.getSecond(), (this.isPM() ? "PM" : "AM"));
-		Label lblTime = new Label(timeString);
+		//Digital time
+		lblTime = new Label();
 		lblTime.setStyle("-fx-font-size: 19; -fx-text-fill: blue; -fx-font-weight: bold");
-		lblTime.relocate(centerX - 52, centerY + this.h / 2 - 27);
 
-		//Set today's date
-		Label lblDate = new Label("Today: " + this.date);
+		//Today's date
+		lblDate = new Label();
 		lblDate.setPadding(new Insets(1, 7, 1, 7));
-//		lblDate.setTextFill(Paint.valueOf("darkgray"));
 		lblDate.setStyle("-fx-font-size: 14; -fx-text-fill: lightyellow; -fx-background-color: tomato; -fx-background-radius: 20px, 20px, 2px, 1px;");
-		lblDate.relocate(centerX - 65, centerY - this.h / 2 - 5);
-//		lblDate.relocate(63, 12);
 
+		//The image is decoded in the background at the size it is shown at, and shared with every other clock. See loadImage().
+		iview = new ImageView();
+		iview.setFitHeight(IMAGE_HEIGHT); iview.setFitWidth(IMAGE_WIDTH);
+		iview.setOpacity(0.8);
+		loadImage(Screen.getPrimary().getOutputScaleX());
+
+		face = new Group(circle, iview, t12, t9, t3, t6);
+		face.setCache(CACHE_FACE);
+		face.setCacheHint(CacheHint.SPEED);
+		/* Any change to the face (new size, new theme, the image arriving) re-renders the cached bitmap by itself. When the window
+		 * moves to a screen with a different scale (DPI), the image is swapped for one decoded at the new scale, and the bitmap
+		 * has to be redone as well. */
+		sceneProperty().addListener((o, oldScene, scene) -> {
+			if(oldScene != null) {
+				oldScene.removePreLayoutPulseListener(repaint);
+				oldScene.windowProperty().removeListener(windowChanged);
+			}
+			followOutputScale(oldScene == null ? null : oldScene.getWindow(), scene == null ? null : scene.getWindow());
+			if(scene == null) return;
+			if(selfRepainting) scene.addPreLayoutPulseListener(repaint);
+			scene.windowProperty().addListener(windowChanged);
+			if(dirty) Platform.requestNextPulse();
+		});
+
+		getChildren().addAll(face, mLine, hLine, sLine, lblTime, lblDate);
+		layoutClock();
+
+		hour.addListener(timeChanged); minute.addListener(timeChanged); second.addListener(timeChanged); pm.addListener(timeChanged);
+		w.addListener(sizeChanged); h.addListener(sizeChanged);
+	}
+
+	/** Have the clock repainted on the next pulse. Any further changes before then are painted along with this one. */
+	private void markDirty() {
+		if(dirty) return;
+		dirty = true;
+		if(getScene() != null) Platform.requestNextPulse();
+	}
+
+	/**
+	 * Method: repaint
+	 * Run by the scene before each layout pass, or by the owner of a clock that does not repaint itself: bring the nodes up to
+	 * date with everything that changed since the last pulse, laying the clock out again only if its size changed. Does nothing
+	 * if nothing changed.
+	 */
+	public void repaint() {
+		if(!dirty) return;
+		dirty = false;
+		if(sizeDirty) {
+			sizeDirty = false;
+			layoutClock();
+		}
+		paintClock();
+	}
+
+	/**
+	 * Method: followOutputScale
+	 * Watch the output scale of the window the clock is now in instead of the one it was in before.
+	 * @param oldWindow the window the clock was in, or null
+	 * @param window the window it is in now, or null
+	 */
+	private void followOutputScale(Window oldWindow, Window window) {
+		if(oldWindow == window) return;
+		if(oldWindow != null) oldWindow.outputScaleXProperty().removeListener(outputScaleChanged);
+		if(window == null) return;
+		window.outputScaleXProperty().addListener(outputScaleChanged);
+		if(window.getOutputScaleX() != imageScale) loadImage(window.getOutputScaleX());
+	}
+
+	/** Show the image decoded for the given screen scale, as soon as the shared AssetCache has it. */
+	private void loadImage(double scale) {
+		imageScale = scale;
+		CompletableFuture<Image> image = AssetCache.getShared().load(IMAGE, IMAGE_WIDTH, IMAGE_HEIGHT, scale);
+		if(image.isDone() && !image.isCompletedExceptionally()) iview.setImage(image.join());	//already decoded for another clock
+		else image.whenComplete((img, e) -> Platform.runLater(() -> {
+			if(e != null) System.out.printf("Could not load %s: %s\n", IMAGE, e);
+			else if(scale == imageScale) iview.setImage(img);	//unless the scale changed again in the meantime
+		}));
+	}
+
+	/** Throw away the cached bitmap of the face, so it is rendered afresh on the next frame. */
+	private void invalidateFace() {
+		if(!CACHE_FACE) return;
+		face.setCache(false);
+		face.setCache(true);
+	}
 
-		//Loading an image this way loads it from the root directory.
-//		ImageView iview = new ImageView(new Image("file:Poohcrew.jpg"));
+	/**
+	 * Method: layoutClock
+	 * Recompute the geometry of the clock (circle, numerals, hand lengths, label and image positions) from w and h.
+	 * Only needs to run when the size changes, i.e. on the pulse after setW() / setH().
+	 */
+	private void layoutClock() {
+		// Initialize clock parameters
+		double w = getW(), h = getH();
+		double clockRadius = Math.min(w, h) * 0.8 * 0.5;
+		double centerX = w / 2;
+		double centerY = h / 2 + 20;
 
-		//Loading an image this way loads it from the specified directory.
-//		ImageView iview = new ImageView(new Image("file:src/pooh_clock/Image/Poohcrew.jpg"));
+		circle.setCenterX(centerX); circle.setCenterY(centerY); circle.setRadius(clockRadius);
+		t12.setX(centerX - 9); t12.setY(centerY - clockRadius + 18);
+		t9.setX(centerX - clockRadius + 5); t9.setY(centerY + 5);
+		t3.setX(centerX + clockRadius - 14); t3.setY(centerY + 3);
+		t6.setX(centerX - 6); t6.setY(centerY + clockRadius - 5);
 
-		//Use URL stream to load image
-		ImageView iview = new ImageView(new Image(getClass().getResourceAsStream("Image/Poohcrew.jpg")));
+		// Hands: second and minute hands are 80% of the radius, hour hand 60%
+		setHand(sLine, sRotate, centerX, centerY, clockRadius * 0.8);
+		setHand(mLine, mRotate, centerX, centerY, clockRadius * 0.8);
+		setHand(hLine, hRotate, centerX, centerY, clockRadius * 0.6);
 
-		iview.setFitHeight(100); iview.setFitWidth(150);
+		lblTime.relocate(centerX - 52, centerY + h / 2 - 27);
+		lblDate.relocate(centerX - 65, centerY - h / 2 - 5);
 		iview.setX(centerX - iview.getFitWidth() / 2); iview.setY(centerY - iview.getFitHeight() / 2);
-		iview.setOpacity(0.8);
+	}
+
+	/** Point the given hand straight up from the center with the given length, and pivot its rotation on the center. */
+	private void setHand(Line hand, Rotate rotate, double centerX, double centerY, double length) {
+		hand.setStartX(centerX); hand.setStartY(centerY);
+		hand.setEndX(centerX); hand.setEndY(centerY - length);
+		rotate.setPivotX(centerX); rotate.setPivotY(centerY);
+	}
 
-		getChildren().clear();
-		getChildren().addAll(circle, iview,  t1, t2, t3, t4, mLine, hLine, sLine, lblTime, lblDate);
+	/** Paint the clock. Only the hand angles and the label texts change from one tick to the next. Run from repaint(). */
+	private void paintClock() {
+		long paintStart = Telemetry.begin();
+		int hour = getHour(), minute = getMinute(), second = getSecond();
+		if(!sweep) sRotate.setAngle(second * 6);		//360 degrees / 60 secs. In sweep mode the sweeper moves this hand.
+		mRotate.setAngle(minute * 6);					//360 degrees / 60 mins
+		hRotate.setAngle((hour % 12 + minute / 60.0) * 30);	//360 degrees / 12 hours
+
+		//Set digital time. The label is only touched when a digit actually changed.
+		if(timeFmt.set(0, hour) | timeFmt.set(1, minute) | timeFmt.set(2, second) | timeFmt.setSuffix(this.isPM() ? "PM" : "AM")) {
+			lblTime.setText(timeFmt.toString());
+		}
+
+		//Set today's date
+		String dateText = dateFmt.toString();		//same String instance as last time unless the date changed
+		if(dateText != lblDate.getText()) lblDate.setText(dateText);
+		Telemetry.end(Telemetry.Metric.CLOCK_PAINT, paintStart);
 	}
 }
@@ -0,0 +1,550 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/** Class: ControlServer.java
+ *
+ *  This Class - Small HTTP and WebSocket server on the loopback interface, so scripts and dashboards on the same machine can
+ *  control and watch the countdowns without touching the window. JSON endpoints:
+ *    GET  /timers                    every countdown: [{"id":..,"state":"RUNNING","remainingMillis":..}, ..]
+ *    GET  /timers/{id}               one countdown
+ *    POST /timers                    open a new countdown window; answers {"id":..}
+ *    POST /timers/{id}/digits?value=0130   type digits, like the keyboard does (only while reset)
+ *    POST /timers/{id}/start|pause|toggle|reset   what the play and reset buttons do
+ *    GET  /events                    WebSocket. Pushes {"time":..,"events":[..]} batches of "state", "expired" and "tick" events.
+ *  Everything runs on one NIO selector thread. Commands are handed to the JavaFX thread (through the given executor) and their
+ *  answers come back to the selector thread, so no socket is ever touched on the JavaFX thread, nor the engines anywhere else.
+ *  Events are collected from the TimerRegistry as they happen and sent every BATCH_MILLIS as one frame, encoded once and written
+ *  to every subscriber, along with a tick for every running countdown (worked out from its deadline, so ticks keep coming
+ *  while the window is iconified). A subscriber that falls more than MAX_QUEUED_BYTES behind is disconnected.
+ *  Listening on loopback alone does not keep web pages out, as the browser on the same machine can reach it. So every request
+ *  must name a loopback host (localhost, 127.0.0.1 or [::1]) in its Host header, which a page on another site reaching us
+ *  through DNS rebinding cannot do. Any request with an Origin header, i.e. from a browser, must come from a loopback origin
+ *  or one allowed by allowOrigin(); that covers WebSocket upgrades as well as commands. Anything else gets a 403.
+ */
+public class ControlServer implements TimerRegistry.Sink {
+
+	/** Time between event batches pushed to WebSocket subscribers. */
+	public static final long BATCH_MILLIS = 100;
+	/** A subscriber with more than this much unsent data is disconnected. */
+	public static final int MAX_QUEUED_BYTES = 1 << 20;
+	private static final int MAX_REQUEST_BYTES = 16 * 1024;
+	private static final String WS_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private final TimerRegistry registry;
+	private final Executor fxExecutor;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final Thread thread;
+	private volatile boolean running = true;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();		//for the selector thread
+	private final Queue<String> events = new ConcurrentLinkedQueue<>();		//encoded events since the last batch
+	private final List<Connection> subscribers = new ArrayList<>();			//confined to the selector thread
+	private final Set<String> allowedOrigins = ConcurrentHashMap.newKeySet();	//besides the loopback ones
+
+	/**
+	 * Construct a server and start listening on the loopback interface.
+	 * @param registry the countdowns to control
+	 * @param fxExecutor runs commands on the JavaFX thread, e.g. Platform::runLater
+	 * @param port port to listen on, or 0 for any free port (see getPort())
+	 */
+	public ControlServer(TimerRegistry registry, Executor fxExecutor, int port) throws IOException {
+		this.registry = registry;
+		this.fxExecutor = fxExecutor;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		registry.addSink(this);
+		thread = new Thread(this::run, "control-server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** @return the port the server listens on */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Method: allowOrigin
+	 * Let web pages from the given origin use the API, e.g. "https://dashboard.example.com". Pages served from a loopback host
+	 * are always allowed.
+	 */
+	public void allowOrigin(String origin) {
+		allowedOrigins.add(origin.toLowerCase(Locale.ROOT));
+	}
+
+	/** Stop listening and disconnect everybody. */
+	public void close() {
+		registry.removeSink(this);
+		running = false;
+		selector.wakeup();
+	}
+
+	/* TimerRegistry.Sink. Invoked on the JavaFX thread: only encode and queue. */
+	@Override
+	public void stateChanged(TimerRegistry.Snapshot snapshot) {
+		events.add(toJson("state", snapshot, registry.getTimeSource().nanoTime()));
+	}
+
+	@Override
+	public void expired(TimerRegistry.Snapshot snapshot) {
+		events.add("{\"type\":\"expired\",\"id\":" + snapshot.id + "}");
+	}
+
+	/** The selector loop. */
+	private void run() {
+		long nextBatch = System.nanoTime();
+		try {
+			while(running) {
+				long wait = Math.max((nextBatch - System.nanoTime()) / 1000000, 1);
+				selector.select(wait);
+				Runnable task;
+				while((task = tasks.poll()) != null) task.run();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if(!key.isValid()) continue;
+						if(key.isAcceptable()) accept();
+						else {
+							Connection c = (Connection) key.attachment();
+							if(key.isReadable()) c.read();
+							if(key.isValid() && key.isWritable()) c.flush();
+						}
+					}
+					catch(IOException ioe) {
+						if(key.attachment() instanceof Connection) ((Connection) key.attachment()).close();
+					}
+				}
+				if(System.nanoTime() - nextBatch >= 0) {
+					sendBatch();
+					nextBatch = System.nanoTime() + BATCH_MILLIS * 1000000;
+				}
+			}
+		}
+		catch(IOException ioe) {
+			System.out.printf("Control server stopped: %s\n", ioe);
+		}
+		finally {
+			for(SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				}
+				catch(IOException ignored) {}
+			}
+			try {
+				selector.close();
+			}
+			catch(IOException ignored) {}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel ch = server.accept();
+		if(ch == null) return;
+		ch.configureBlocking(false);
+		Connection c = new Connection(ch);
+		c.key = ch.register(selector, SelectionKey.OP_READ, c);
+	}
+
+	/** Send everything that happened since the last batch, plus a tick per running countdown, to every subscriber. */
+	private void sendBatch() {
+		if(subscribers.isEmpty()) {
+			events.clear();
+			return;
+		}
+		long now = registry.getTimeSource().nanoTime();		//the clock the deadlines are on
+		StringBuilder sb = new StringBuilder("{\"time\":").append(System.currentTimeMillis()).append(",\"events\":[");
+		int n = 0;
+		String event;
+		while((event = events.poll()) != null) {
+			if(n++ > 0) sb.append(',');
+			sb.append(event);
+		}
+		for(TimerRegistry.Snapshot s : registry.getSnapshots()) {
+			if(s.state != CountdownEngine.State.RUNNING) continue;
+			if(n++ > 0) sb.append(',');
+			sb.append(toJson("tick", s, now));
+		}
+		if(n == 0) return;		//nothing to say
+		sb.append("]}");
+		ByteBuffer frame = wsFrame(0x1, sb.toString().getBytes(StandardCharsets.UTF_8));	//encoded once for everybody
+		for(Connection c : new ArrayList<>(subscribers)) c.send(frame.duplicate());
+	}
+
+	/** Route one HTTP request. */
+	private void handle(Connection c, String method, String target, Map<String, String> headers) {
+		String path = target, query = "";
+		int q = target.indexOf('?');
+		if(q >= 0) {
+			path = target.substring(0, q);
+			query = target.substring(q + 1);
+		}
+		String[] parts = path.split("/");	//"", "timers", id, op
+
+		if(!isLoopbackHost(headers.get("host"))) {
+			c.respond(403, "{\"error\":\"Host must be localhost\"}");
+			return;
+		}
+		String origin = headers.get("origin");
+		if(origin != null && !isAllowedOrigin(origin)) {
+			c.respond(403, "{\"error\":\"Origin not allowed\"}");
+			return;
+		}
+		if(path.equals("/events")) {
+			if(!method.equals("GET") || !"websocket".equalsIgnoreCase(headers.get("upgrade")) || headers.get("sec-websocket-key") == null) {
+				c.respond(400, "{\"error\":\"WebSocket upgrade expected\"}");
+				return;
+			}
+			c.upgrade(headers.get("sec-websocket-key"));
+			return;
+		}
+		if(parts.length < 2 || !parts[1].equals("timers") || parts.length > 4) {
+			c.respond(404, "{\"error\":\"Not found\"}");
+			return;
+		}
+		long id = -1;
+		if(parts.length >= 3) {
+			try {
+				id = Long.parseLong(parts[2]);
+			}
+			catch(NumberFormatException nfe) {
+				c.respond(404, "{\"error\":\"Not found\"}");
+				return;
+			}
+		}
+
+		if(method.equals("GET") && parts.length <= 3) {
+			long now = registry.getTimeSource().nanoTime();
+			if(parts.length == 2) {
+				StringBuilder sb = new StringBuilder("[");
+				for(TimerRegistry.Snapshot s : registry.getSnapshots()) {
+					if(sb.length() > 1) sb.append(',');
+					sb.append(toJson(null, s, now));
+				}
+				c.respond(200, sb.append(']').toString());
+			}
+			else {
+				TimerRegistry.Snapshot s = registry.getSnapshot(id);
+				if(s == null) c.respond(404, "{\"error\":\"No such timer\"}");
+				else c.respond(200, toJson(null, s, now));
+			}
+			return;
+		}
+		if(!method.equals("POST") || parts.length == 3) {
+			c.respond(405, "{\"error\":\"Method not allowed\"}");
+			return;
+		}
+
+		/* Commands run on the JavaFX thread. The answer is handed back to this thread to be written. */
+		long timerId = id;
+		String op = (parts.length == 4 ? parts[3] : null), value = queryParam(query, "value");
+		fxExecutor.execute(() -> {
+			int status;
+			String body;
+			try {
+				if(op == null) {
+					long newId = registry.create();
+					status = (newId < 0 ? 409 : 201);
+					body = (newId < 0 ? "{\"error\":\"Could not open a countdown\"}" : "{\"id\":" + newId + "}");
+				}
+				else {
+					TimerRegistry.Snapshot s = registry.command(timerId, op, value);
+					status = (s == null ? 404 : 200);
+					body = (s == null ? "{\"error\":\"No such timer\"}" : toJson(null, s, registry.getTimeSource().nanoTime()));
+				}
+			}
+			catch(IllegalArgumentException iae) {
+				status = 400;
+				body = "{\"error\":" + Json.quote(iae.getMessage()) + "}";
+			}
+			catch(IllegalStateException ise) {
+				status = 409;
+				body = "{\"error\":" + Json.quote(ise.getMessage()) + "}";
+			}
+			catch(RuntimeException re) {		//a bug; the client still gets an answer, and the connection is not left hanging
+				System.out.printf("Control API command %s on timer %d failed: %s\n", op, timerId, re);
+				status = 500;
+				body = "{\"error\":" + Json.quote(String.valueOf(re)) + "}";
+			}
+			int finalStatus = status;
+			String finalBody = body;
+			tasks.add(() -> c.respond(finalStatus, finalBody));
+			selector.wakeup();
+		});
+	}
+
+	/** @return true if the Host header names this machine by a loopback name or address, with or without a port */
+	private static boolean isLoopbackHost(String host) {
+		if(host == null) return false;
+		host = host.trim().toLowerCase(Locale.ROOT);
+		if(host.startsWith("[")) {
+			int close = host.indexOf(']');
+			return close > 0 && host.substring(0, close + 1).equals("[::1]") && (close + 1 == host.length() || host.charAt(close + 1) == ':');
+		}
+		int colon = host.indexOf(':');
+		if(colon >= 0) host = host.substring(0, colon);
+		return host.equals("localhost") || host.equals("127.0.0.1");
+	}
+
+	/** @return true if web pages from the given origin may use the API */
+	private boolean isAllowedOrigin(String origin) {
+		origin = origin.trim().toLowerCase(Locale.ROOT);
+		if(allowedOrigins.contains(origin)) return true;
+		try {
+			URI uri = new URI(origin);
+			//"null", as sent by sandboxed pages and file: URLs, has no scheme
+			if(!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) return false;
+			return isLoopbackHost(uri.getHost());
+		}
+		catch(URISyntaxException e) {
+			return false;
+		}
+	}
+
+	private static String queryParam(String query, String name) {
+		for(String pair : query.split("&")) {
+			if(pair.startsWith(name + "=")) return pair.substring(name.length() + 1);
+		}
+		return null;
+	}
+
+	private static String toJson(String type, TimerRegistry.Snapshot s, long nowNanos) {
+		StringBuilder sb = new StringBuilder("{");
+		if(type != null) sb.append("\"type\":\"").append(type).append("\",");
+		return sb.append("\"id\":").append(s.id).append(",\"state\":\"").append(s.state).append("\",\"remainingMillis\":")
+				.append(s.remainingNanos(nowNanos) / 1000000).append('}').toString();
+	}
+
+	/** @return a complete, unmasked WebSocket frame */
+	private static ByteBuffer wsFrame(int opcode, byte[] payload) {
+		int len = payload.length;
+		ByteBuffer frame = ByteBuffer.allocate(len + 10);
+		frame.put((byte) (0x80 | opcode));		//FIN + opcode
+		if(len < 126) frame.put((byte) len);
+		else if(len < 65536) frame.put((byte) 126).putShort((short) len);
+		else frame.put((byte) 127).putLong(len);
+		frame.put(payload);
+		frame.flip();
+		return frame;
+	}
+
+	/** One client connection: an HTTP request/response, or after an upgrade a WebSocket subscriber. */
+	private class Connection {
+		private final SocketChannel ch;
+		private SelectionKey key;
+		private ByteBuffer in = ByteBuffer.allocate(1024);
+		private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+		private int queuedBytes;
+		private boolean webSocket, closeWhenFlushed, busy;		//busy: a command is on its way through the JavaFX thread
+
+		Connection(SocketChannel ch) {
+			this.ch = ch;
+		}
+
+		void read() throws IOException {
+			if(!in.hasRemaining()) {
+				if(in.capacity() >= MAX_REQUEST_BYTES) {
+					close();
+					return;
+				}
+				ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+				in.flip();
+				bigger.put(in);
+				in = bigger;
+			}
+			int n = ch.read(in);
+			if(n < 0) {
+				close();
+				return;
+			}
+			if(webSocket) readFrames();
+			else if(!busy) readRequest();
+		}
+
+		/** Parse an HTTP request once its headers (and body, if any) are all in. */
+		private void readRequest() {
+			byte[] data = new byte[in.position()];
+			in.flip();
+			in.get(data);
+			in.clear();
+			String text = new String(data, StandardCharsets.ISO_8859_1);
+			int end = text.indexOf("\r\n\r\n");
+			if(end < 0) {
+				in.put(data);	//not all in yet
+				return;
+			}
+			String[] lines = text.substring(0, end).split("\r\n");
+			String[] requestLine = lines[0].split(" ");
+			Map<String, String> headers = new LinkedHashMap<>();
+			for(int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if(colon > 0) headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+			}
+			int bodyLength = 0;
+			try {
+				bodyLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+			}
+			catch(NumberFormatException ignored) {}
+			if(data.length < end + 4 + bodyLength) {
+				in.put(data);	//body not all in yet
+				return;
+			}
+			if(requestLine.length != 3) {
+				respond(400, "{\"error\":\"Bad request\"}");
+				return;
+			}
+			busy = true;
+			handle(this, requestLine[0], requestLine[1], headers);
+		}
+
+		/** Switch to WebSocket and subscribe to the event batches. */
+		void upgrade(String wsKey) {
+			String accept;
+			try {
+				accept = Base64.getEncoder().encodeToString(
+						MessageDigest.getInstance("SHA-1").digest((wsKey + WS_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+			}
+			catch(NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			send(ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+					+ "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+			webSocket = true;
+			busy = false;
+			subscribers.add(this);
+		}
+
+		/** Handle frames from a subscriber: answer pings and closes, ignore anything else. */
+		private void readFrames() {
+			in.flip();
+			while(in.remaining() >= 2) {
+				in.mark();
+				int b0 = in.get() & 0xFF, b1 = in.get() & 0xFF;
+				long len = b1 & 0x7F;
+				int need = ((b1 & 0x80) != 0 ? 4 : 0);
+				if(len == 126) need += 2;
+				else if(len == 127) need += 8;
+				if(in.remaining() < need) {
+					in.reset();
+					break;
+				}
+				if(len == 126) len = in.getShort() & 0xFFFF;
+				else if(len == 127) len = in.getLong();
+				if(len > MAX_REQUEST_BYTES) {
+					close();
+					return;
+				}
+				byte[] mask = new byte[4];
+				if((b1 & 0x80) != 0) in.get(mask);
+				if(in.remaining() < len) {
+					in.reset();
+					break;
+				}
+				byte[] payload = new byte[(int) len];
+				in.get(payload);
+				for(int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+				int opcode = b0 & 0x0F;
+				if(opcode == 0x8) {				//close: echo it and hang up
+					send(wsFrame(0x8, payload));
+					closeWhenFlushed = true;
+					subscribers.remove(this);
+				}
+				else if(opcode == 0x9) send(wsFrame(0xA, payload));	//ping: pong
+			}
+			in.compact();
+		}
+
+		/** Write an HTTP response and hang up once it is sent. */
+		void respond(int status, String json) {
+			byte[] body = json.getBytes(StandardCharsets.UTF_8);
+			String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\nContent-Type: application/json\r\nContent-Length: " + body.length
+					+ "\r\nConnection: close\r\n\r\n";
+			ByteBuffer buf = ByteBuffer.allocate(head.length() + body.length);
+			buf.put(head.getBytes(StandardCharsets.ISO_8859_1)).put(body).flip();
+			send(buf);
+			closeWhenFlushed = true;
+		}
+
+		/** Queue data and write as much of it as the socket takes right now. */
+		void send(ByteBuffer buf) {
+			if(!ch.isOpen()) return;
+			out.add(buf);
+			queuedBytes += buf.remaining();
+			if(queuedBytes > MAX_QUEUED_BYTES) {		//too slow to keep up: drop it rather than buffer without limit
+				close();
+				return;
+			}
+			try {
+				flush();
+			}
+			catch(IOException ioe) {
+				close();
+			}
+		}
+
+		void flush() throws IOException {
+			while(!out.isEmpty()) {
+				ByteBuffer buf = out.peek();
+				queuedBytes -= ch.write(buf);
+				if(buf.hasRemaining()) break;
+				out.poll();
+			}
+			if(out.isEmpty() && closeWhenFlushed) {
+				close();
+				return;
+			}
+			if(key != null && key.isValid()) key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		void close() {
+			subscribers.remove(this);
+			if(key != null) key.cancel();
+			try {
+				ch.close();
+			}
+			catch(IOException ignored) {}
+		}
+	}
+
+	private static String reason(int status) {
+		switch(status) {
+		case 200: return "OK";
+		case 201: return "Created";
+		case 400: return "Bad Request";
+		case 403: return "Forbidden";
+		case 404: return "Not Found";
+		case 405: return "Method Not Allowed";
+		case 409: return "Conflict";
+		case 500: return "Internal Server Error";
+		default: return "Error";
+		}
+	}
+}
@@ -0,0 +1,307 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/** Class: CountdownEngine.java
+ *
+ *  This Class - The countdown logic behind CountdownTimer, with no dependency on JavaFX. Keeps track of the digits the
+ *  end user typed in, the remaining time while running or paused, and tells its listeners about ticks, state changes
+ *  and expiry. The engine does not run by itself: whoever owns it calls tick() periodically (CountdownTimer does this
+ *  from an AnimationTimer), and the time comes from an injectable TimeSource so it can be driven without a real clock.
+ *  If the engine is given a TimingWheel, its expiry is scheduled on the wheel instead, so that many engines can share one
+ *  scheduler and tick() is only needed for updating a display.
+ *  Not thread-safe; all calls are expected to come from one thread.
+ */
+public class CountdownEngine {
+
+	/** The state of the countdown. */
+	public enum State { IDLE, RUNNING, PAUSED }
+
+	/** Monotonic time source, in nanoseconds. System.nanoTime() in production. */
+	public interface TimeSource {
+		long nanoTime();
+	}
+
+	/** Default time source backed by System.nanoTime(). */
+	public static final TimeSource SYSTEM_TIME = System::nanoTime;
+
+	/** Receives countdown events. All methods have empty defaults so listeners only override what they need. */
+	public interface Listener {
+		/** Invoked on every tick() while running, and whenever the displayed time changes (digit typed, pause, reset). */
+		default void tick(CountdownEngine engine) {}
+		/** Invoked whenever the engine moves to a different state. */
+		default void stateChanged(CountdownEngine engine, State state) {}
+		/** Invoked once the countdown reaches 00:00:00. The engine has already been reset at this point. */
+		default void expired(CountdownEngine engine) {}
+	}
+
+	private final TimeSource timeSource;
+	private final TimingWheel wheel;		//null if expiry is detected by tick()
+	private TimingWheel.Timeout expiry;		//pending expiry on the wheel while running
+	private final List<Listener> listeners = new ArrayList<>();
+	private State state = State.IDLE;
+	private long remainingNanos, deadlineNanos;	//time left on the countdown, and the time at which it reaches zero
+	private int millisec, sec, min, hour;		//what the timer display currently shows
+
+	/* This array has 6 elements to keep track of each digit of the timer display 00:00:00, and how it changes dynamically when
+	 * digits are entered. The first element is the RIGHT-MOST digit of the display. See enterDigit() for more details. */
+	private final int[] keyTypedOrder = new int[6];
+	private int keyTypedOrderInt = -1;
+
+	/** Construct an engine driven by System.nanoTime(). */
+	public CountdownEngine() {
+		this(SYSTEM_TIME);
+	}
+
+	/** Construct an engine driven by the given time source. */
+	public CountdownEngine(TimeSource timeSource) {
+		this.timeSource = timeSource;
+		this.wheel = null;
+	}
+
+	/** Construct an engine whose expiry is scheduled on the given wheel, using the wheel's time source. */
+	public CountdownEngine(TimingWheel wheel) {
+		this.timeSource = wheel.getTimeSource();
+		this.wheel = wheel;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public boolean isRunning() {
+		return state == State.RUNNING;
+	}
+
+	public boolean isPaused() {
+		return state == State.PAUSED;
+	}
+
+	public int getHour() {
+		return hour;
+	}
+
+	public int getMin() {
+		return min;
+	}
+
+	public int getSec() {
+		return sec;
+	}
+
+	public int getMillisec() {
+		return millisec;
+	}
+
+	/** @return the time source value at which the current, or most recent, run of the countdown reaches zero */
+	public long getDeadlineNanos() {
+		return deadlineNanos;
+	}
+
+	/**
+	 * Method: getRemainingNanos
+	 * @return the time left on the countdown in nanoseconds. While running this is measured against the time source.
+	 */
+	public long getRemainingNanos() {
+		return state == State.RUNNING ? Math.max(deadlineNanos - timeSource.nanoTime(), 0) : remainingNanos;
+	}
+
+	/**
+	 * Method: enterDigit
+	 * Type a digit into the timer display. Only has an effect while the timer is idle (neither running nor paused). Examples:
+	 * On entering 0, the timer will still display 00:00:00.
+	 * On entering 3, the timer will display 00:00:03.
+	 * Then, on entering 0, the timer will display 00:00:30.
+	 * Then, on entering 9, the timer will display 00:03:09.
+	 * @param digit a digit between 0 and 9
+	 * @return true if the digit was accepted
+	 */
+	public boolean enterDigit(int digit) {
+		if(digit < 0 || digit > 9 || state != State.IDLE) return false;
+		/* If the display is all zeros and the digit is something other than 0, then set the first element of the
+		 * keyTypedOrder array to the digit, and move keyTypedOrderInt from -1 to 0. This keeps track of which element
+		 * in the array should be updated. */
+		if(keyTypedOrderIsEmpty() && digit != 0) {
+			keyTypedOrder[0] = digit;
+			keyTypedOrderInt = 0;
+		}
+		/* Else, if the keyTypedOrder array is NOT empty, then increment the int var by 1, except if it's greater than 5
+		 * (indicating the last element of the array), in which case it stays at 5. */
+		else if(!keyTypedOrderIsEmpty()) {
+			keyTypedOrderInt = (keyTypedOrderInt + 1 > 5 ? 5 : keyTypedOrderInt + 1);
+			/* Scoot every typed digit thus far to the left. So, if the current display is 00:36:05, and
+			 * the user types '7', then the new display is: 03:60:57. */
+			for (int i = keyTypedOrderInt; i > 0; i--) {
+				keyTypedOrder[i] = keyTypedOrder[i-1];
+			}
+			keyTypedOrder[0] = digit;	//Add the most recently typed digit to the very 1st element of the array.
+		}
+		/* We calculate the values for sec, min, and hour from each pair of digits in the array, tens digit first. */
+		sec = keyTypedOrder[1] * 10 + keyTypedOrder[0];
+		min = keyTypedOrder[3] * 10 + keyTypedOrder[2];
+		hour = keyTypedOrder[5] * 10 + keyTypedOrder[4];
+		fireTick();
+		return true;
+	}
+
+	/**
+	 * Method: start
+	 * Start the countdown from the entered digits, or resume it if it is paused.
+	 * @return true if the countdown is now running. False if there was nothing to count down.
+	 */
+	public boolean start() {
+		if(state == State.RUNNING) return true;
+		if(state == State.IDLE && millisec == 0 && sec == 0 && min == 0 && hour == 0) return false;
+		/* If the timer was paused, remainingNanos still holds exactly how much time was left, so we just carry on from there.
+		 * Otherwise this is a fresh countdown from the entered digits. */
+		if(state == State.IDLE) {
+			/* There may be instances where the user inputs something like 00:90:00, to indicate 90 mins countdown.
+			 * If so, upon starting, the timer will automatically update itself to 01:30:00, aka 1 hr and 30 mins. */
+			if(sec > 59) {
+				min++;
+				sec -= 60;
+			}
+			if(min > 59) {
+				hour++;
+				min -= 60;
+			}
+			remainingNanos = (((hour * 60L + min) * 60 + sec) * 1000 + millisec) * 1000000;
+			fireTick();
+		}
+		deadlineNanos = timeSource.nanoTime() + remainingNanos;	//the countdown reaches zero this far from now
+		if(wheel != null) expiry = wheel.schedule(deadlineNanos, this::expire);
+		setState(State.RUNNING);
+		return true;
+	}
+
+	/**
+	 * Method: pause
+	 * Pause the countdown, keeping exactly how much time was left.
+	 */
+	public void pause() {
+		if(state != State.RUNNING) return;
+		remainingNanos = Math.max(deadlineNanos - timeSource.nanoTime(), 0);
+		cancelExpiry();
+		setDisplayTime(remainingNanos);
+		setState(State.PAUSED);
+		fireTick();
+	}
+
+	/**
+	 * Method: toggle
+	 * Pause the countdown if it is running, otherwise start or resume it. This is what the play/pause button does.
+	 */
+	public void toggle() {
+		if(state == State.RUNNING) pause(); else start();
+	}
+
+	/**
+	 * Method: reset
+	 * Reset the timer to 00:00:00 and clear any entered digits.
+	 */
+	public void reset() {
+		cancelExpiry();
+		remainingNanos = 0;
+		millisec = 0; sec = 0; min = 0; hour = 0;
+		keyTypedOrderInt = -1;
+		for(int i = 0; i < keyTypedOrder.length; i++) {
+			keyTypedOrder[i] = 0;
+		}
+		setState(State.IDLE);
+		fireTick();
+	}
+
+	/**
+	 * Method: restore
+	 * Put the countdown straight into a running or paused state with the given time left, e.g. to carry on with a countdown
+	 * saved before the application was restarted. Any entered digits are cleared. A running countdown with no time left
+	 * expires on the next tick (or wheel advance).
+	 * @param remainingNanos the time left. Zero or negative if the countdown is already overdue.
+	 * @param running true to carry on counting down, false to restore it paused
+	 */
+	public void restore(long remainingNanos, boolean running) {
+		cancelExpiry();
+		keyTypedOrderInt = -1;
+		for(int i = 0; i < keyTypedOrder.length; i++) {
+			keyTypedOrder[i] = 0;
+		}
+		this.remainingNanos = Math.max(remainingNanos, 0);
+		setDisplayTime(this.remainingNanos);
+		if(running) {
+			deadlineNanos = timeSource.nanoTime() + this.remainingNanos;
+			if(wheel != null) expiry = wheel.schedule(deadlineNanos, this::expire);
+			setState(State.RUNNING);
+		}
+		else setState(State.PAUSED);
+		fireTick();
+	}
+
+	/**
+	 * Method: tick
+	 * Bring the countdown up to date with the time source. Without a wheel, this detects expiry on the first call at or after
+	 * the deadline. With a wheel, the display stays at zero until the wheel fires the expiry.
+	 */
+	public void tick() {
+		if(state != State.RUNNING) return;
+		long remaining = deadlineNanos - timeSource.nanoTime();
+		if(remaining <= 0 && wheel == null) {	//we have reached 00:00:00
+			expire();
+		}
+		else {
+			setDisplayTime(Math.max(remaining, 0));
+			fireTick();
+		}
+	}
+
+	/** The countdown has reached 00:00:00, so reset and let the listeners know. */
+	private void expire() {
+		if(state != State.RUNNING) return;
+		expiry = null;
+		reset();
+		for(int i = 0; i < listeners.size(); i++) listeners.get(i).expired(this);
+	}
+
+	private void cancelExpiry() {
+		if(expiry != null) {
+			expiry.cancel();
+			expiry = null;
+		}
+	}
+
+	/**
+	 * Method: keyTypedOrderIsEmpty
+	 * @return returns true if the array contains only 0 values, indicating a timer display of 00:00:00. Otherwise false
+	 */
+	public boolean keyTypedOrderIsEmpty() {
+		for(int i : keyTypedOrder) {
+			if(i != 0) return false;
+		}
+		return true;
+	}
+
+	/** Split the given remaining time into the hour, min, sec and millisec values of the display. */
+	private void setDisplayTime(long nanos) {
+		long totalMillis = nanos / 1000000;
+		millisec = (int) (totalMillis % 1000);
+		long totalSecs = totalMillis / 1000;
+		sec = (int) (totalSecs % 60);
+		min = (int) (totalSecs / 60 % 60);
+		hour = (int) (totalSecs / 3600);
+	}
+
+	private void setState(State newState) {
+		state = newState;
+		for(int i = 0; i < listeners.size(); i++) listeners.get(i).stateChanged(this, newState);
+	}
+
+	private void fireTick() {
+		for(int i = 0; i < listeners.size(); i++) listeners.get(i).tick(this);
+	}
+}
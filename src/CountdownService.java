@@ -0,0 +1,101 @@
+import java.io.File;
+import javafx.application.Platform;
+
+/** Class: CountdownService.java
+ *
+ *  This Class - Shared scheduling backend for every countdown in the application. All engines created by newEngine() schedule
+ *  their expiry on one TimingWheel, and a single per-frame PulseScheduler handle advances that wheel once per JavaFX pulse. The
+ *  handle only runs while at least one countdown is pending, so an idle service costs nothing. The service also holds the AlarmPlayer
+ *  that every countdown sounds its alarm through, the TimerJournal that keeps running countdowns across restarts, the TimerHistory
+ *  of everything every countdown did, the TimerRegistry through which they can be controlled from outside the windows, and the
+ *  AlarmPipeline that runs everything else that should happen when a countdown expires.
+ *  Must be used from the JavaFX application thread.
+ */
+public class CountdownService {
+
+	private final TimingWheel wheel;
+	private final PulseScheduler scheduler;
+	private PulseScheduler.Handle driver;
+	private final AlarmPlayer alarmPlayer;	//pre-loaded alarm sounds, shared by every countdown
+	private final TimerJournal journal;
+	private final TimerHistory history;
+	private final TimerRegistry registry;	//every countdown by id, for outside control (see ControlServer)
+	private final AlarmPipeline alarmPipeline = new AlarmPipeline(Platform::runLater);	//scripts, logs, webhooks etc. on expiry
+	private long nextTimerId = System.currentTimeMillis() * 1000;	//ids are unique across restarts, so they never clash with journal entries
+
+	/** Construct a service with a 1 ms wheel driven by System.nanoTime(), keeping its journal and history in the working directory. */
+	public CountdownService(PulseScheduler scheduler) {
+		this(new TimingWheel(), scheduler, null);
+	}
+
+	/**
+	 * Construct a service on top of the given wheel, turned by the given scheduler.
+	 * @param directory where the journal and history are kept, or null for the working directory
+	 */
+	public CountdownService(TimingWheel wheel, PulseScheduler scheduler, File directory) {
+		this.wheel = wheel;
+		this.journal = new TimerJournal(new File(directory, "ClockAnimation.journal"));
+		this.history = new TimerHistory(new File(directory, "ClockAnimation.history"), new File(directory, "ClockAnimation.history.totals"));
+		this.scheduler = scheduler;
+		this.alarmPlayer = new AlarmPlayer(wheel.getTimeSource());	//on the clock the countdowns' deadlines are on
+		this.registry = new TimerRegistry(wheel.getTimeSource());
+		this.driver = scheduler.everyFrame(now -> {
+			wheel.advance(wheel.getTimeSource().nanoTime());	//fires every countdown that expired since the last pulse
+			if(wheel.size() == 0) driver.stop();	//nothing left to wait for, so stop waking up
+		});
+	}
+
+	public AlarmPlayer getAlarmPlayer() {
+		return alarmPlayer;
+	}
+
+	public AlarmPipeline getAlarmPipeline() {
+		return alarmPipeline;
+	}
+
+	public TimerHistory getHistory() {
+		return history;
+	}
+
+	public TimerJournal getJournal() {
+		return journal;
+	}
+
+	public TimerRegistry getRegistry() {
+		return registry;
+	}
+
+	/** @return a new id for a countdown, unique across restarts */
+	public long newTimerId() {
+		return nextTimerId++;
+	}
+
+	/** @return the scheduler shared by every periodic piece of UI work */
+	public PulseScheduler getScheduler() {
+		return scheduler;
+	}
+
+	public TimingWheel getWheel() {
+		return wheel;
+	}
+
+	/**
+	 * Method: newEngine
+	 * @return a new countdown engine whose expiry is scheduled on this service's wheel
+	 */
+	public CountdownEngine newEngine() {
+		CountdownEngine engine = new CountdownEngine(wheel);
+		engine.addListener(new CountdownEngine.Listener() {
+			@Override
+			public void stateChanged(CountdownEngine engine, CountdownEngine.State state) {
+				if(state == CountdownEngine.State.RUNNING) driver.start();	//a countdown was just scheduled, so make sure the wheel turns
+			}
+
+			@Override
+			public void expired(CountdownEngine engine) {
+				Telemetry.record(Telemetry.Metric.COUNTDOWN_EXPIRY_LATENESS, wheel.getTimeSource().nanoTime() - engine.getDeadlineNanos());
+			}
+		});
+		return engine;
+	}
+}
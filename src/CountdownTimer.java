@@ -1,7 +1,4 @@
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -10,73 +7,111 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 public class CountdownTimer extends BorderPane {
 
-	private int millisec, sec, min, hour;
-	private boolean timerIsRunning, timerIsPausedButNotReset;
-	private Timeline timeline, blinkTimer;
+	private final CountdownEngine engine;	//the countdown logic. This class only renders it.
+	private PulseScheduler.Handle ticker;
+	private final RenderGovernor governor;	//pauses the display refresh while the countdown stage is closed or iconified
+	private final PulseScheduler.Handle blinkTimer;	//blinks the display every half second while the timer is reset
 	private Label timerLbl, millisecLbl;
+	private final TimeFormatter timerFmt = new TimeFormatter("00:00:00 "), millisecFmt = new TimeFormatter("000");
 	private Button playBtn, resetBtn, notesBtn;
-	private int[] keyTypedOrder;
-	private int keyTypedOrderInt;
-	private MediaPlayer mediaPlayer;
+	private final AlarmPlayer alarmPlayer;	//plays the alarm sound. Shared with the rest of the application.
+	private final AlarmPipeline alarmPipeline;	//everything else that happens on expiry, off the JavaFX thread. Also shared.
+	private String alarmSound = AlarmPlayer.DEFAULT_SOUND;
 	private Stage parentStage, textAreaStage;
 	private String textAreaNote;
+	private final TimerJournal journal;		//keeps this countdown across restarts while it is running or paused
+	private final TimerHistory history;		//keeps what this countdown did
+	private final long id;					//identifies this countdown in the journal
 
 	/**
-	 * 1-arg constructor.
+	 * 2-arg constructor.
 	 * @param parentStage the stage that contains the countdown timer. This param is needed for setting the MODALITY of the textArea pop-up stage.
 	 * See openTextArea() method for more details.
+	 * @param service the shared scheduling backend that detects when this countdown expires.
 	 */
-	public CountdownTimer(Stage parentStage) {
+	public CountdownTimer(Stage parentStage, CountdownService service) {
 		this.parentStage = parentStage;		//save the parent stage to a var
-		/* This array has 6 elements to keep track of each digit of the timer display 00:00:00, and how it changes dynamically when
-		 * digit keys are typed on the keyboard. See setOnKeyTyped event handler for more details. */
-		this.keyTypedOrder = new int[6];
 		this.textAreaNote = "";		//This is the string that will show up on the textArea pop-up stage. See openTextArea() method for details.
 
-		java.net.URL resource = getClass().getResource("Audio/coolNotes.mp3");
-		Media media = new Media(resource.toString());
-
-		/* Set up mediaplayer to control when the mp3 file is played */
-		this.mediaPlayer = new MediaPlayer(media);
-
-		/* Event handler that will control the timer display. Invoked by timeline.play() method and is updated every millisecond. */
-		EventHandler<ActionEvent> eventHandler = e -> {
-			/* Every time this event handler is invoked, we'll decrement millisec by one, and if necessary, decrement the other values as shown below */
-			millisec--;
-			if(millisec < 0) {
-				millisec = 999;
-				sec--;
-				if(sec < 0) {
-					sec = 59;
-					min--;
-					if(min < 0) {
-						min = 59;
-						hour--;
-						if(hour < 0) {	//If we get this far, then it means that we have reached 00:00:00 and we need to stop the timer and play media file.
-							millisec = 0; sec = 0; hour = 0; min = 0;
-							resetTimer();	//resetting the timer via this custom method also stops any media files.
-							playMedia();    //custom method to play audio file
-							if(!textAreaNote.equals("")) openTextArea();	//If there is any custom note (set by end user), then auto-open the text area as a pop-up.
-						}
-					}
+		/* The alarm sound is decoded ahead of time by the service's AlarmPlayer, so sounding it costs next to nothing. */
+		this.alarmPlayer = service.getAlarmPlayer();
+		this.alarmPipeline = service.getAlarmPipeline();
+		this.journal = service.getJournal();
+		this.history = service.getHistory();
+		this.id = service.newTimerId();
+
+		/* Blinking of the reset timer display. The same handle is started and stopped for every reset. */
+		blinkTimer = service.getScheduler().every(500000000L, now -> {
+			timerLbl.setVisible(!timerLbl.isVisible());	//toggle between visible and not visible every 0.5 secs.
+		});
+
+		/* The engine holds all the countdown state. We just listen to it and update the display accordingly. */
+		engine = service.newEngine();
+		engine.addListener(new CountdownEngine.Listener() {
+			@Override
+			public void tick(CountdownEngine engine) {
+				updateTimer();	//Custom method to update this timer display every time the time changes no matter what.
+				//Digits can also be typed through the TimerRegistry, in which case the display should stop blinking as well.
+				if(blinkTimer.isActive() && !engine.keyTypedOrderIsEmpty()) {
+					blinkTimer.stop();
+					timerLbl.setVisible(true);
+				}
+			}
+
+			@Override
+			public void stateChanged(CountdownEngine engine, CountdownEngine.State state) {
+				if(state == CountdownEngine.State.RUNNING) {
+					playBtn.setText("||");	//change the button display to a pause button.
+					if(governor.isActive()) ticker.start();
+				}
+				else {
+					ticker.stop();
+					playBtn.setText(">");	//change the button display to play button.
+					if(state == CountdownEngine.State.IDLE) showReset();
 				}
+				saveState();	//so the countdown survives a crash or restart
+			}
+
+			@Override
+			public void expired(CountdownEngine engine) {
+				//We have reached 00:00:00. The engine has already reset itself, which also stopped any media files.
+				alarmPlayer.play(alarmSound, CountdownTimer.this, engine.getDeadlineNanos());	//sound the alarm first. This returns immediately.
+				//Scripts, webhooks, notifications and the like run in the background. This returns immediately too.
+				alarmPipeline.fire(new AlarmPipeline.Alarm(id, textAreaNote, alarmSound, System.currentTimeMillis()));
+				//If there is any custom note (set by end user), then auto-open the text area as a pop-up. This is left for a later pulse
+				//so that building the pop-up does not hold up anything else expiring right now.
+				if(!textAreaNote.equals("")) Platform.runLater(() -> openTextArea());
+			}
+		});
+		engine.addListener(service.getHistory().recorder(id, service.getWheel().getTimeSource()));	//every start, pause, reset and expiry, for good
+		service.getRegistry().register(id, engine);	//so it can be controlled from outside this window as well
+
+		/* Nobody can see the display while the stage is closed or iconified, so stop refreshing it then. The countdown itself keeps
+		 * going (its expiry is on the service's timing wheel), and the display catches up as soon as the stage is back. */
+		governor = new RenderGovernor(parentStage, () -> {
+			ticker.stop();
+			blinkTimer.stop();
+		}, () -> {
+			if(engine.isRunning()) {
+				engine.tick();
+				ticker.start();
 			}
-			updateTimer();	//Custom method to update this timer display every time the event handler is invoked no matter what.
-		};
-		//end eventhandler
+			else if(engine.getState() == CountdownEngine.State.IDLE && engine.keyTypedOrderIsEmpty()) blinkTimer.start();
+		});
 
-		/* Instantiate a new timeline and prepare to invoke the above eventHandler every millisec.
-		 * Don't actually invoke it yet. Invocation will occur once the end-user presses the "play" button. See timeline.play() method. */
-		timeline = new Timeline(new KeyFrame(Duration.millis(1), eventHandler));
-		timeline.setCycleCount(Timeline.INDEFINITE);
+		/* Per-frame handle that refreshes the display while the countdown is running. It is invoked on every JavaFX pulse (about 60 times a second),
+		 * and the engine works out the time left from its deadline each time. Expiry itself is detected by the service's timing wheel.
+		 * Started and stopped as the engine state changes. */
+		ticker = service.getScheduler().everyFrame(now -> {
+			long handled = Telemetry.begin();
+			if(handled != 0) Telemetry.record(Telemetry.Metric.COUNTDOWN_TICK_LATENESS, handled - now);	//now is when the pulse began
+			if(governor.shouldRender(now)) engine.tick();	//at most once per display frame
+		});
 
 		/* A quick instruction label for the end user */
 		Label instructionLbl = new Label("Use keyboard to set the desired countdown time.");
@@ -95,16 +130,11 @@ public class CountdownTimer extends BorderPane {
 		/* Make a playbutton */
 		playBtn = new Button(">");
 		playBtn.setPrefWidth(40);
-		playBtn.setOnAction(new PlayHandler());	//event handler. See inner class PlayHandler
+		playBtn.setOnAction(e -> engine.toggle());	//event handler. Pauses the countdown if running, otherwise starts or resumes it.
 
 		/* Make a reset / set new time button */
 		resetBtn = new Button("Reset / Set New Time");
-		resetBtn.setOnAction(e -> {	//event handler. Using lambda this time
-			timeline.stop();
-			timerIsRunning = false;
-			playBtn.setText(">");
-			resetTimer();
-		});
+		resetBtn.setOnAction(e -> resetTimer());	//event handler. Using lambda this time
 
 		/* A button to allow end-user to add notes. */
 		notesBtn = new Button("Notes...");
@@ -146,49 +176,14 @@ public class CountdownTimer extends BorderPane {
 		this.setOnKeyTyped(e -> {
 			/* NOTE: e.getCode() works for setOnKeyPressed event handler, but does NOT work for setOnKeyTyped. So instead,
 			 * we'll use e.getCharacter(), which strangely returns a String. So we'll get the character by using the charAt(0)
-			 * method. Then we'll:
-			 * 1) check whether the character typed is between 0 and 9, inclusive. If it is, AND
-			 * 2) if the timer is NOT currently running, AND
-			 * 3) if it's NOT the case that the timer is currently paused,
-			 * THEN and only THEN run the following code... */
-			if(e.getCharacter().charAt(0) >= '0' && e.getCharacter().charAt(0) <= '9' && !timerIsRunning && !timerIsPausedButNotReset) {
-//				System.out.println("DIGIT KEY TYPED");
-				mediaPlayer.stop();		//If a sound file is currently playing, stop the sound.
+			 * method and check whether it is between 0 and 9, inclusive. The engine ignores the digit if the timer is running
+			 * or paused. */
+			if(e.getCharacter().charAt(0) >= '0' && e.getCharacter().charAt(0) <= '9' && engine.getState() == CountdownEngine.State.IDLE) {
+				stopMedia();		//If a sound file is currently playing, stop the sound.
 				//If the timer is currently blinking or is invisible, set it to visible and stop blinking
 				timerLbl.setVisible(true);
 				blinkTimer.stop();
-				int digit = Integer.parseInt(e.getCharacter());	//Parse the digit typed into an int.
-				/* If the custom method keyTypedOrderIsEmpty() returns true and if the digit typed is something other than 0, then
-				 * set the first element of the keyTypedOrder array to the digit, and increment the
-				 * keyTypedOrderInt variable from -1 to 0. This keeps track of which element in the array should be updated. */
-				if(keyTypedOrderIsEmpty() && digit != 0) {
-					keyTypedOrder[0] = digit;
-					keyTypedOrderInt = 0;
-				}
-				/* Else, if the keyTypedOrder array is NOT empty (has elements in it), then we'll increment
-				 * the int var by 1, except if it's greater than 5 (indicating the 5th element of the array),
-				 * then we'll have it stay at 5. */
-				else if(!keyTypedOrderIsEmpty()) {
-					keyTypedOrderInt = (keyTypedOrderInt + 1 > 5 ? 5 : keyTypedOrderInt + 1);	//conditional statement
-					/* Now do a descending for loop from the last-updated index position down to 0, and basically
-					 * scoot every typed digit thus far to the left. So, if the current display is 00:36:05, and
-					 * if the user types '7', then the new display is: 03:60:57. */
-					for (int i = keyTypedOrderInt; i > 0; i--) {
-						keyTypedOrder[i] = keyTypedOrder[i-1];
-					}
-					keyTypedOrder[0] = digit;	//Add the most recently typed digit to the very 1st element of the array.
-				}
-				/* Hopefully it's clear from the above comments that the first element of the array corresponds to the
-				 * RIGHT-MOST digit of the timer display, the 2nd element to the second-from-right digit, and so on...
-				 * all the way up to the 5th and last element corresponding to the left-most digit of the display.
-				 * Knowing this, let's update the current state of the timer.
-				 * We calculate the values for sec, min, and hour, by doing a string concatenation of the
-				 * keyTyped values from the array, then parsing the concatenated value into an Integer. */
-				sec = Integer.parseInt(keyTypedOrder[1] + "" + keyTypedOrder[0]);
-				min = Integer.parseInt(keyTypedOrder[3] + "" + keyTypedOrder[2]);
-				hour = Integer.parseInt(keyTypedOrder[5] + "" + keyTypedOrder[4]);
-				/* Now that we have the sec, min and hour values, we can update the timer display via the custom method */
-				updateTimer();
+				engine.enterDigit(e.getCharacter().charAt(0) - '0');	//the engine updates the display via its tick listener
 			}
 		});
 		//end this.setOnKeyTyped
@@ -213,6 +208,7 @@ public class CountdownTimer extends BorderPane {
 		Button saveBtn = new Button("Save");
 		saveBtn.setOnAction(e -> {		//event listener. Saves any text inside the text area before closing the window.
 			textAreaNote = ta.getText();
+			if(engine.getState() != CountdownEngine.State.IDLE) saveState();
 			textAreaStage.close();
 		});
 
@@ -240,121 +236,105 @@ public class CountdownTimer extends BorderPane {
 	}
 
 	/**
-	 * Method: playMedia
-	 * play the media file. Loop indefinitely until stopped.
+	 * Method: saveState
+	 * Queue the current state of this countdown, with its note and alarm sound, for the journal. Running countdowns are saved
+	 * with their deadline in wall-clock time, paused ones with the time left. Returns immediately.
 	 */
-	public void playMedia() {
-		mediaPlayer.setCycleCount(Timeline.INDEFINITE);
-		mediaPlayer.play();
+	private void saveState() {
+		CountdownEngine.State state = engine.getState();
+		long remainingMillis = engine.getRemainingNanos() / 1000000;
+		long time = (state == CountdownEngine.State.RUNNING ? System.currentTimeMillis() + remainingMillis : remainingMillis);
+		journal.record(new TimerJournal.Entry(id, state, time, alarmSound, textAreaNote));
 	}
 
 	/**
-	 * Method: keyTypedOrderIsEmpty
-	 * @return returns true if the array contains only 0 values, indicating a timer display of 00:00:00. Otherwise false
+	 * Method: restore
+	 * Carry on with a countdown saved in the journal before the application was restarted. A running countdown resumes against
+	 * wall-clock time, so one that became due while the application was down goes off right away.
+	 * @param entry the saved countdown. It is taken over by this countdown and removed from the journal under its old id.
 	 */
-	public boolean keyTypedOrderIsEmpty() {
-		for(int i : keyTypedOrder) {
-			if(i != 0) return false;
-		}
-		return true;
+	public void restore(TimerJournal.Entry entry) {
+		textAreaNote = entry.note;
+		alarmSound = entry.alarmSound;
+		timerLbl.setVisible(true);
+		blinkTimer.stop();
+		long now = System.currentTimeMillis();
+		//The saved countdown kept counting down while the application was down, until its deadline at the latest
+		history.restored(entry.id, entry.state == CountdownEngine.State.RUNNING ? Math.min(now, entry.time) : now);
+		engine.restore(entry.remainingMillis(now) * 1000000, entry.state == CountdownEngine.State.RUNNING);
+		journal.record(new TimerJournal.Entry(entry.id, CountdownEngine.State.IDLE, 0, entry.alarmSound, ""));
 	}
 
 	/**
-	 * Method: resetTimer
-	 * reset timer to 00:00:00. Stop any event listener animation, stop any sound file playing, and make the timer display
-	 * blink every half second. Also reset the key typed array to all 0's.
+	 * Method: playMedia
+	 * play the alarm sound. Loop indefinitely until stopped.
 	 */
-	public void resetTimer() {
-		timeline.stop();
-		timerIsRunning = false;			//reset set boolean variables
-		timerIsPausedButNotReset = false;
-		millisec = 0; sec = 0; min = 0; hour = 0;
-		keyTypedOrderInt = -1;			//reset the value keeping track of which digit of the timer display has been updated by the end user
-		playBtn.setText(">");			//The play button might be showing the pause symbol ('||'). So reset it to show '>'.
-		mediaPlayer.stop();				//Sound file might be playing. So stop it.
-
-		/* Stop any blinking of the timer and set it to visible. It is important to stop any previous blinking of the timer
-		 * prior to running the BlinkTimer().handle event listener below, because otherwise, the previous blinking
-		 * will overlap with the newly invoked blinking, making it blink twice as fast. */
-		timerLbl.setVisible(true);
-		if(blinkTimer != null) blinkTimer.stop();
-		new BlinkTimer().handle(new ActionEvent());		//Run new event handler that makes the timer display blink.
-		resetKeyTypedOrder();		//reset the key typed order array to all 0's
-		updateTimer();				//Update the timer so it can show 00:00:00
+	public void playMedia() {
+		alarmPlayer.play(alarmSound, this);
 	}
 
 	/**
-	 * Class: BlinkTimer
-	 * Handles the timed blinking animation for the timer display every 0.5 secs. Invoked by the resetTimer() method.
-	 * @author HAP
-	 *
+	 * Method: stopMedia
+	 * stop the alarm sound if it is playing.
 	 */
-	class BlinkTimer implements EventHandler<ActionEvent> {
-		@Override
-		public void handle(ActionEvent e) {
-			blinkTimer = new Timeline(new KeyFrame(Duration.millis(500), blinkHandler));
-			blinkTimer.setCycleCount(Timeline.INDEFINITE);
-			blinkTimer.play();
-		}
-		EventHandler<ActionEvent> blinkHandler = e -> {
-			timerLbl.setVisible(!timerLbl.isVisible());	//toggle between visible and not visible every 0.5 secs.
-		};
+	public void stopMedia() {
+		alarmPlayer.stop(this);
+	}
+
+	/** Return the name of the alarm sound */
+	public String getAlarmSound() {
+		return alarmSound;
+	}
+
+	/** Set the alarm sound by name. See AlarmPlayer.getSoundNames(). */
+	public void setAlarmSound(String alarmSound) {
+		this.alarmSound = alarmSound;
+	}
 
+	/** Return the id of this countdown, as used in the journal and the TimerRegistry */
+	public long getTimerId() {
+		return id;
+	}
+
+	/** Return the countdown logic shown by this timer */
+	public CountdownEngine getEngine() {
+		return engine;
 	}
 
 	/**
-	 * Method: resetKeyTypedOrder
-	 * reset the array to all 0's. Invoked by resetTimer() method.
+	 * Method: resetTimer
+	 * reset timer to 00:00:00. Stop the countdown, stop any sound file playing, and make the timer display
+	 * blink every half second. See showReset().
 	 */
-	public void resetKeyTypedOrder() {
-		for(int i = 0; i < keyTypedOrder.length; i++) {
-			keyTypedOrder[i] = 0;
-		}
+	public void resetTimer() {
+		engine.reset();
 	}
 
 	/**
-	 * Method: updateTimer
-	 * update the timer display to show current countdown time. Uses string format to preserve the 00:00:00 format for the timer
-	 * as well as the 000 format for the millisec part of the timer.
+	 * Method: showReset
+	 * Invoked whenever the engine goes back to idle. Stop any sound file playing and make the timer display blink.
 	 */
-	public void updateTimer() {
-		timerLbl.setText(String.format("%02d:%02d:%02d ", hour, min, sec));
-		millisecLbl.setText(String.format("%03d", millisec));
+	private void showReset() {
+		stopMedia();				//Sound file might be playing. So stop it.
+
+		/* Set the timer to visible and (re)start the blinking from there. There is only ever one blink handle, so
+		 * blinking can never overlap with previous blinking and go twice as fast. */
+		timerLbl.setVisible(true);
+		if(governor.isActive()) blinkTimer.startIn(500000000L);		//Make the timer display blink.
 	}
 
 	/**
-	 * Class: PlayHandler
-	 * Inner class that handles what happens once the end user presses the Play/Pause button.
+	 * Method: updateTimer
+	 * update the timer display to show current countdown time. Uses fixed-width formatters to preserve the 00:00:00 format for the timer
+	 * as well as the 000 format for the millisec part of the timer. A label is only touched when one of its digits changed.
 	 */
-	class PlayHandler implements EventHandler<ActionEvent> {
-		@Override
-		public void handle(ActionEvent e) {
-			if(timerIsRunning) {	//If timer is running at the time the button is clicked, then we must pause it.
-				timerIsRunning = false;
-				timerIsPausedButNotReset = true;
-				timeline.stop();
-				playBtn.setText(">");	//change the button display to play button.
-			/* Else, if timer is NOT currently running, AND if the display does NOT show 00:00:00 000, then
-			 * we can begin the countdown. */
-			} else if(!timerIsRunning && !(millisec == 0 && sec == 0 && min == 0 && hour == 0)){
-				timerIsRunning = true;
-				timerIsPausedButNotReset = false;
-				playBtn.setText("||");	//change the button display to a pause button.
-
-				/* There may be instances where the user inputs something like 00:90:00, to indicate 90 mins countdown.
-				 * If so, upon pressing play button, the timer will automatically update itself to 01:30:00, aka 1 hr and 30 mins. */
-				if(sec > 59) {
-					min++;
-					sec -= 60;
-				}
-				if(min > 60) {
-					hour++;
-					min -= 60;
-				}
-				updateTimer();	//update timer to display the time set by the user
-				timeline.play();	//and begin the countdown
-			}
+	public void updateTimer() {
+		long paintStart = Telemetry.begin();
+		if(timerFmt.set(0, engine.getHour()) | timerFmt.set(1, engine.getMin()) | timerFmt.set(2, engine.getSec())) {
+			timerLbl.setText(timerFmt.toString());
 		}
+		if(millisecFmt.set(0, engine.getMillisec())) millisecLbl.setText(millisecFmt.toString());
+		Telemetry.end(Telemetry.Metric.COUNTDOWN_PAINT, paintStart);
 	}
-	//end class PlayHandler
+
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+/** Class: Json.java
+ *
+ *  This Class - The one place strings are made safe for the JSON sent out of the application, by the webhook alarm action and
+ *  the control API. quote() escapes the quote and backslash, and writes every control character (U+0000 to U+001F) as \n, \t
+ *  and so on, or as a \\u escape, so a note or error message can never break the document it goes into.
+ */
+public final class Json {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Json() {
+	}
+
+	/**
+	 * Method: quote
+	 * @param s the string, or null for the text "null"
+	 * @return the string as a JSON string literal, quotes included
+	 */
+	public static String quote(String s) {
+		s = String.valueOf(s);
+		StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			case '\b': sb.append("\\b"); break;
+			case '\f': sb.append("\\f"); break;
+			default:
+				if(c < 0x20) sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+				else sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/** Class: PulseScheduler.java
+ *
+ *  This Class - One scheduler for every periodic piece of UI work: the clock's once-a-second tick, the countdown display refresh,
+ *  the blinking of a reset countdown, the countdown expiry wheel and so on. Each registers a Handle, which is started and stopped
+ *  as often as needed without allocating anything.
+ *  A handle either runs on every frame (period 0) or every so many nanoseconds. As long as any per-frame handle is active,
+ *  everything runs off one AnimationTimer, and timed handles simply run on the first frame at or after they are due. Otherwise
+ *  the JavaFX pulse is left alone altogether (a running Timeline or AnimationTimer keeps JavaFX pulsing 60 times a second), and
+ *  the thread is woken only when the earliest timed handle is due. Handles that fall due within COALESCE_NANOS of each other
+ *  run in the same wakeup, by holding the earlier ones back a little: a handle may run up to that much late, but never early.
+ *  Once nothing is active the scheduler stops entirely.
+ *  getWakeupsPerSecond() reports how often the scheduler woke the JavaFX thread to run something over the last second.
+ *  Must be used from the JavaFX application thread.
+ */
+public class PulseScheduler {
+
+	/** Timed handles due this close together run in the same wakeup. About one display frame. */
+	public static final long COALESCE_NANOS = 16000000;
+
+	/** A registered piece of periodic work. */
+	public final class Handle {
+		private final LongConsumer task;
+		private long periodNanos;
+		private long dueNanos;
+		private boolean active;
+
+		private Handle(LongConsumer task, long periodNanos) {
+			this.task = task;
+			this.periodNanos = periodNanos;
+		}
+
+		/** Start running the task, first one period from now. Does nothing if already active. */
+		public void start() {
+			if(!active) startIn(periodNanos);
+		}
+
+		/**
+		 * Run the task next after the given delay, then every period from there. Restarts the handle if it is already active;
+		 * a task may call this on its own handle to pick its next run.
+		 */
+		public void startIn(long delayNanos) {
+			dueNanos = System.nanoTime() + delayNanos;
+			if(!active) {
+				active = true;
+				(periodNanos == 0 ? frameHandles : timedHandles).add(this);
+			}
+			update();
+		}
+
+		/** Stop running the task. */
+		public void stop() {
+			if(!active) return;
+			active = false;
+			(periodNanos == 0 ? frameHandles : timedHandles).remove(this);
+			update();
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		/** @return when the task is due next, in System.nanoTime() terms */
+		public long getDueNanos() {
+			return dueNanos;
+		}
+	}
+
+	private final List<Handle> frameHandles = new ArrayList<>(), timedHandles = new ArrayList<>();
+	private final List<Handle> due = new ArrayList<>();		//reused by dispatch()
+	private final AnimationTimer pulse = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			dispatch(now);
+		}
+	};
+	private boolean pulseRunning;
+	private final ScheduledExecutorService waker = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "pulse-waker");
+		t.setDaemon(true);
+		return t;
+	});
+	private ScheduledFuture<?> wakeup;
+	private long wakeupDueNanos = Long.MAX_VALUE;
+	private int wakeupSeq;		//number of the current wakeup, so that one replaced after it had already fired can be told apart
+	private final long[] wakeupTimes = new long[1024];	//ring of recent wakeup times, for getWakeupsPerSecond()
+	private int wakeupCount;
+
+	/**
+	 * Method: everyFrame
+	 * @return a new, stopped handle whose task runs on every frame, with the pulse time in nanoseconds
+	 */
+	public Handle everyFrame(LongConsumer task) {
+		return new Handle(task, 0);
+	}
+
+	/**
+	 * Method: every
+	 * @param periodNanos time between runs
+	 * @return a new, stopped handle whose task runs every periodNanos, with the current time in nanoseconds
+	 */
+	public Handle every(long periodNanos, LongConsumer task) {
+		if(periodNanos <= 0) throw new IllegalArgumentException("Period must be positive: " + periodNanos);
+		return new Handle(task, periodNanos);
+	}
+
+	/**
+	 * Method: getWakeupsPerSecond
+	 * @return how many times the scheduler ran its handles during the last second. Wakeups with nothing due, e.g. for a handle
+	 * that was moved to later in the meantime, are not counted.
+	 */
+	public int getWakeupsPerSecond() {
+		long since = System.nanoTime() - 1000000000L;
+		int n = 0;
+		for(int i = 1; i <= Math.min(wakeupCount, wakeupTimes.length); i++) {
+			if(wakeupTimes[(wakeupCount - i) & (wakeupTimes.length - 1)] < since) break;
+			n++;
+		}
+		return n;
+	}
+
+	/** Pick the cheapest way to wake up for whatever is active now. */
+	private void update() {
+		if(!frameHandles.isEmpty()) {
+			cancelWakeup();
+			if(!pulseRunning) {
+				pulseRunning = true;
+				pulse.start();
+			}
+			return;
+		}
+		if(pulseRunning) {
+			pulseRunning = false;
+			pulse.stop();
+		}
+		long earliest = Long.MAX_VALUE;
+		for(int i = 0; i < timedHandles.size(); i++) earliest = Math.min(earliest, timedHandles.get(i).dueNanos);
+		if(earliest == Long.MAX_VALUE) {
+			cancelWakeup();
+			return;
+		}
+		/* Wake up for the earliest handle, or a bit later if that catches others falling due soon after it */
+		long wakeAt = earliest;
+		for(int i = 0; i < timedHandles.size(); i++) {
+			long d = timedHandles.get(i).dueNanos;
+			if(d - earliest <= COALESCE_NANOS && d > wakeAt) wakeAt = d;
+		}
+		if(wakeup != null && wakeupDueNanos <= wakeAt) return;	//already waking up in time
+		cancelWakeup();
+		wakeupDueNanos = wakeAt;
+		int seq = ++wakeupSeq;
+		wakeup = waker.schedule(() -> Platform.runLater(() -> wakeUp(seq)), Math.max(wakeAt - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+	}
+
+	private void cancelWakeup() {
+		if(wakeup != null) {
+			wakeup.cancel(false);
+			wakeup = null;
+			wakeupDueNanos = Long.MAX_VALUE;
+		}
+	}
+
+	private void wakeUp(int seq) {
+		/* A wakeup cancelled after it had already fired still gets here, behind the one that replaced it. Only the current one
+		 * counts: a stale one must neither clear it nor dispatch. */
+		if(wakeup == null || seq != wakeupSeq) return;
+		wakeup = null;
+		wakeupDueNanos = Long.MAX_VALUE;
+		dispatch(System.nanoTime());
+	}
+
+	/** Run every handle that is due, then arrange the next wakeup. Counts as a wakeup only if something was due. */
+	private void dispatch(long now) {
+		due.clear();
+		due.addAll(frameHandles);
+		for(int i = 0; i < timedHandles.size(); i++) {
+			Handle h = timedHandles.get(i);
+			if(h.dueNanos - now <= 0) {
+				/* Next run one period on from when this one was due, so the period does not drift. After a long stall, skip the
+				 * missed runs instead of running them back to back. */
+				h.dueNanos += h.periodNanos;
+				if(h.dueNanos <= now) h.dueNanos = now + h.periodNanos;
+				due.add(h);
+			}
+		}
+		if(!due.isEmpty()) wakeupTimes[wakeupCount++ & (wakeupTimes.length - 1)] = System.nanoTime();
+		for(int i = 0; i < due.size(); i++) {
+			Handle h = due.get(i);
+			if(h.active) h.task.accept(now);	//an earlier task may have stopped it
+		}
+		update();
+	}
+}
@@ -0,0 +1,77 @@
+import javafx.beans.InvalidationListener;
+import javafx.stage.Stage;
+
+/** Class: RenderGovernor.java
+ *
+ *  This Class - Decides when a stage's periodic repaint work is worth doing. Repainting is suspended while the stage is not
+ *  showing (closed or hidden) or is iconified, and resumed as soon as the stage comes back, at which point the owner resyncs its
+ *  display right away. While rendering, shouldRender() caps updates to one per display frame (60 per second by default) no matter
+ *  how often the owner is called. The time being displayed is not affected; this only controls how often it is drawn.
+ *  Note that JavaFX offers no way to find out whether a window is covered by other windows, so only hidden and iconified stages
+ *  are detected.
+ */
+public class RenderGovernor {
+
+	private final Stage stage;
+	private final Runnable onSuspend, onResume;
+	private boolean active;
+	private long frameNanos = 1000000000L / 60;
+	private long lastRenderNanos = Long.MIN_VALUE;
+
+	/**
+	 * Construct a governor for the given stage.
+	 * @param stage the stage whose content is being repainted
+	 * @param onSuspend invoked when the stage stops being visible. Should stop any repaint timers.
+	 * @param onResume invoked when the stage becomes visible again. Should bring the display up to date and restart the timers.
+	 */
+	public RenderGovernor(Stage stage, Runnable onSuspend, Runnable onResume) {
+		this.stage = stage;
+		this.onSuspend = onSuspend;
+		this.onResume = onResume;
+		this.active = isVisible();
+		InvalidationListener listener = o -> update();
+		stage.showingProperty().addListener(listener);
+		stage.iconifiedProperty().addListener(listener);
+	}
+
+	/** @return true if repainting is currently worthwhile */
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Method: setMaxFps
+	 * Cap the number of repaints per second allowed by shouldRender(). Normally the refresh rate of the display.
+	 */
+	public void setMaxFps(double fps) {
+		frameNanos = (long) (1000000000L / fps);
+	}
+
+	/**
+	 * Method: shouldRender
+	 * @param now the current time in nanoseconds, e.g. the argument of AnimationTimer.handle()
+	 * @return true if the owner should repaint now. False while suspended, or if the last repaint was less than a frame ago.
+	 */
+	public boolean shouldRender(long now) {
+		if(!active) return false;
+		/* Allow a little slack so that pulses arriving right on the frame rate are not skipped every other time. */
+		if(lastRenderNanos != Long.MIN_VALUE && now - lastRenderNanos < frameNanos - frameNanos / 8) return false;
+		lastRenderNanos = now;
+		return true;
+	}
+
+	private boolean isVisible() {
+		return stage.isShowing() && !stage.isIconified();
+	}
+
+	private void update() {
+		boolean visible = isVisible();
+		if(visible == active) return;
+		active = visible;
+		if(active) {
+			lastRenderNanos = Long.MIN_VALUE;	//render the very next time we are asked
+			onResume.run();
+		}
+		else onSuspend.run();
+	}
+}
@@ -0,0 +1,74 @@
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/** Class: SecondTicker.java
+ *
+ *  This Class - One tick per second, shared by any number of clocks. On every tick the current time is read once and handed to
+ *  every listener, so a hundred clocks cost one clock read, not a hundred, and they all turn over together. Ticks land just after
+ *  each whole second of the time source rather than a second after whenever the ticker happened to start. The ticker only runs
+ *  while it has listeners.
+ *  Must be used from the JavaFX application thread.
+ */
+public class SecondTicker {
+
+	private final Clock clock;
+	private final List<LongConsumer> listeners = new ArrayList<>();
+	private final PulseScheduler.Handle tickHandle;	//reused for every tick
+	private boolean running;
+
+	/** Construct a ticker on the system clock. */
+	public SecondTicker(PulseScheduler scheduler) {
+		this(Clock.systemUTC(), scheduler);
+	}
+
+	/**
+	 * Construct a ticker on the given clock. Only its instant is used; every listener applies its own time zone.
+	 * @param scheduler wakes the ticker up every second
+	 */
+	public SecondTicker(Clock clock, PulseScheduler scheduler) {
+		this.clock = clock;
+		this.tickHandle = scheduler.every(1000000000L, now -> tick());
+	}
+
+	/**
+	 * Method: addListener
+	 * Start passing the current time, in milliseconds since the epoch, to the listener once a second. The listener is called
+	 * right away as well, so it never shows a stale time.
+	 */
+	public void addListener(LongConsumer listener) {
+		listeners.add(listener);
+		listener.accept(clock.millis());
+		if(!running) {
+			running = true;
+			scheduleNext(clock.millis());
+		}
+	}
+
+	/** Stop passing the time to the listener. The ticker stops once it has no listeners left. */
+	public void removeListener(LongConsumer listener) {
+		listeners.remove(listener);
+		if(listeners.isEmpty()) {
+			running = false;
+			tickHandle.stop();
+		}
+	}
+
+	/** @return the number of listeners */
+	public int getListenerCount() {
+		return listeners.size();
+	}
+
+	private void tick() {
+		if(!running) return;
+		long millis = clock.millis();	//read once for everybody
+		for(int i = 0; i < listeners.size(); i++) listeners.get(i).accept(millis);
+		scheduleNext(millis);
+	}
+
+	/** Wake up again just past the next whole second. */
+	private void scheduleNext(long millis) {
+		tickHandle.startIn((1000 - Math.floorMod(millis, 1000L) + 1) * 1000000L);
+	}
+}
@@ -0,0 +1,305 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+/** Class: Settings.java
+ *
+ *  This Class - The user's options: window position, always on top, theme, the last few countdown durations, alarm sound and
+ *  sweep mode. Stored as a versioned properties file. Loading happens on a background thread, and so does saving: every change
+ *  is followed by changed(), and the file is only written once no change has come in for a short while (so dragging the window
+ *  around does not write the file on every pixel). Writes go to a temporary file that is then renamed over the real one, so the
+ *  file is never left half written. The old one-line ClockAnimation.sav file is migrated on first load.
+ *  The file is read and parsed on the background thread into values of its own, which are then applied on the JavaFX thread, so
+ *  the fields are only ever touched there. Nothing is written until the file has been loaded, so the defaults can never overwrite
+ *  it: a change made before then is written once the loaded values are in.
+ *  The getters and setters are meant to be used from the JavaFX application thread.
+ */
+public class Settings {
+
+	/** Version of the file format written by this class. */
+	public static final int VERSION = 1;
+	/** Most countdown durations remembered by addTimerDuration(). */
+	public static final int MAX_TIMER_DURATIONS = 5;
+
+	private static final long WRITE_DELAY_MILLIS = 500;
+
+	private final File file, legacyFile;
+	private final ScheduledExecutorService io;
+	private final Executor fxExecutor;
+	private ScheduledFuture<?> pendingWrite;
+	private boolean loaded, changedBeforeLoad;
+	private volatile boolean closed;		//once set, the loaded values are no longer handed over
+
+	private double windowX = Double.NaN, windowY = Double.NaN;	//NaN until the window has been placed
+	private boolean alwaysOnTop;
+	private String theme = ClockPane.THEME_CLASSIC;
+	private final List<Integer> timerDurations = new ArrayList<>();	//seconds, most recent first
+	private String alarmSound = AlarmPlayer.DEFAULT_SOUND;
+	private boolean sweep;
+
+	/**
+	 * Construct the settings with default values. Nothing is read until load() is invoked.
+	 * @param file the properties file
+	 * @param legacyFile the old ClockAnimation.sav file to migrate from if the properties file does not exist yet
+	 */
+	public Settings(File file, File legacyFile) {
+		this(file, legacyFile, Platform::runLater);
+	}
+
+	/**
+	 * Construct the settings with default values. Nothing is read until load() is invoked.
+	 * @param file the properties file
+	 * @param legacyFile the old ClockAnimation.sav file to migrate from if the properties file does not exist yet
+	 * @param fxExecutor runs the loaded values' hand-over on the JavaFX thread, e.g. Platform::runLater
+	 */
+	public Settings(File file, File legacyFile, Executor fxExecutor) {
+		this.file = file;
+		this.legacyFile = legacyFile;
+		this.fxExecutor = fxExecutor;
+		this.io = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "settings-io");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Holds the values read from the file on the settings thread until they are applied. */
+	private Settings(File file) {
+		this.file = file;
+		this.legacyFile = null;
+		this.fxExecutor = null;
+		this.io = null;
+	}
+
+	/**
+	 * Method: load
+	 * Read the settings file in the background, then apply what was read and invoke the callback, both on the JavaFX thread.
+	 * Neither happens once close() has been invoked.
+	 */
+	public void load(Consumer<Settings> onLoaded) {
+		io.execute(() -> {
+			long ioStart = Telemetry.begin();
+			Settings read = new Settings(file);
+			boolean migrated = false;
+			if(file.exists()) {
+				Properties props = new Properties();
+				try(InputStream in = new FileInputStream(file)) {
+					props.load(in);
+					read.fromProperties(props);
+				}
+				catch(IOException | RuntimeException e) {
+					System.out.printf("Could not read settings file %s: %s\n", file, e);
+					read = new Settings(file);		//nothing half read
+				}
+			}
+			else if(legacyFile.exists()) {
+				/* The old format had exactly one line, starting with "true" or "false" for always on top. */
+				try(Scanner fileSc = new Scanner(legacyFile)) {
+					if(fileSc.hasNextLine()) read.alwaysOnTop = fileSc.nextLine().startsWith("t");
+					migrated = true;
+				}
+				catch(IOException e) {
+					System.out.printf("Could not migrate settings file %s: %s\n", legacyFile, e);
+				}
+			}
+			Telemetry.end(Telemetry.Metric.SETTINGS_IO, ioStart);
+			if(closed) return;
+			Settings values = read;
+			boolean migrate = migrated;
+			fxExecutor.execute(() -> {
+				if(closed) return;		//closed while this was on its way
+				apply(values);
+				loaded = true;
+				if(migrate) {
+					writeNow();		//from now on, use the new file
+					System.out.printf("Migrated %s to %s\n", legacyFile, file);
+				}
+				else if(changedBeforeLoad) changed();
+				onLoaded.accept(this);
+			});
+		});
+	}
+
+	/** @return true once the settings file has been read and applied */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Method: changed
+	 * Schedule the settings to be written. Several changes in quick succession end up as one write. Before the file has been
+	 * loaded, the write waits for it.
+	 */
+	public void changed() {
+		if(!loaded) {
+			changedBeforeLoad = true;
+			return;
+		}
+		Properties snapshot = toProperties();	//taken now, on the caller's thread
+		if(pendingWrite != null) pendingWrite.cancel(false);
+		pendingWrite = io.schedule(() -> write(snapshot), WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method: close
+	 * Write the settings right away in the background and stop the settings thread once it is done. Waits at most a second, as
+	 * the thread is a daemon that would not keep the JVM alive for the write. If the file has not been loaded yet, it is left as
+	 * it is, and what is still being read is never applied.
+	 */
+	public void close() {
+		closed = true;
+		if(loaded) writeNow();
+		io.shutdown();
+		try {
+			io.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Write the settings in the background, as soon as the settings thread gets to it. */
+	private void writeNow() {
+		Properties snapshot = toProperties();
+		if(pendingWrite != null) pendingWrite.cancel(false);
+		io.execute(() -> write(snapshot));
+	}
+
+	public double getWindowX() {
+		return windowX;
+	}
+
+	public double getWindowY() {
+		return windowY;
+	}
+
+	public void setWindowPosition(double x, double y) {
+		this.windowX = x;
+		this.windowY = y;
+	}
+
+	public boolean isAlwaysOnTop() {
+		return alwaysOnTop;
+	}
+
+	public void setAlwaysOnTop(boolean alwaysOnTop) {
+		this.alwaysOnTop = alwaysOnTop;
+	}
+
+	public String getTheme() {
+		return theme;
+	}
+
+	public void setTheme(String theme) {
+		this.theme = theme;
+	}
+
+	/** @return the most recently started countdown durations in seconds, most recent first */
+	public List<Integer> getTimerDurations() {
+		return timerDurations;
+	}
+
+	/** Remember a countdown duration in seconds. Keeps the last MAX_TIMER_DURATIONS distinct durations. */
+	public void addTimerDuration(int seconds) {
+		timerDurations.remove(Integer.valueOf(seconds));
+		timerDurations.add(0, seconds);
+		while(timerDurations.size() > MAX_TIMER_DURATIONS) timerDurations.remove(timerDurations.size() - 1);
+	}
+
+	public String getAlarmSound() {
+		return alarmSound;
+	}
+
+	public void setAlarmSound(String alarmSound) {
+		this.alarmSound = alarmSound;
+	}
+
+	public boolean isSweep() {
+		return sweep;
+	}
+
+	public void setSweep(boolean sweep) {
+		this.sweep = sweep;
+	}
+
+	private Properties toProperties() {
+		Properties props = new Properties();
+		props.setProperty("version", String.valueOf(VERSION));
+		if(!Double.isNaN(windowX)) {
+			props.setProperty("window.x", String.valueOf(windowX));
+			props.setProperty("window.y", String.valueOf(windowY));
+		}
+		props.setProperty("alwaysOnTop", String.valueOf(alwaysOnTop));
+		props.setProperty("theme", theme);
+		StringBuilder durations = new StringBuilder();
+		for(int seconds : timerDurations) {
+			if(durations.length() > 0) durations.append(',');
+			durations.append(seconds);
+		}
+		props.setProperty("timer.durations", durations.toString());
+		props.setProperty("alarm.sound", alarmSound);
+		props.setProperty("sweep", String.valueOf(sweep));
+		return props;
+	}
+
+	/** Take over the values read from the file. Runs on the JavaFX thread. */
+	private void apply(Settings read) {
+		windowX = read.windowX;
+		windowY = read.windowY;
+		alwaysOnTop = read.alwaysOnTop;
+		theme = read.theme;
+		timerDurations.clear();
+		timerDurations.addAll(read.timerDurations);
+		alarmSound = read.alarmSound;
+		sweep = read.sweep;
+	}
+
+	private void fromProperties(Properties props) {
+		int version = Integer.parseInt(props.getProperty("version", "1"));
+		if(version > VERSION) System.out.printf("Settings file %s is version %d, newer than %d; reading what is known\n", file, version, VERSION);
+		if(props.containsKey("window.x")) {
+			windowX = Double.parseDouble(props.getProperty("window.x"));
+			windowY = Double.parseDouble(props.getProperty("window.y", "0"));
+		}
+		alwaysOnTop = Boolean.parseBoolean(props.getProperty("alwaysOnTop"));
+		theme = props.getProperty("theme", theme);
+		timerDurations.clear();
+		for(String seconds : props.getProperty("timer.durations", "").split(",")) {
+			if(!seconds.isEmpty()) timerDurations.add(Integer.parseInt(seconds.trim()));
+		}
+		alarmSound = props.getProperty("alarm.sound", alarmSound);
+		sweep = Boolean.parseBoolean(props.getProperty("sweep"));
+	}
+
+	/** Atomically replace the settings file with the given properties. Runs on the settings thread. */
+	private void write(Properties props) {
+		long ioStart = Telemetry.begin();
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try(OutputStream out = new FileOutputStream(tmp)) {
+				props.store(out, "ClockAnimation settings");
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException e) {
+			System.out.printf("Could not save settings to %s: %s\n", file, e);
+		}
+		Telemetry.end(Telemetry.Metric.SETTINGS_IO, ioStart);
+	}
+}
@@ -0,0 +1,273 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+/** Class: SoakMonitor.java
+ *
+ *  This Class - Soak test of the running application for leaks and slowdowns that only show after days: drives the clock and
+ *  countdown windows on a VirtualClock, much faster than real time, and checks that nothing grows along the way.
+ *  Every pulse advances the virtual clock by a set step (one second by default) and ticks the clock with the new time, so each
+ *  pulse is one full clock tick and one virtual day takes 86400 pulses, or 24 minutes at 60 frames a second. At the same time a
+ *  countdown is typed in, started, paused, resumed and left to expire over and over, and every few cycles its window is closed and
+ *  a new one opened.
+ *  Every few seconds the monitor collects garbage and samples the heap left, the number of live scene graph nodes in all windows,
+ *  and how long ticks took and how regularly pulses came (p99 over the interval), and appends them to a CSV report. At the end
+ *  the trend of each is fitted over the samples after warm-up, and the run fails if any of them would grow by more than its limit
+ *  over the run. The verdict is appended to a summary CSV, one line per metric, so runs of different versions can be compared.
+ *  It can run headless on an offscreen pipeline, e.g. Monocle:
+ *  -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw.
+ */
+public class SoakMonitor {
+
+	/** Drops the samples of the first quarter of the run from the trends: caches filling, JIT compiling and the like. */
+	private static final double WARM_UP = 0.25;
+	private static final String CYCLE_DIGITS = "000500";	//each countdown runs for 5 virtual minutes
+	private static final int CYCLES_PER_WINDOW = 10;		//countdowns run in one window before it is closed and a new one opened
+
+	/** One measurement of the application. */
+	private static final class Sample {
+		double hours;			//virtual time since the start
+		double heapMiB, nodes, tickP99Ms, pulseP99Ms;
+	}
+
+	/** A measured quantity that must not grow, and how much growth over the run is let through as noise. */
+	private enum Metric {
+		HEAP("heap after GC (MiB)", 2, 0.05),
+		NODES("live nodes", 20, 0.02),
+		TICK("tick p99 (ms)", 1, 0.5),
+		PULSE("pulse interval p99 (ms)", 2, 0.5);
+
+		final String label;
+		final double minLimit, relativeLimit;	//the limit is the larger of minLimit and relativeLimit times the mean
+
+		Metric(String label, double minLimit, double relativeLimit) {
+			this.label = label;
+			this.minLimit = minLimit;
+			this.relativeLimit = relativeLimit;
+		}
+
+		double of(Sample s) {
+			switch(this) {
+			case HEAP: return s.heapMiB;
+			case NODES: return s.nodes;
+			case TICK: return s.tickP99Ms;
+			default: return s.pulseP99Ms;
+			}
+		}
+	}
+
+	private final PulseScheduler scheduler;
+	private final VirtualClock clock;
+	private final LongConsumer tick;
+	private final Supplier<CountdownTimer> countdownOpener;
+	private final long stepNanos, durationNanos, sampleEveryNanos;
+	private final File report;
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final LatencyHistogram tickCost = new LatencyHistogram(), pulseInterval = new LatencyHistogram();
+	private final List<Sample> samples = new ArrayList<>();
+	private PulseScheduler.Handle driver;
+	private PrintWriter csv;
+	private CountdownTimer countdown;
+	private long startNanos, lastPulse, lastSample;		//lastPulse and lastSample are pulse times, 0 for none yet
+	private int cycles, cyclesInWindow;
+	private boolean pausedThisCycle, passed = true, finished;
+
+	/**
+	 * Construct a soak test. Nothing happens until start().
+	 * @param scheduler the application's scheduler, which the test is driven from
+	 * @param clock the virtual clock the clock and the countdowns run on
+	 * @param tick ticks the clock with the given time, like the second ticker does
+	 * @param countdownOpener opens a countdown window, or returns null if none can be opened
+	 * @param stepNanos virtual time per pulse
+	 * @param durationNanos virtual time to run for
+	 * @param sampleEveryNanos real time between samples
+	 * @param report the CSV file for the samples. The summary goes next to it, with "-summary" added to the name.
+	 */
+	public SoakMonitor(PulseScheduler scheduler, VirtualClock clock, LongConsumer tick, Supplier<CountdownTimer> countdownOpener,
+			long stepNanos, long durationNanos, long sampleEveryNanos, File report) {
+		this.scheduler = scheduler;
+		this.clock = clock;
+		this.tick = tick;
+		this.countdownOpener = countdownOpener;
+		this.stepNanos = stepNanos;
+		this.durationNanos = durationNanos;
+		this.sampleEveryNanos = sampleEveryNanos;
+		this.report = report;
+	}
+
+	/**
+	 * Method: start
+	 * Start driving the application. Invoked on the JavaFX thread. When the run is over, the application exits.
+	 */
+	public void start() {
+		try {
+			csv = new PrintWriter(new FileWriter(report));
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not write soak report %s: %s\n", report, ioe);
+			return;
+		}
+		csv.println("virtual_hours,heap_mib,nodes,tick_p99_ms,pulse_p99_ms,pulse_max_ms,wakeups_per_s,countdown_cycles");
+		System.out.printf("Soak test: %.1f virtual hours at %.1f s a pulse, report in %s\n", durationNanos / 3.6e12, stepNanos / 1e9,
+				report.getAbsolutePath());
+		startNanos = clock.nanoTime();
+		driver = scheduler.everyFrame(this::pulse);
+		driver.start();
+	}
+
+	/** @return false if the run failed. True while it is still going. */
+	public boolean hasPassed() {
+		return passed;
+	}
+
+	/** One pulse: one clock tick, a step of the countdown cycle, and a sample if one is due. */
+	private void pulse(long now) {
+		if(lastPulse != 0) pulseInterval.record(now - lastPulse);
+		if(lastSample == 0) lastSample = now;
+		lastPulse = now;
+
+		long begin = System.nanoTime();
+		clock.advance(stepNanos);
+		tick.accept(clock.millis());
+		tickCost.record(System.nanoTime() - begin);
+		cycleCountdown();
+
+		if(now - lastSample >= sampleEveryNanos) {
+			sample();
+			lastSample = now;
+			lastPulse = 0;		//the garbage collection is not part of the next interval
+		}
+		if(clock.nanoTime() - startNanos >= durationNanos) finish();
+	}
+
+	/** Move the countdown on: open a window if there is none, start a countdown if it is reset, pause and resume half way through. */
+	private void cycleCountdown() {
+		if(countdown == null) {
+			countdown = countdownOpener.get();
+			cyclesInWindow = 0;
+			if(countdown == null) return;
+			countdown.getEngine().addListener(new CountdownEngine.Listener() {
+				@Override
+				public void expired(CountdownEngine engine) {
+					cycles++;
+					cyclesInWindow++;
+				}
+			});
+		}
+		CountdownEngine engine = countdown.getEngine();
+		switch(engine.getState()) {
+		case IDLE:
+			countdown.stopMedia();		//the alarm of the previous cycle
+			if(cyclesInWindow >= CYCLES_PER_WINDOW) {		//close the window the way the user would, and open a new one next pulse
+				Window window = countdown.getScene().getWindow();
+				window.fireEvent(new WindowEvent(window, WindowEvent.WINDOW_CLOSE_REQUEST));
+				window.hide();
+				countdown = null;
+				return;
+			}
+			for(int i = 0; i < CYCLE_DIGITS.length(); i++) engine.enterDigit(CYCLE_DIGITS.charAt(i) - '0');
+			engine.start();
+			pausedThisCycle = false;
+			break;
+		case RUNNING:
+			if(!pausedThisCycle && engine.getRemainingNanos() <= 150000000000L) {	//half way through
+				engine.pause();
+				pausedThisCycle = true;
+			}
+			break;
+		case PAUSED:
+			engine.start();
+			break;
+		}
+	}
+
+	private void sample() {
+		System.gc();
+		Sample s = new Sample();
+		s.hours = (clock.nanoTime() - startNanos) / 3.6e12;
+		s.heapMiB = memory.getHeapMemoryUsage().getUsed() / 1048576.0;
+		for(Window window : Window.getWindows()) {
+			Scene scene = window.getScene();
+			if(scene != null && scene.getRoot() != null) s.nodes += countNodes(scene.getRoot());
+		}
+		s.tickP99Ms = tickCost.getPercentile(99) / 1e6;
+		s.pulseP99Ms = pulseInterval.getPercentile(99) / 1e6;
+		samples.add(s);
+		csv.printf("%.3f,%.2f,%.0f,%.3f,%.3f,%.3f,%d,%d%n", s.hours, s.heapMiB, s.nodes, s.tickP99Ms, s.pulseP99Ms,
+				pulseInterval.getMax() / 1e6, scheduler.getWakeupsPerSecond(), cycles);
+		csv.flush();
+		tickCost.reset();
+		pulseInterval.reset();
+	}
+
+	private static int countNodes(Node node) {
+		int count = 1;
+		if(node instanceof Parent) {
+			for(Node child : ((Parent) node).getChildrenUnmodifiable()) count += countNodes(child);
+		}
+		return count;
+	}
+
+	/** Fit the trends, write the verdict and exit. */
+	private void finish() {
+		if(finished) return;
+		finished = true;
+		driver.stop();
+		sample();
+		csv.close();
+		List<Sample> steady = samples.subList((int) (samples.size() * WARM_UP), samples.size());
+		String name = report.getName().replaceFirst("(\\.[^.]*)?$", "-summary$1");
+		File summary = new File(report.getAbsoluteFile().getParentFile(), name);
+		try(PrintWriter out = new PrintWriter(new FileWriter(summary))) {
+			out.println("metric,mean,first,last,growth_per_day,growth_over_run,limit,verdict");
+			for(Metric m : Metric.values()) {
+				double[] fit = fit(steady, m);		//mean, slope per hour
+				double span = steady.size() < 2 ? 0 : steady.get(steady.size() - 1).hours - steady.get(0).hours;
+				double growth = fit[1] * span, limit = Math.max(m.minLimit, m.relativeLimit * fit[0]);
+				boolean ok = (steady.size() < 3 || growth <= limit);
+				passed &= ok;
+				String line = String.format("%s,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%s", m.label, fit[0], m.of(steady.get(0)),
+						m.of(steady.get(steady.size() - 1)), fit[1] * 24, growth, limit, ok ? "PASS" : "FAIL");
+				out.println(line);
+				System.out.println("Soak " + line);
+			}
+			out.printf("countdown cycles,%d,,,,,,%n", cycles);
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not write soak summary %s: %s\n", summary, ioe);
+			passed = false;
+		}
+		System.out.printf("Soak test %s after %.1f virtual hours, %d countdown cycles. Summary in %s\n", passed ? "passed" : "FAILED",
+				samples.get(samples.size() - 1).hours, cycles, summary.getAbsolutePath());
+		Platform.exit();
+	}
+
+	/** @return the mean of the metric and the least-squares slope of it against virtual hours */
+	private static double[] fit(List<Sample> samples, Metric m) {
+		int n = samples.size();
+		double sx = 0, sy = 0;
+		for(Sample s : samples) {
+			sx += s.hours;
+			sy += m.of(s);
+		}
+		double mx = sx / n, my = sy / n, sxy = 0, sxx = 0;
+		for(Sample s : samples) {
+			sxy += (s.hours - mx) * (m.of(s) - my);
+			sxx += (s.hours - mx) * (s.hours - mx);
+		}
+		return new double[] { my, sxx == 0 ? 0 : sxy / sxx };
+	}
+}
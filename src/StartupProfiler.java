@@ -0,0 +1,73 @@
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+/** Class: StartupProfiler.java
+ *
+ *  This Class - Measures how long a window takes to get on screen. Create one when the work for a window starts, mark() the end of
+ *  each phase, then call reportOnFirstFrame() once the stage has been shown. The first frame is rendered at the end of the first
+ *  pulse after that, so the breakdown is taken on the pulse after it, once the frame is out. For the primary window the JVM uptime
+ *  at creation is included, which covers JVM startup, class loading and JavaFX toolkit startup.
+ *  Only reports with -Dclock.startup.report=true, and only for the first window of each kind; otherwise it does nothing.
+ */
+public class StartupProfiler {
+
+	private static final boolean REPORT = Boolean.getBoolean("clock.startup.report");
+	private static final Set<String> reported = new HashSet<>();	//kinds of window reported so far. JavaFX thread only.
+
+	private final String name;
+	private final boolean active;		//reporting, and this is the first window of its kind
+	private final long startNanos, uptimeMillis;
+	private final StringBuilder phases = new StringBuilder();
+	private long lastNanos;
+
+	/**
+	 * Construct a profiler and start the clock.
+	 * @param name kind of window, used in the report
+	 */
+	public StartupProfiler(String name) {
+		this.name = name;
+		this.active = REPORT && !reported.contains(name);
+		this.uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		this.startNanos = this.lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Method: mark
+	 * Record the end of a phase. Its duration is the time since the previous mark.
+	 * @param phase name of the phase that just finished
+	 */
+	public void mark(String phase) {
+		if(!active) return;
+		long now = System.nanoTime();
+		phases.append(String.format("  %-20s %7.1f ms%n", phase, (now - lastNanos) / 1e6));
+		lastNanos = now;
+	}
+
+	/**
+	 * Method: reportOnFirstFrame
+	 * Print the breakdown once the first frame of the shown window has been rendered.
+	 * @param scene the scene of the window, just shown
+	 */
+	public void reportOnFirstFrame(Scene scene) {
+		if(!active || !reported.add(name)) return;
+		scene.addPostLayoutPulseListener(new Runnable() {
+			private int pulses;
+
+			@Override
+			public void run() {
+				if(++pulses == 1) {		//the first frame is rendered after this
+					Platform.requestNextPulse();
+					return;
+				}
+				if(pulses > 2) return;
+				Platform.runLater(() -> scene.removePostLayoutPulseListener(this));		//not while the scene runs its listeners
+				mark("first frame");
+				System.out.printf("Startup of %s window (JVM uptime at start %d ms):%n%s  %-20s %7.1f ms%n",
+						name, uptimeMillis, phases, "time to first frame", (System.nanoTime() - startNanos) / 1e6);
+			}
+		});
+	}
+}
@@ -0,0 +1,70 @@
+import java.io.File;
+import java.io.IOException;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+
+/** Class: StatsOverlay.java
+ *
+ *  This Class - Hidden label showing the Telemetry histograms (count, p50, p99 and max of every metric) on top of the clock,
+ *  along with how many times per second the PulseScheduler wakes the JavaFX thread, and the images held by the AssetCache.
+ *  toggle() shows or hides it. While it is shown the histograms record and the text is refreshed twice a second; once it is
+ *  hidden again, recording stops (unless -Dclock.stats=true) and the refresh stops with it.
+ */
+public class StatsOverlay extends Label {
+
+	private static final boolean ALWAYS_RECORD = Boolean.getBoolean("clock.stats");
+
+	private final PulseScheduler scheduler;
+	private final PulseScheduler.Handle refresh;
+
+	/**
+	 * Construct the overlay, hidden.
+	 * @param scheduler the scheduler whose wakeups are reported
+	 */
+	public StatsOverlay(PulseScheduler scheduler) {
+		this.scheduler = scheduler;
+		this.refresh = scheduler.every(500000000L, now -> setText(report()));
+		setVisible(false);
+		setMouseTransparent(true);		//never gets in the way of the clock
+		setPadding(new Insets(4));
+		setStyle("-fx-font-family: monospace; -fx-font-size: 10; -fx-text-fill: white; -fx-background-color: rgba(0, 0, 0, 0.7)");
+	}
+
+	/**
+	 * Method: toggle
+	 * Show the overlay and start recording, or hide it and stop.
+	 */
+	public void toggle() {
+		boolean show = !isVisible();
+		setVisible(show);
+		Telemetry.setRecording(show || ALWAYS_RECORD);
+		if(show) {
+			setText(report());
+			refresh.start();
+		}
+		else refresh.stop();
+	}
+
+	private String report() {
+		return Telemetry.report() + String.format("%-26s %7d%n", "scheduler wakeups/s", scheduler.getWakeupsPerSecond())
+				+ AssetCache.getShared().report();
+	}
+
+	/**
+	 * Method: export
+	 * Write the histograms to a CSV file on a background thread.
+	 */
+	public void export(File file) {
+		Thread writer = new Thread(() -> {
+			try {
+				Telemetry.export(file);
+				System.out.printf("Stats exported to %s\n", file.getAbsolutePath());
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not export stats to %s: %s\n", file, ioe);
+			}
+		}, "stats-export");
+		writer.setDaemon(true);
+		writer.start();
+	}
+}
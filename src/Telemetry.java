@@ -0,0 +1,246 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Map;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+
+/** Class: Telemetry.java
+ *
+ *  This Class - Timing instrumentation for the clock and the countdowns: how late ticks fire, how long painting takes, how late
+ *  alarms sound and how long settings I/O and image decoding take. Every measurement goes to two places, each only while it is switched on:
+ *  a LatencyHistogram per metric (p50/p99/max, shown by the stats overlay and written by export()), switched on with
+ *  setRecording() or -Dclock.stats=true; and a custom JDK Flight Recorder event, switched on by starting a recording,
+ *  e.g. with -XX:StartFlightRecording or jcmd.
+ *  While both are off, begin() returns 0 without reading the clock and every record call returns after one check.
+ */
+public final class Telemetry {
+
+	/** What is measured. */
+	public enum Metric {
+		CLOCK_TICK_LATENESS("clock tick lateness"),
+		COUNTDOWN_TICK_LATENESS("countdown tick lateness"),
+		COUNTDOWN_EXPIRY_LATENESS("countdown expiry lateness"),
+		CLOCK_PAINT("clock paint"),
+		COUNTDOWN_PAINT("countdown paint"),
+		ALARM_LATENCY("alarm latency"),
+		SETTINGS_IO("settings I/O"),
+		ASSET_DECODE("image decode");
+
+		private final String label;
+
+		Metric(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private static final Map<Metric, LatencyHistogram> histograms = new EnumMap<>(Metric.class);
+	private static volatile boolean recording = Boolean.getBoolean("clock.stats");
+	private static volatile boolean flightRecording;	//a JFR recording is running
+	private static volatile boolean active = recording;
+
+	static {
+		for(Metric m : Metric.values()) histograms.put(m, new LatencyHistogram());
+		/* Follow JFR recordings starting and stopping, so no event is even created while there is no recording. */
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			@Override
+			public void recorderInitialized(FlightRecorder recorder) {
+				updateFlightRecording();
+			}
+
+			@Override
+			public void recordingStateChanged(Recording recording) {
+				updateFlightRecording();
+			}
+		});
+	}
+
+	private Telemetry() {}
+
+	/** @return true while the histograms are recording */
+	public static boolean isRecording() {
+		return recording;
+	}
+
+	/** Switch the histograms on or off. What they already hold is kept. */
+	public static void setRecording(boolean on) {
+		recording = on;
+		active = recording || flightRecording;
+	}
+
+	private static void updateFlightRecording() {
+		boolean running = false;
+		if(FlightRecorder.isInitialized()) {
+			for(Recording r : FlightRecorder.getFlightRecorder().getRecordings()) {
+				if(r.getState() == RecordingState.RUNNING) running = true;
+			}
+		}
+		flightRecording = running;
+		active = recording || flightRecording;
+	}
+
+	/**
+	 * Method: begin
+	 * Start timing something. Pass the result to end() once it is done.
+	 * @return the current System.nanoTime(), or 0 if nothing is being recorded
+	 */
+	public static long begin() {
+		return active ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Method: end
+	 * Record the time since begin() for the given metric. Does nothing if begin() returned 0.
+	 */
+	public static void end(Metric metric, long beginNanos) {
+		if(beginNanos != 0) record(metric, System.nanoTime() - beginNanos);
+	}
+
+	/**
+	 * Method: record
+	 * Record one measurement in nanoseconds.
+	 */
+	public static void record(Metric metric, long nanos) {
+		if(!active) return;
+		if(recording) histograms.get(metric).record(nanos);
+		if(flightRecording) commitEvent(metric, nanos);
+	}
+
+	/** @return the histogram for the given metric */
+	public static LatencyHistogram getHistogram(Metric metric) {
+		return histograms.get(metric);
+	}
+
+	/** Forget everything the histograms hold. */
+	public static void reset() {
+		for(LatencyHistogram h : histograms.values()) h.reset();
+	}
+
+	/**
+	 * Method: report
+	 * @return one line per metric with its count, p50, p99 and max in milliseconds
+	 */
+	public static String report() {
+		StringBuilder sb = new StringBuilder(String.format("%-26s %7s %9s %9s %9s%n", "metric", "count", "p50 ms", "p99 ms", "max ms"));
+		for(Metric m : Metric.values()) {
+			LatencyHistogram h = histograms.get(m);
+			sb.append(String.format("%-26s %7d %9.3f %9.3f %9.3f%n", m.getLabel(), h.getCount(),
+					h.getPercentile(50) / 1e6, h.getPercentile(99) / 1e6, h.getMax() / 1e6));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Method: export
+	 * Write the histograms to a CSV file, one row per metric, times in nanoseconds.
+	 */
+	public static void export(File file) throws IOException {
+		try(PrintWriter pw = new PrintWriter(file)) {
+			pw.println("metric,count,mean_ns,p50_ns,p90_ns,p99_ns,p999_ns,max_ns");
+			for(Metric m : Metric.values()) {
+				LatencyHistogram h = histograms.get(m);
+				pw.printf("%s,%d,%d,%d,%d,%d,%d,%d%n", m.name(), h.getCount(), h.getMean(), h.getPercentile(50),
+						h.getPercentile(90), h.getPercentile(99), h.getPercentile(99.9), h.getMax());
+			}
+		}
+	}
+
+	private static void commitEvent(Metric metric, long nanos) {
+		switch(metric) {
+		case CLOCK_TICK_LATENESS: case COUNTDOWN_TICK_LATENESS: case COUNTDOWN_EXPIRY_LATENESS:
+			TickLatenessEvent tick = new TickLatenessEvent();
+			tick.source = metric.getLabel();
+			tick.lateness = nanos;
+			tick.commit();
+			break;
+		case CLOCK_PAINT: case COUNTDOWN_PAINT:
+			PaintEvent paint = new PaintEvent();
+			paint.source = metric.getLabel();
+			paint.paintDuration = nanos;
+			paint.commit();
+			break;
+		case ALARM_LATENCY:
+			AlarmLatencyEvent alarm = new AlarmLatencyEvent();
+			alarm.latency = nanos;
+			alarm.commit();
+			break;
+		case SETTINGS_IO:
+			SettingsIoEvent io = new SettingsIoEvent();
+			io.ioDuration = nanos;
+			io.commit();
+			break;
+		case ASSET_DECODE:
+			AssetDecodeEvent decode = new AssetDecodeEvent();
+			decode.decodeDuration = nanos;
+			decode.commit();
+			break;
+		}
+	}
+
+	@Name("clock.TickLateness")
+	@Label("Tick Lateness")
+	@Category("Clock")
+	@Description("How long after it was due a clock or countdown tick ran")
+	static class TickLatenessEvent extends Event {
+		@Label("Source")
+		String source;
+		@Label("Lateness")
+		@Timespan
+		long lateness;
+	}
+
+	@Name("clock.Paint")
+	@Label("Paint")
+	@Category("Clock")
+	@Description("Time spent updating the clock or countdown display")
+	static class PaintEvent extends Event {
+		@Label("Source")
+		String source;
+		@Label("Duration")
+		@Timespan
+		long paintDuration;
+	}
+
+	@Name("clock.AlarmLatency")
+	@Label("Alarm Latency")
+	@Category("Clock")
+	@Description("Time from a countdown's deadline to its alarm sound being started")
+	static class AlarmLatencyEvent extends Event {
+		@Label("Latency")
+		@Timespan
+		long latency;
+	}
+
+	@Name("clock.SettingsIo")
+	@Label("Settings I/O")
+	@Category("Clock")
+	@Description("Time spent reading or writing the settings file")
+	static class SettingsIoEvent extends Event {
+		@Label("Duration")
+		@Timespan
+		long ioDuration;
+	}
+
+	@Name("clock.AssetDecode")
+	@Label("Image Decode")
+	@Category("Clock")
+	@Description("Time spent decoding an image for the asset cache")
+	static class AssetDecodeEvent extends Event {
+		@Label("Duration")
+		@Timespan
+		long decodeDuration;
+	}
+}
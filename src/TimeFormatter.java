@@ -0,0 +1,117 @@
+/** Class: TimeFormatter.java
+ *
+ *  This Class - Fixed-width formatter for the digits shown on the clock and timer labels, e.g. "00:00:00 " or "000".
+ *  The layout is given once as a template in which every run of '0' characters is a numeric field, zero-padded to the
+ *  length of the run, and everything else is copied as is. A field whose value needs more digits than the run simply widens.
+ *  Digits are written into a reusable char buffer without Formatter, boxing or temporary strings; a new String is only
+ *  created by toString() when a value actually changed. Typical use:
+ *  <pre>
+ *  if(fmt.set(0, hour) | fmt.set(1, min) | fmt.set(2, sec)) label.setText(fmt.toString());
+ *  </pre>
+ */
+public class TimeFormatter {
+
+	private final String[] literals;	//literals[i] comes before field i; the last one comes after the last field
+	private final int[] widths;			//minimum width of each field
+	private final int[] values;
+	private String suffix = "";
+	private char[] buf;
+	private String text;				//cached result of toString(). null when something changed since.
+
+	/**
+	 * Construct a formatter.
+	 * @param template layout of the output, e.g. "00:00:00 ". Every run of '0' characters is a numeric field.
+	 */
+	public TimeFormatter(String template) {
+		int fields = 0;
+		for(int i = 0; i < template.length(); i++) {
+			if(template.charAt(i) == '0' && (i == 0 || template.charAt(i - 1) != '0')) fields++;
+		}
+		literals = new String[fields + 1];
+		widths = new int[fields];
+		values = new int[fields];
+		int field = 0, start = 0, i = 0;
+		while(i < template.length()) {
+			if(template.charAt(i) == '0') {
+				literals[field] = template.substring(start, i);
+				int end = i;
+				while(end < template.length() && template.charAt(end) == '0') end++;
+				widths[field++] = end - i;
+				i = start = end;
+			}
+			else i++;
+		}
+		literals[fields] = template.substring(start);
+		buf = new char[template.length() + 8];
+	}
+
+	/**
+	 * Method: set
+	 * @param field index of the numeric field, counting from the left
+	 * @param value the new value of the field. A negative value is written with a '-' in front, which counts towards the
+	 * width of the field as it does in String.format(): -5 in "000" reads "-05".
+	 * @return true if the displayed text changed
+	 */
+	public boolean set(int field, int value) {
+		if(values[field] == value && text != null) return false;
+		values[field] = value;
+		text = null;
+		return true;
+	}
+
+	/**
+	 * Method: setSuffix
+	 * Set text appended after the template, e.g. "AM" or "PM". Pass a constant so nothing is allocated.
+	 * @return true if the displayed text changed
+	 */
+	public boolean setSuffix(String suffix) {
+		if(this.suffix.equals(suffix) && text != null) return false;
+		this.suffix = suffix;
+		text = null;
+		return true;
+	}
+
+	/** @return the formatted text. Only builds a new String if something changed since the last call. */
+	@Override
+	public String toString() {
+		if(text == null) {
+			int len = 0;
+			for(int f = 0; f <= widths.length; f++) {
+				len = append(literals[f], len);
+				if(f < widths.length) len = appendDigits(values[f], widths[f], len);
+			}
+			len = append(suffix, len);
+			text = new String(buf, 0, len);
+		}
+		return text;
+	}
+
+	private int append(String s, int len) {
+		ensureCapacity(len + s.length());
+		s.getChars(0, s.length(), buf, len);
+		return len + s.length();
+	}
+
+	/** Write value zero-padded to at least width characters, the sign included. */
+	private int appendDigits(int value, int width, int len) {
+		long magnitude = value;		//long, as -Integer.MIN_VALUE does not fit in an int
+		if(value < 0) {
+			len = append("-", len);
+			magnitude = -magnitude;
+			width--;
+		}
+		int digits = 1;
+		for(long v = magnitude; v >= 10; v /= 10) digits++;
+		if(digits < width) digits = width;
+		ensureCapacity(len + digits);
+		for(int pos = len + digits - 1; pos >= len; pos--) {
+			buf[pos] = (char) ('0' + magnitude % 10);
+			magnitude /= 10;
+		}
+		return len + digits;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > buf.length) buf = java.util.Arrays.copyOf(buf, capacity * 2);
+	}
+}
@@ -0,0 +1,473 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/** Class: TimerHistory.java
+ *
+ *  This Class - Permanent record of what every countdown did, for billing and auditing: each start, pause, resume, reset and
+ *  expiry is appended to a history file as one fixed-size binary record (event, countdown id, wall-clock time, time left, CRC32),
+ *  and is never changed afterwards.
+ *  Daily and weekly totals (time spent counting down, countdowns started, paused, reset and expired) are kept up to date as each
+ *  event is written, and saved to a totals file next to the history along with how many events they cover. Opening the history
+ *  therefore only reads the totals and the events written after them, however long the history is. Time counted down is split
+ *  at local midnight, and weeks start on Monday.
+ *  export() streams the history to CSV a record at a time, so it takes the same memory for a hundred events as for a million.
+ *  All file access happens on one background thread, and every public method except getTotals() returns immediately.
+ */
+public class TimerHistory {
+
+	/** What happened to a countdown. Stored by ordinal, so new events may only be added at the end. */
+	public enum Event {
+		START, PAUSE, RESUME, RESET, EXPIRE,
+		/** The countdown was taken over by a new one after a restart (see restored()). Ends its time counting down. */
+		HANDOVER
+	}
+
+	/** Totals for one day or week. */
+	public static final class Totals {
+		public long runMillis;		//time spent counting down
+		public int started, paused, reset, expired;
+	}
+
+	private static final int RECORD_SIZE = 1 + 8 + 8 + 4 + 4;	//event, id, wall-clock millis, millis left, CRC32
+	private static final int TOTALS_MAGIC = 0x54485431;			//"THT1"
+	private static final int SAVE_TOTALS_EVERY = 4096;			//events between saves of the totals while running
+
+	private final File file, totalsFile;
+	private final ZoneId zone = ZoneId.systemDefault();
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "timer-history");
+		t.setDaemon(true);
+		return t;
+	});
+	/* Everything below is confined to the writer thread */
+	private final TreeMap<Long, Totals> days = new TreeMap<>(), weeks = new TreeMap<>();	//by epoch day of the day, or of its Monday
+	private final Map<Long, Long> runningSince = new HashMap<>();		//wall-clock start of each countdown counting down right now
+	private long records;		//records in the history file, all of them applied to the totals
+	private long savedRecords;	//records covered by the totals file
+	private FileOutputStream out;
+	private final CRC32 readCrc = new CRC32();
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);		//guarded by this
+	private final CRC32 crc = new CRC32();									//guarded by this
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();	//guarded by this
+	private boolean flushScheduled;												//guarded by this
+
+	/**
+	 * Construct a history, and open it in the background.
+	 * @param file the history file
+	 * @param totalsFile where the daily and weekly totals are kept
+	 */
+	public TimerHistory(File file, File totalsFile) {
+		this.file = file;
+		this.totalsFile = totalsFile;
+		writer.execute(this::open);
+	}
+
+	/**
+	 * Method: recorder
+	 * @param id the countdown's id
+	 * @param timeSource the time source of the countdown's engine
+	 * @return a listener that records the given countdown's events in this history
+	 */
+	public CountdownEngine.Listener recorder(long id, CountdownEngine.TimeSource timeSource) {
+		return new CountdownEngine.Listener() {
+			private CountdownEngine.State previous = CountdownEngine.State.IDLE;
+			private long pausedNanos;	//time left when last paused, as a reset clears it from the engine
+
+			@Override
+			public void stateChanged(CountdownEngine engine, CountdownEngine.State state) {
+				CountdownEngine.State was = previous;
+				previous = state;
+				switch(state) {
+				case RUNNING:
+					//A countdown restored after a restart has no typed digits. It carries on from the countdown it took over.
+					boolean fresh = (was == CountdownEngine.State.IDLE && !engine.keyTypedOrderIsEmpty());
+					append(fresh ? Event.START : Event.RESUME, id, System.currentTimeMillis(), engine.getRemainingNanos());
+					break;
+				case PAUSED:
+					pausedNanos = engine.getRemainingNanos();
+					if(was == CountdownEngine.State.RUNNING) append(Event.PAUSE, id, System.currentTimeMillis(), pausedNanos);
+					break;
+				case IDLE:
+					if(was == CountdownEngine.State.PAUSED) append(Event.RESET, id, System.currentTimeMillis(), pausedNanos);
+					else if(was == CountdownEngine.State.RUNNING) {
+						long left = engine.getDeadlineNanos() - timeSource.nanoTime();
+						if(left > 0) append(Event.RESET, id, System.currentTimeMillis(), left);		//otherwise it expired, which expired() records
+					}
+					break;
+				}
+			}
+
+			@Override
+			public void expired(CountdownEngine engine) {
+				append(Event.EXPIRE, id, System.currentTimeMillis(), 0);
+			}
+		};
+	}
+
+	/**
+	 * Method: restored
+	 * Note that a countdown saved before a restart has been taken over by a new one, which records its own events from now on.
+	 * @param oldId the id the countdown was saved under
+	 * @param untilMillis wall-clock time up to which the old countdown counted down: now, or its deadline if that is earlier
+	 */
+	public void restored(long oldId, long untilMillis) {
+		append(Event.HANDOVER, oldId, untilMillis, 0);
+	}
+
+	/** Queue one event for writing. */
+	private void append(Event event, long id, long wallMillis, long remainingNanos) {
+		synchronized(this) {
+			record.clear();
+			record.put((byte) event.ordinal()).putLong(id).putLong(wallMillis).putInt((int) Math.min(remainingNanos / 1000000, Integer.MAX_VALUE));
+			crc.reset();
+			crc.update(record.array(), 0, RECORD_SIZE - 4);
+			record.putInt((int) crc.getValue());
+			pending.write(record.array(), 0, RECORD_SIZE);
+			if(flushScheduled) return;
+			flushScheduled = true;
+		}
+		writer.execute(this::flush);
+	}
+
+	/**
+	 * Method: getTotals
+	 * @param daily true for the daily totals, false for the weekly ones
+	 * @return a copy of the totals, by the first day they cover. Waits for the history's thread, so do not use on the JavaFX thread.
+	 */
+	public TreeMap<LocalDate, Totals> getTotals(boolean daily) throws Exception {
+		return writer.submit(() -> {
+			TreeMap<LocalDate, Totals> copy = new TreeMap<>();
+			for(Map.Entry<Long, Totals> e : (daily ? days : weeks).entrySet()) {
+				Totals t = new Totals();
+				t.runMillis = e.getValue().runMillis + openMillis(e.getKey(), daily);
+				t.started = e.getValue().started;
+				t.paused = e.getValue().paused;
+				t.reset = e.getValue().reset;
+				t.expired = e.getValue().expired;
+				copy.put(LocalDate.ofEpochDay(e.getKey()), t);
+			}
+			return copy;
+		}).get();
+	}
+
+	/** Time counted down so far in the given day or week by the countdowns still running */
+	private long openMillis(long epochDay, boolean daily) {
+		long from = LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+		long until = LocalDate.ofEpochDay(epochDay).plusDays(daily ? 1 : 7).atStartOfDay(zone).toInstant().toEpochMilli();
+		long now = System.currentTimeMillis(), total = 0;
+		for(long since : runningSince.values()) total += Math.max(0, Math.min(now, until) - Math.max(since, from));
+		return total;
+	}
+
+	/**
+	 * Method: export
+	 * Write every event to one CSV file, and the daily and weekly totals to another, in the background. The events are streamed
+	 * from the history file a record at a time.
+	 */
+	public void export(File eventsCsv, File totalsCsv) {
+		writer.execute(() -> {
+			try(InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+					Writer csv = new BufferedWriter(new FileWriter(eventsCsv), 1 << 16)) {
+				csv.write("time,timer,event,remaining_ms\n");
+				byte[] buf = new byte[RECORD_SIZE];
+				ByteBuffer rec = ByteBuffer.wrap(buf);
+				for(long i = 0; i < records; i++) {
+					if(in.readNBytes(buf, 0, RECORD_SIZE) < RECORD_SIZE) break;
+					readCrc.reset();
+					readCrc.update(buf, 0, RECORD_SIZE - 4);
+					rec.clear();
+					int ordinal = rec.get();
+					long id = rec.getLong(), wall = rec.getLong();
+					int remaining = rec.getInt();
+					if(rec.getInt() != (int) readCrc.getValue() || ordinal < 0 || ordinal >= Event.values().length) {
+						System.out.printf("Timer history %s is damaged after %d events, exported those\n", file, i);
+						break;
+					}
+					csv.write(Instant.ofEpochMilli(wall) + "," + id + "," + Event.values()[ordinal] + "," + remaining + "\n");
+				}
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not export timer history to %s: %s\n", eventsCsv, ioe);
+				return;
+			}
+			try(Writer csv = new BufferedWriter(new FileWriter(totalsCsv))) {
+				csv.write("period,start,run_seconds,started,paused,reset,expired\n");
+				for(int pass = 0; pass < 2; pass++) {
+					boolean daily = (pass == 0);
+					for(Map.Entry<Long, Totals> e : (daily ? days : weeks).entrySet()) {
+						Totals t = e.getValue();
+						csv.write((daily ? "day," : "week,") + LocalDate.ofEpochDay(e.getKey()) + ","
+								+ (t.runMillis + openMillis(e.getKey(), daily)) / 1000 + "," + t.started + "," + t.paused + ","
+								+ t.reset + "," + t.expired + "\n");
+					}
+				}
+				System.out.printf("Timer history exported to %s and %s\n", eventsCsv.getAbsolutePath(), totalsCsv.getAbsolutePath());
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not export timer totals to %s: %s\n", totalsCsv, ioe);
+			}
+		});
+	}
+
+	/**
+	 * Method: close
+	 * Write whatever is still queued, save the totals and stop the history's thread. Waits at most a second.
+	 */
+	public void close() {
+		writer.execute(() -> {
+			try {
+				if(records != savedRecords) saveTotals();
+				if(out != null) out.close();
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not close timer history %s: %s\n", file, ioe);
+			}
+		});
+		writer.shutdown();
+		try {
+			writer.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Read the totals, and bring them up to date with any events written after them. Runs on the history's thread. */
+	private void open() {
+		try {
+			long length = file.length();
+			if(!loadTotals() || savedRecords * RECORD_SIZE > length) {	//no totals, or they are for another history: start over
+				days.clear();
+				weeks.clear();
+				runningSince.clear();
+				savedRecords = 0;
+			}
+			records = savedRecords;
+			replay(length);
+			if(records * RECORD_SIZE < length) {	//drop a record torn by a crash, so appending carries on from a clean point
+				try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					raf.setLength(records * RECORD_SIZE);
+				}
+			}
+			out = new FileOutputStream(file, true);
+			if(records - savedRecords >= SAVE_TOTALS_EVERY) saveTotals();	//do not replay all that again next time
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not open timer history %s: %s\n", file, ioe);
+		}
+	}
+
+	/** Apply the records from the end of the totals to the end of the file. */
+	private void replay(long length) throws IOException {
+		if(records * RECORD_SIZE >= length) return;
+		try(FileInputStream fis = new FileInputStream(file)) {
+			fis.getChannel().position(records * RECORD_SIZE);
+			InputStream in = new BufferedInputStream(fis, 1 << 16);
+			byte[] buf = new byte[RECORD_SIZE];
+			ByteBuffer rec = ByteBuffer.wrap(buf);
+			while(in.readNBytes(buf, 0, RECORD_SIZE) == RECORD_SIZE) {
+				readCrc.reset();
+				readCrc.update(buf, 0, RECORD_SIZE - 4);
+				rec.clear();
+				int ordinal = rec.get();
+				long id = rec.getLong(), wall = rec.getLong();
+				rec.getInt();
+				if(rec.getInt() != (int) readCrc.getValue() || ordinal < 0 || ordinal >= Event.values().length) break;	//torn or garbage
+				apply(Event.values()[ordinal], id, wall);
+				records++;
+			}
+		}
+	}
+
+	/** Write one batch of queued records, and apply them to the totals. Runs on the history's thread. */
+	private void flush() {
+		byte[] batch;
+		synchronized(this) {
+			batch = pending.toByteArray();
+			pending.reset();
+			flushScheduled = false;
+		}
+		if(out == null) return;		//could not be opened
+		try {
+			out.write(batch);
+			out.getChannel().force(false);		//the batch is on disk before we carry on
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not write timer history %s, %d events lost: %s\n", file, batch.length / RECORD_SIZE, ioe);
+			try {
+				out.getChannel().truncate(records * RECORD_SIZE);	//cut off whatever part of the batch made it, so the next one is not misaligned
+			}
+			catch(IOException again) {
+				System.out.printf("Could not cut timer history %s back, no more events are written: %s\n", file, again);
+				try {
+					out.close();
+				}
+				catch(IOException ignored) {
+				}
+				out = null;
+			}
+			return;
+		}
+		ByteBuffer rec = ByteBuffer.wrap(batch);
+		while(rec.remaining() >= RECORD_SIZE) {
+			Event event = Event.values()[rec.get()];
+			long id = rec.getLong(), wall = rec.getLong();
+			rec.position(rec.position() + 8);		//time left and CRC
+			apply(event, id, wall);
+			records++;
+		}
+		try {
+			if(records - savedRecords >= SAVE_TOTALS_EVERY) saveTotals();
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not save timer totals %s: %s\n", totalsFile, ioe);
+		}
+	}
+
+	/** Bring the daily and weekly totals up to date with one event. */
+	private void apply(Event event, long id, long wallMillis) {
+		switch(event) {
+		case START:
+			totals(wallMillis).forEach(t -> t.started++);
+			runningSince.put(id, wallMillis);
+			break;
+		case RESUME:
+			runningSince.putIfAbsent(id, wallMillis);
+			break;
+		case PAUSE:
+			totals(wallMillis).forEach(t -> t.paused++);
+			stopped(id, wallMillis);
+			break;
+		case RESET:
+			totals(wallMillis).forEach(t -> t.reset++);
+			stopped(id, wallMillis);
+			break;
+		case EXPIRE:
+			totals(wallMillis).forEach(t -> t.expired++);
+			stopped(id, wallMillis);
+			break;
+		case HANDOVER:
+			stopped(id, wallMillis);
+			break;
+		}
+	}
+
+	/** A countdown stopped counting down: add the time since it started, split at each local midnight, to the totals */
+	private void stopped(long id, long wallMillis) {
+		Long since = runningSince.remove(id);
+		if(since == null) return;
+		long from = since;
+		while(from < wallMillis) {
+			LocalDate day = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+			long until = Math.min(wallMillis, day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+			for(Totals t : totals(day)) t.runMillis += until - from;
+			from = until;
+		}
+	}
+
+	private List<Totals> totals(long wallMillis) {
+		return totals(Instant.ofEpochMilli(wallMillis).atZone(zone).toLocalDate());
+	}
+
+	/** @return the totals of the given day and of its week */
+	private List<Totals> totals(LocalDate day) {
+		long week = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+		return List.of(days.computeIfAbsent(day.toEpochDay(), d -> new Totals()), weeks.computeIfAbsent(week, w -> new Totals()));
+	}
+
+	/** @return true if the totals file was read */
+	private boolean loadTotals() {
+		if(!totalsFile.exists()) return false;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(totalsFile)))) {
+			if(in.readInt() != TOTALS_MAGIC) return false;
+			savedRecords = in.readLong();
+			for(int n = in.readInt(); n > 0; n--) runningSince.put(in.readLong(), in.readLong());
+			readTotals(in, days);
+			readTotals(in, weeks);
+			return true;
+		}
+		catch(EOFException eof) {
+			return false;		//torn; the totals are rebuilt from the history
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not read timer totals %s: %s\n", totalsFile, ioe);
+			return false;
+		}
+	}
+
+	private static void readTotals(DataInputStream in, Map<Long, Totals> into) throws IOException {
+		for(int n = in.readInt(); n > 0; n--) {
+			Totals t = new Totals();
+			long epochDay = in.readLong();
+			t.runMillis = in.readLong();
+			t.started = in.readInt();
+			t.paused = in.readInt();
+			t.reset = in.readInt();
+			t.expired = in.readInt();
+			into.put(epochDay, t);
+		}
+	}
+
+	/** Write the totals to a temporary file and rename it over the old one, so a crash never leaves half of them behind. */
+	private void saveTotals() throws IOException {
+		File tmp = new File(totalsFile.getPath() + ".tmp");
+		try(FileOutputStream fos = new FileOutputStream(tmp); DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+			dos.writeInt(TOTALS_MAGIC);
+			dos.writeLong(records);
+			dos.writeInt(runningSince.size());
+			for(Map.Entry<Long, Long> e : runningSince.entrySet()) {
+				dos.writeLong(e.getKey());
+				dos.writeLong(e.getValue());
+			}
+			writeTotals(dos, days);
+			writeTotals(dos, weeks);
+			dos.flush();
+			out.getChannel().force(false);		//the events the totals cover are on disk before the totals say so
+			fos.getChannel().force(false);
+		}
+		Files.move(tmp.toPath(), totalsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		savedRecords = records;
+	}
+
+	private static void writeTotals(DataOutputStream dos, Map<Long, Totals> totals) throws IOException {
+		dos.writeInt(totals.size());
+		for(Map.Entry<Long, Totals> e : totals.entrySet()) {
+			Totals t = e.getValue();
+			dos.writeLong(e.getKey());
+			dos.writeLong(t.runMillis);
+			dos.writeInt(t.started);
+			dos.writeInt(t.paused);
+			dos.writeInt(t.reset);
+			dos.writeInt(t.expired);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/** Class: TimerJournal.java
+ *
+ *  This Class - Crash-safe record of the countdowns that are running or paused, so they survive the application being killed or
+ *  the machine rebooting. Every change of a countdown is appended to a journal file as one small binary record holding the whole
+ *  state of that countdown: running (with its deadline in wall-clock time), paused (with the time left) or gone, plus its note and
+ *  alarm sound. The last record for a countdown wins. Once the journal holds many more records than live countdowns, it is
+ *  compacted by writing a snapshot of the live ones to a temporary file and renaming it over the journal.
+ *  Each record carries its length and a CRC32, so a record torn by a crash is detected and dropped on the next load. The alarm
+ *  sound and note are stored as UTF-8 with an int length, so a note of any size fits up to MAX_NOTE_CHARS; longer ones are cut.
+ *  All file access happens on one background thread. record() only queues the record, and everything queued until the writer gets
+ *  to it is written and forced to disk as one batch, so the caller never waits on the disk.
+ */
+public class TimerJournal {
+
+	/** The saved state of one countdown. */
+	public static final class Entry {
+		public final long id;
+		public final CountdownEngine.State state;
+		/** RUNNING: wall-clock time (System.currentTimeMillis()) at which it expires. PAUSED: milliseconds left. IDLE: unused. */
+		public final long time;
+		public final String alarmSound, note;
+
+		public Entry(long id, CountdownEngine.State state, long time, String alarmSound, String note) {
+			this.id = id;
+			this.state = state;
+			this.time = time;
+			this.alarmSound = alarmSound;
+			this.note = note;
+		}
+
+		/** @return the time left on the countdown at the given wall-clock time, in milliseconds. Negative if overdue. */
+		public long remainingMillis(long nowMillis) {
+			return state == CountdownEngine.State.RUNNING ? time - nowMillis : time;
+		}
+	}
+
+	/** Longest note kept in the journal, in chars. Even all in 3-byte UTF-8 it keeps a record well under the 1 MB read() accepts. */
+	public static final int MAX_NOTE_CHARS = 256 * 1024;
+
+	private static final int COMPACT_MIN_RECORDS = 256;	//never compact a journal smaller than this
+	private static final int UTF8_STRINGS = 0x40;		//set in every record's state byte: its strings are int-length UTF-8
+
+	private final File file;
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "timer-journal");
+		t.setDaemon(true);
+		return t;
+	});
+	private Map<Long, Entry> live = new LinkedHashMap<>();		//as in the file. Confined to the writer thread.
+	private int records;											//records in the file. Confined to the writer thread.
+	private FileOutputStream out;									//confined to the writer thread
+	private long length;											//bytes in the file up to its last whole record. Writer thread only.
+	private List<Entry> pending = new ArrayList<>();				//guarded by this
+	private boolean flushScheduled;									//guarded by this
+
+	/**
+	 * Construct a journal. Nothing is read or written until load() or record() is invoked.
+	 * @param file the journal file
+	 */
+	public TimerJournal(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Method: load
+	 * Read the journal in the background, and pass the countdowns that were running or paused to the callback, on the
+	 * journal's thread. Should be invoked once, before anything is recorded.
+	 */
+	public void load(Consumer<Collection<Entry>> onLoaded) {
+		writer.execute(() -> {
+			try {
+				long good = read();
+				if(good < file.length()) {	//drop a record torn by a crash, so appending carries on from a clean point
+					try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+						raf.setLength(good);
+					}
+				}
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not read timer journal %s: %s\n", file, ioe);
+			}
+			onLoaded.accept(new ArrayList<>(live.values()));
+		});
+	}
+
+	/**
+	 * Method: record
+	 * Queue the new state of a countdown for writing. Returns immediately.
+	 */
+	public void record(Entry entry) {
+		synchronized(this) {
+			pending.add(entry);
+			if(flushScheduled) return;
+			flushScheduled = true;
+		}
+		writer.execute(this::flush);
+	}
+
+	/**
+	 * Method: close
+	 * Write whatever is still queued and stop the journal's thread. Waits at most a second.
+	 */
+	public void close() {
+		writer.execute(() -> {
+			try {
+				if(out != null) out.close();
+			}
+			catch(IOException ioe) {
+				System.out.printf("Could not close timer journal %s: %s\n", file, ioe);
+			}
+		});
+		writer.shutdown();
+		try {
+			writer.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Method: flush
+	 * Write one batch of queued records. Runs on the journal's thread. The batch is applied to a copy of the live countdowns,
+	 * which only takes their place once the batch is on disk, so live and records always describe what the file holds. If the
+	 * write fails, the batch is dropped.
+	 */
+	private void flush() {
+		List<Entry> batch;
+		synchronized(this) {
+			batch = pending;
+			pending = new ArrayList<>();
+			flushScheduled = false;
+		}
+		Map<Long, Entry> next = new LinkedHashMap<>(live);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			int added = 0;
+			for(Entry e : batch) {
+				if(e.state == CountdownEngine.State.IDLE) {
+					if(next.remove(e.id) == null) continue;		//never saved, so nothing to forget
+				}
+				else next.put(e.id, e);
+				writeRecord(bytes, e);
+				added++;
+			}
+			if(added == 0) return;
+			if(records + added >= COMPACT_MIN_RECORDS && records + added > 4 * next.size()) {
+				compact(next);
+				records = next.size();
+			}
+			else {
+				append(bytes);
+				records += added;
+			}
+			live = next;
+		}
+		catch(IOException ioe) {
+			System.out.printf("Could not write timer journal %s, %d changes lost: %s\n", file, batch.size(), ioe);
+		}
+	}
+
+	/**
+	 * Method: append
+	 * Append the records to the journal and force them to disk. If that fails, whatever part of them made it is cut off again,
+	 * so later records never follow a torn one (read() stops at the first bad record).
+	 */
+	private void append(ByteArrayOutputStream bytes) throws IOException {
+		if(out == null) {
+			out = new FileOutputStream(file, true);
+			length = file.length();
+		}
+		try {
+			bytes.writeTo(out);
+			out.getChannel().force(false);		//the batch is on disk before we carry on
+			length += bytes.size();
+		}
+		catch(IOException ioe) {
+			try {
+				out.close();
+				out = null;
+				try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					raf.setLength(length);
+				}
+			}
+			catch(IOException again) {
+				ioe.addSuppressed(again);
+			}
+			throw ioe;
+		}
+	}
+
+	/** Replace the journal with a snapshot of the given countdowns. */
+	private void compact(Map<Long, Entry> snapshotOf) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for(Entry e : snapshotOf.values()) writeRecord(bytes, e);
+		try(FileOutputStream snapshot = new FileOutputStream(tmp)) {
+			bytes.writeTo(snapshot);
+			snapshot.getChannel().force(false);
+		}
+		if(out != null) {
+			out.close();
+			out = null;
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		out = new FileOutputStream(file, true);
+		length = bytes.size();
+	}
+
+	/** Read every intact record into live. @return the length of the file up to the last intact record */
+	private long read() throws IOException {
+		if(!file.exists()) return 0;
+		long good = 0;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while(true) {
+				int length;
+				try {
+					length = in.readInt();
+				}
+				catch(EOFException eof) {
+					break;
+				}
+				if(length <= 0 || length > 1 << 20) break;	//garbage
+				byte[] payload = new byte[length];
+				int crc;
+				try {
+					in.readFully(payload);
+					crc = in.readInt();
+				}
+				catch(EOFException eof) {
+					break;			//torn record at the end
+				}
+				CRC32 check = new CRC32();
+				check.update(payload);
+				if((int) check.getValue() != crc) break;
+
+				DataInputStream rec = new DataInputStream(new ByteArrayInputStream(payload));
+				long id = rec.readLong();
+				int kind = rec.readByte(), ordinal = kind & ~UTF8_STRINGS;
+				if((kind & UTF8_STRINGS) == 0 || ordinal >= CountdownEngine.State.values().length) break;	//garbage
+				CountdownEngine.State state = CountdownEngine.State.values()[ordinal];
+				long time = rec.readLong();
+				String alarmSound, note;
+				try {
+					alarmSound = readString(rec);
+					note = readString(rec);
+				}
+				catch(IOException ioe) {
+					break;			//garbage
+				}
+				if(state == CountdownEngine.State.IDLE) live.remove(id);
+				else live.put(id, new Entry(id, state, time, alarmSound, note));
+				records++;
+				good += 4 + length + 4;
+			}
+		}
+		return good;
+	}
+
+	/** Append one framed record: length, payload, CRC32 of the payload. */
+	private void writeRecord(ByteArrayOutputStream bytes, Entry e) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+		DataOutputStream rec = new DataOutputStream(payload);
+		rec.writeLong(e.id);
+		rec.writeByte(e.state.ordinal() | UTF8_STRINGS);
+		rec.writeLong(e.time);
+		writeString(rec, e.alarmSound);
+		String note = e.note;
+		if(note.length() > MAX_NOTE_CHARS) {
+			int end = MAX_NOTE_CHARS;
+			if(Character.isHighSurrogate(note.charAt(end - 1))) end--;		//do not split a character in two
+			note = note.substring(0, end);
+			System.out.printf("Note of timer %d is too long for timer journal %s, saved the first %d chars\n", e.id, file, end);
+		}
+		writeString(rec, note);
+		rec.flush();
+		CRC32 crc = new CRC32();
+		crc.update(payload.toByteArray());
+		DataOutputStream frame = new DataOutputStream(new BufferedOutputStream(bytes));
+		frame.writeInt(payload.size());
+		payload.writeTo(frame);
+		frame.writeInt((int) crc.getValue());
+		frame.flush();
+	}
+
+	/** Write a string as its length in UTF-8 bytes, then the bytes. Unlike writeUTF() this has no 64 KB limit. */
+	private static void writeString(DataOutputStream rec, String s) throws IOException {
+		byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+		rec.writeInt(utf8.length);
+		rec.write(utf8);
+	}
+
+	/** Read a string written by writeString() */
+	private static String readString(DataInputStream rec) throws IOException {
+		int length = rec.readInt();
+		if(length < 0 || length > rec.available()) throw new IOException("Bad string length " + length);
+		byte[] utf8 = new byte[length];
+		rec.readFully(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+}
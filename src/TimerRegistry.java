@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/** Class: TimerRegistry.java
+ *
+ *  This Class - Directory of the countdowns in the application, by id, for anything that controls them from outside the windows
+ *  (see ControlServer). Every registered countdown has an immutable Snapshot of its state and deadline, replaced whenever its
+ *  state changes or digits are typed into it, which any thread may read: the time left on a running countdown follows from its
+ *  deadline on the countdowns' TimeSource, so readers never have to touch the engine. Changes of state and expiries are also passed to the registered Sinks.
+ *  Everything else (register, unregister, create and command) must be invoked on the JavaFX application thread.
+ */
+public class TimerRegistry {
+
+	/** The state of one countdown at the time it last changed. */
+	public static final class Snapshot {
+		public final long id;
+		public final CountdownEngine.State state;
+		/** PAUSED or IDLE: the time left. RUNNING: the time left when the snapshot was taken. */
+		public final long remainingNanos;
+		/** RUNNING: the time on the registry's TimeSource at which it expires. */
+		public final long deadlineNanos;
+
+		Snapshot(long id, CountdownEngine.State state, long remainingNanos, long deadlineNanos) {
+			this.id = id;
+			this.state = state;
+			this.remainingNanos = remainingNanos;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		/** @return the time left at the given time on the registry's TimeSource, never negative */
+		public long remainingNanos(long nowNanos) {
+			return state == CountdownEngine.State.RUNNING ? Math.max(deadlineNanos - nowNanos, 0) : remainingNanos;
+		}
+	}
+
+	/** Receives changes as they happen, on the JavaFX thread. Must return quickly and must not do I/O. */
+	public interface Sink {
+		void stateChanged(Snapshot snapshot);
+		void expired(Snapshot snapshot);
+	}
+
+	private final CountdownEngine.TimeSource timeSource;
+	private final Map<Long, CountdownEngine> engines = new ConcurrentSkipListMap<>();
+	private final Map<Long, Snapshot> snapshots = new ConcurrentSkipListMap<>();
+	private final Map<Long, CountdownEngine.Listener> listeners = new ConcurrentSkipListMap<>();
+	private final List<Sink> sinks = new CopyOnWriteArrayList<>();
+	private LongSupplier creator = () -> -1;
+
+	/** Construct a registry for countdowns driven by System.nanoTime(). */
+	public TimerRegistry() {
+		this(System::nanoTime);
+	}
+
+	/** Construct a registry for countdowns whose deadlines are on the given time source, which any thread may read. */
+	public TimerRegistry(CountdownEngine.TimeSource timeSource) {
+		this.timeSource = timeSource;
+	}
+
+	/** @return the time source the snapshots' deadlines are on */
+	public CountdownEngine.TimeSource getTimeSource() {
+		return timeSource;
+	}
+
+	/**
+	 * Method: register
+	 * Make a countdown known under the given id, and follow its changes.
+	 */
+	public void register(long id, CountdownEngine engine) {
+		CountdownEngine.Listener listener = new CountdownEngine.Listener() {
+			@Override
+			public void tick(CountdownEngine engine) {
+				if(engine.getState() == CountdownEngine.State.IDLE) snapshot(id, engine);	//digits typed, in the window or by command
+			}
+
+			@Override
+			public void stateChanged(CountdownEngine engine, CountdownEngine.State state) {
+				Snapshot s = snapshot(id, engine);
+				for(Sink sink : sinks) sink.stateChanged(s);
+			}
+
+			@Override
+			public void expired(CountdownEngine engine) {
+				Snapshot s = snapshots.get(id);
+				for(Sink sink : sinks) sink.expired(s);
+			}
+		};
+		engine.addListener(listener);
+		engines.put(id, engine);
+		listeners.put(id, listener);
+		snapshot(id, engine);
+	}
+
+	/** Forget the countdown with the given id, e.g. because its window was closed. */
+	public void unregister(long id) {
+		CountdownEngine engine = engines.remove(id);
+		if(engine != null) engine.removeListener(listeners.remove(id));
+		snapshots.remove(id);
+	}
+
+	/** Set what create() does: open a new countdown and return its id, or -1 if none can be opened. */
+	public void setCreator(LongSupplier creator) {
+		this.creator = creator;
+	}
+
+	public void addSink(Sink sink) {
+		sinks.add(sink);
+	}
+
+	public void removeSink(Sink sink) {
+		sinks.remove(sink);
+	}
+
+	/** @return the current snapshot of every countdown, by id. May be called from any thread. */
+	public Collection<Snapshot> getSnapshots() {
+		return new ArrayList<>(snapshots.values());
+	}
+
+	/** @return the current snapshot of the given countdown, or null if there is none. May be called from any thread. */
+	public Snapshot getSnapshot(long id) {
+		return snapshots.get(id);
+	}
+
+	/**
+	 * Method: create
+	 * Open a new countdown.
+	 * @return its id, or -1 if none could be opened
+	 */
+	public long create() {
+		return creator.getAsLong();
+	}
+
+	/**
+	 * Method: command
+	 * Do to a countdown what its window's controls do.
+	 * @param id the countdown
+	 * @param op "start", "pause", "toggle", "reset", or "digits" to type the digits in arg
+	 * @param arg the digits for "digits", otherwise unused
+	 * @return the countdown's snapshot afterwards, or null if there is no countdown with that id
+	 * @throws IllegalArgumentException if op or arg is not valid
+	 * @throws IllegalStateException if the countdown is in the wrong state for op
+	 */
+	public Snapshot command(long id, String op, String arg) {
+		CountdownEngine engine = engines.get(id);
+		if(engine == null) return null;
+		switch(op) {
+		case "start":
+			if(!engine.start()) throw new IllegalStateException("Nothing to count down");
+			break;
+		case "pause":
+			if(!engine.isRunning()) throw new IllegalStateException("Not running");
+			engine.pause();
+			break;
+		case "toggle":
+			engine.toggle();
+			break;
+		case "reset":
+			engine.reset();
+			break;
+		case "digits":
+			if(arg == null || !arg.matches("[0-9]{1,6}")) throw new IllegalArgumentException("digits must be 1 to 6 digits");
+			if(engine.getState() != CountdownEngine.State.IDLE) throw new IllegalStateException("Digits can only be typed while reset");
+			for(int i = 0; i < arg.length(); i++) engine.enterDigit(arg.charAt(i) - '0');
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operation: " + op);
+		}
+		return snapshots.get(id);
+	}
+
+	private Snapshot snapshot(long id, CountdownEngine engine) {
+		Snapshot s = new Snapshot(id, engine.getState(), engine.getState() == CountdownEngine.State.IDLE ? idleNanos(engine) : engine.getRemainingNanos(),
+				engine.getDeadlineNanos());
+		snapshots.put(id, s);
+		return s;
+	}
+
+	/** Time a reset countdown would start from, from the digits typed so far */
+	private static long idleNanos(CountdownEngine engine) {
+		return ((engine.getHour() * 60L + engine.getMin()) * 60 + engine.getSec()) * 1000000000L;
+	}
+}
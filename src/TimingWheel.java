@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+
+/** Class: TimingWheel.java
+ *
+ *  This Class - A hashed hierarchical timing wheel. Schedules one-shot tasks at a deadline (in the same nanosecond time base as
+ *  CountdownEngine.TimeSource) with O(1) insert and cancel, no matter how many tasks are pending. Each level has 64 slots; level 0
+ *  slots are one tick wide, level 1 slots are 64 ticks wide, and so on. As time advances, the slots of the upper levels are cascaded
+ *  down until their tasks land in level 0 and expire. All tasks expiring in one call to advance() are collected first and then run
+ *  as one batch. A bitmap per level records which slots hold anything, so advance() goes straight from one tick where something
+ *  happens to the next (a level 0 slot to expire, or an upper level slot to cascade) instead of visiting every tick: a jump of
+ *  an hour, e.g. after the machine slept, takes a handful of steps per pending task rather than 3.6 million.
+ *  Nothing runs by itself: the owner calls advance() with the current time (CountdownService does this once per JavaFX pulse).
+ *  Not thread-safe; all calls are expected to come from one thread.
+ */
+public class TimingWheel {
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;	//64 slots per level
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 6;				//64^6 ticks. That is about 795 days at 1 ms per tick.
+	private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	/** Handle for a scheduled task. Can be cancelled until it has run. */
+	public static final class Timeout {
+		private final Runnable task;
+		private final long deadlineNanos;
+		private long expiryTick;
+		private Timeout prev, next;
+		private Bucket bucket;		//null once the timeout has been taken off the wheel
+		private boolean cancelled;
+
+		private Timeout(Runnable task, long deadlineNanos) {
+			this.task = task;
+			this.deadlineNanos = deadlineNanos;
+		}
+
+		public long getDeadlineNanos() {
+			return deadlineNanos;
+		}
+
+		/** @return true while the task is still waiting to run */
+		public boolean isPending() {
+			return bucket != null;
+		}
+
+		/**
+		 * Method: cancel
+		 * Remove the task from the wheel so it never runs. Does nothing if it already ran or was cancelled.
+		 */
+		public void cancel() {
+			cancelled = true;	//also stops it if it is part of the batch that is currently running
+			if(bucket != null) bucket.wheel.remove(this);
+		}
+	}
+
+	/** Doubly linked list of the timeouts in one slot. */
+	private static final class Bucket {
+		private final TimingWheel wheel;
+		private final int level;
+		private final long bit;		//the slot's bit in its level's occupied bitmap
+		private Timeout head, tail;
+
+		private Bucket(TimingWheel wheel, int level, int slot) {
+			this.wheel = wheel;
+			this.level = level;
+			this.bit = 1L << slot;
+		}
+	}
+
+	private final CountdownEngine.TimeSource timeSource;
+	private final long tickNanos;
+	private final long originNanos;		//time of tick 0
+	private final Bucket[][] buckets = new Bucket[LEVELS][SLOTS];
+	private long currentTick;
+	private final long[] occupied = new long[LEVELS];	//bit n of a level set while its slot n holds a timeout
+	private int size;
+	private final ArrayList<Timeout> expired = new ArrayList<>();	//reused for every batch
+
+	/** Construct a wheel with 1 ms ticks driven by System.nanoTime(). */
+	public TimingWheel() {
+		this(CountdownEngine.SYSTEM_TIME, 1000000);
+	}
+
+	/**
+	 * Construct a wheel.
+	 * @param timeSource time source used to pick the origin of the wheel. Must be the same time base as the deadlines and advance().
+	 * @param tickNanos width of one tick in nanoseconds. Tasks run on the first advance() at or after the tick containing their deadline.
+	 */
+	public TimingWheel(CountdownEngine.TimeSource timeSource, long tickNanos) {
+		if(tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be positive: " + tickNanos);
+		this.timeSource = timeSource;
+		this.tickNanos = tickNanos;
+		this.originNanos = timeSource.nanoTime();
+		for(int level = 0; level < LEVELS; level++) {
+			for(int slot = 0; slot < SLOTS; slot++) buckets[level][slot] = new Bucket(this, level, slot);
+		}
+	}
+
+	public CountdownEngine.TimeSource getTimeSource() {
+		return timeSource;
+	}
+
+	/** @return number of tasks waiting to run */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Method: schedule
+	 * Schedule a task to run on the first advance() at or after the given deadline. A deadline in the past runs on the next advance().
+	 * @param deadlineNanos deadline in the wheel's time base
+	 * @param task the task to run
+	 * @return a handle that can be used to cancel the task
+	 */
+	public Timeout schedule(long deadlineNanos, Runnable task) {
+		Timeout timeout = new Timeout(task, deadlineNanos);
+		long offset = deadlineNanos - originNanos;
+		timeout.expiryTick = offset <= 0 ? 0 : (offset + tickNanos - 1) / tickNanos;	//round up, so a task never runs early
+		insert(timeout, currentTick + 1);	//the current tick has already been expired, so the earliest is the next one
+		size++;
+		return timeout;
+	}
+
+	/**
+	 * Method: advance
+	 * Move the wheel forward to the given time, then run every task whose deadline has been reached, in one batch.
+	 * @param nowNanos the current time in the wheel's time base
+	 * @return the number of tasks that ran
+	 */
+	public int advance(long nowNanos) {
+		long targetTick = (nowNanos - originNanos) / tickNanos;
+		if(size == 0) {		//nothing to cascade or expire, so just jump ahead
+			if(targetTick > currentTick) currentTick = targetTick;
+			return 0;
+		}
+		while(currentTick < targetTick && size > expired.size()) {
+			currentTick = nextTick(targetTick);
+			cascade();
+			Bucket bucket = buckets[0][(int) (currentTick & SLOT_MASK)];
+			for(Timeout t = bucket.head; t != null; t = t.next) expired.add(t);
+			bucket.head = bucket.tail = null;
+			occupied[0] &= ~bucket.bit;
+		}
+		if(currentTick < targetTick) currentTick = targetTick;
+
+		int count = expired.size();
+		for(int i = 0; i < count; i++) {
+			Timeout t = expired.get(i);
+			t.bucket = null; t.prev = t.next = null;
+		}
+		size -= count;
+		try {
+			for(int i = 0; i < count; i++) {
+				Timeout t = expired.get(i);
+				if(!t.cancelled) t.task.run();
+			}
+		}
+		finally {
+			expired.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * Method: nextTick
+	 * @return the first tick after the current one at which advance() has something to do, or the given tick if that is earlier:
+	 * the tick of the next occupied level 0 slot, or the next tick at which an occupied upper level slot is cascaded
+	 */
+	private long nextTick(long targetTick) {
+		long next = targetTick;
+		for(int level = 0; level < LEVELS; level++) {
+			if(occupied[level] == 0) continue;
+			int shift = SLOT_BITS * level;
+			long first = ((currentTick >>> shift) + 1) << shift;		//the next tick that is handled at this level
+			int from = (int) ((first >>> shift) & SLOT_MASK);
+			long turn = first - ((long) from << shift);					//tick of slot 0 in this turn of the level
+			long ahead = occupied[level] & (-1L << from);
+			/* A slot before the next one is in the level's next turn, as a level holds at most one turn's worth of ticks */
+			long tick = (ahead != 0 ? turn + ((long) Long.numberOfTrailingZeros(ahead) << shift)
+					: turn + ((long) (SLOTS + Long.numberOfTrailingZeros(occupied[level])) << shift));
+			if(tick < next) next = tick;
+		}
+		return next;
+	}
+
+	/** Bring down the slots of the upper levels whose time has come, highest level first. */
+	private void cascade() {
+		int top = 0;
+		while(top + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) top++;
+		for(int level = top; level >= 1; level--) {
+			Bucket bucket = buckets[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+			Timeout t = bucket.head;
+			bucket.head = bucket.tail = null;
+			occupied[level] &= ~bucket.bit;
+			while(t != null) {
+				Timeout next = t.next;
+				insert(t, currentTick);		//may land in the level 0 slot that is about to expire
+				t = next;
+			}
+		}
+	}
+
+	/** Put a timeout into the slot matching its expiry tick, but no earlier than the given tick. */
+	private void insert(Timeout t, long earliestTick) {
+		if(t.expiryTick < earliestTick) t.expiryTick = earliestTick;
+		/* Anything too far out for the wheel is parked at the far end of the top level, and re-inserted once it cascades down. */
+		long tick = Math.min(t.expiryTick, currentTick + MAX_DELTA);
+		long delta = tick - currentTick;
+		int level = 0;
+		while(delta >= (1L << (SLOT_BITS * (level + 1)))) level++;
+		Bucket bucket = buckets[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+		t.bucket = bucket;
+		t.next = null;
+		t.prev = bucket.tail;
+		if(bucket.tail == null) bucket.head = t; else bucket.tail.next = t;
+		bucket.tail = t;
+		occupied[bucket.level] |= bucket.bit;
+	}
+
+	/** Unlink a pending timeout from its slot. */
+	private void remove(Timeout t) {
+		Bucket bucket = t.bucket;
+		if(t.prev == null) bucket.head = t.next; else t.prev.next = t.next;
+		if(t.next == null) bucket.tail = t.prev; else t.next.prev = t.prev;
+		t.prev = t.next = null;
+		t.bucket = null;
+		if(bucket.head == null) occupied[bucket.level] &= ~bucket.bit;
+		size--;
+	}
+}
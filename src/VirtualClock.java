@@ -0,0 +1,105 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/** Class: VirtualClock.java
+ *
+ *  This Class - A clock whose time only moves when told to, for driving countdowns and the clock face faster than real time,
+ *  e.g. to check that a 10 hour countdown ends on time in a fraction of a second. It is both a CountdownEngine.TimeSource
+ *  (monotonic nanoseconds, for CountdownEngine and TimingWheel) and a java.time.Clock (wall time, for ClockPane), and the two
+ *  can be moved apart the way real clocks drift apart:
+ *  advance() moves both, like time passing normally. jumpWall() moves only the wall clock, like an NTP step or the user changing
+ *  the system time. suspend() moves only the wall clock as well, like a machine going to sleep: System.nanoTime() does not count
+ *  time spent suspended on every platform (e.g. CLOCK_MONOTONIC on Linux).
+ *  Not thread-safe; drive it from one thread. nanoTime() may be read from any thread, e.g. by the control API.
+ */
+public class VirtualClock extends Clock implements CountdownEngine.TimeSource {
+
+	private final ZoneId zone;
+	private volatile long nanos;	//monotonic time
+	private long wallOffsetNanos;	//wall time in nanoseconds since the epoch, minus nanos
+
+	/**
+	 * Construct a clock at the given wall time.
+	 * @param startMillis wall time to start at, in milliseconds since the epoch
+	 * @param zone time zone reported to java.time users
+	 */
+	public VirtualClock(long startMillis, ZoneId zone) {
+		this.zone = zone;
+		this.wallOffsetNanos = startMillis * 1000000;
+	}
+
+	/**
+	 * Method: advance
+	 * Let time pass: moves both the monotonic and the wall clock forward.
+	 */
+	public void advance(long deltaNanos) {
+		if(deltaNanos < 0) throw new IllegalArgumentException("Time cannot go backwards: " + deltaNanos);
+		nanos += deltaNanos;
+	}
+
+	/**
+	 * Method: jumpWall
+	 * Step the wall clock forward or back without time passing, like an NTP correction.
+	 */
+	public void jumpWall(long deltaNanos) {
+		wallOffsetNanos += deltaNanos;
+	}
+
+	/**
+	 * Method: suspend
+	 * Simulate the machine sleeping for the given time: the wall clock moves on, the monotonic clock does not.
+	 */
+	public void suspend(long deltaNanos) {
+		if(deltaNanos < 0) throw new IllegalArgumentException("Cannot sleep for negative time: " + deltaNanos);
+		wallOffsetNanos += deltaNanos;
+	}
+
+	@Override
+	public long nanoTime() {
+		return nanos;
+	}
+
+	@Override
+	public long millis() {
+		return Math.floorDiv(nanos + wallOffsetNanos, 1000000L);
+	}
+
+	@Override
+	public Instant instant() {
+		long wall = nanos + wallOffsetNanos;
+		return Instant.ofEpochSecond(Math.floorDiv(wall, 1000000000L), Math.floorMod(wall, 1000000000L));
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	/** @return a view of this clock in another time zone. It follows this clock as it is advanced. */
+	@Override
+	public Clock withZone(ZoneId zone) {
+		VirtualClock source = this;
+		return new Clock() {
+			@Override
+			public Instant instant() {
+				return source.instant();
+			}
+
+			@Override
+			public long millis() {
+				return source.millis();
+			}
+
+			@Override
+			public ZoneId getZone() {
+				return zone;
+			}
+
+			@Override
+			public Clock withZone(ZoneId other) {
+				return source.withZone(other);
+			}
+		};
+	}
+}
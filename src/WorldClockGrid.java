@@ -0,0 +1,136 @@
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Group;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/** Class: WorldClockGrid.java
+ *
+ *  This Class - A scrolling grid of clocks, one per time zone. The grid is a ListView with one row of clocks per cell, so only
+ *  the rows on screen (plus one or two spare) have ClockPanes at all: scrolling moves the existing clocks on to other zones
+ *  instead of creating new ones. The grid drives all of its clocks itself: one listener of the shared SecondTicker, which reads
+ *  the time once a second, passes it to every clock in use, and one listener of the scene repaints whichever clocks changed
+ *  before each layout pass, instead of every clock registering its own. While the window is hidden or iconified, the grid stops
+ *  listening to the ticker altogether. So the cost of the grid follows the number of clocks on screen, not the number of zones.
+ */
+public class WorldClockGrid extends BorderPane {
+
+	private static final double SCALE = 0.5;	//clocks are drawn at half size
+
+	private final int columns;
+	private final SecondTicker ticker;
+	private final List<Row> rows = new ArrayList<>();	//the row cells showing zones right now
+	private final LongConsumer tick = this::tick;			//registered with the ticker while active
+	private final Runnable repaint = this::repaint;		//registered with the scene the grid is in
+	private boolean active;
+
+	/**
+	 * Construct a grid.
+	 * @param stage the stage showing the grid. Ticking stops while it is hidden or iconified.
+	 * @param zones the time zones to show, in order
+	 * @param columns number of clocks per row
+	 * @param ticker the shared once-a-second tick
+	 */
+	public WorldClockGrid(Stage stage, List<ZoneId> zones, int columns, SecondTicker ticker) {
+		this.columns = columns;
+		this.ticker = ticker;
+
+		/* Split the zones into rows. Only the row cells on screen get clocks. */
+		ListView<List<ZoneId>> list = new ListView<>();
+		for(int i = 0; i < zones.size(); i += columns) {
+			list.getItems().add(zones.subList(i, Math.min(i + columns, zones.size())));
+		}
+		list.setCellFactory(v -> new Row());
+		list.setFocusTraversable(false);
+		setCenter(list);
+		sceneProperty().addListener((o, oldScene, scene) -> {
+			if(oldScene != null) oldScene.removePreLayoutPulseListener(repaint);
+			if(scene != null) scene.addPreLayoutPulseListener(repaint);
+		});
+
+		new RenderGovernor(stage, () -> setActive(false), () -> setActive(true));
+		setActive(stage.isShowing() && !stage.isIconified());
+	}
+
+	/** Start or stop listening to the ticker. */
+	private void setActive(boolean active) {
+		if(this.active == active) return;
+		this.active = active;
+		if(active) ticker.addListener(tick); else ticker.removeListener(tick);
+	}
+
+	/** A tick from the shared ticker. Only the clocks in use are given the time. */
+	private void tick(long millis) {
+		for(int i = 0; i < rows.size(); i++) rows.get(i).setCurrentTime(millis);
+	}
+
+	/** Run by the scene before each layout pass: repaint the clocks that changed since the last one. */
+	private void repaint() {
+		for(int i = 0; i < rows.size(); i++) rows.get(i).repaint();
+	}
+
+	/**
+	 * One row of the grid. Holds a fixed set of clocks and shows whichever zones the list view hands it. The clocks do not
+	 * repaint themselves: the grid does it for them.
+	 */
+	class Row extends ListCell<List<ZoneId>> {
+		private final ClockPane[] clocks = new ClockPane[columns];
+		private final Label[] names = new Label[columns];
+		private final VBox[] slots = new VBox[columns];
+		private int shown;		//number of clocks in use for the current item
+		private boolean inUse;	//in rows
+
+		Row() {
+			HBox box = new HBox(4);
+			for(int i = 0; i < columns; i++) {
+				clocks[i] = new ClockPane(ZoneId.systemDefault());
+				clocks[i].setSelfRepainting(false);
+				clocks[i].setScaleX(SCALE); clocks[i].setScaleY(SCALE);
+				names[i] = new Label();
+				names[i].setStyle("-fx-font-weight: bold");
+				slots[i] = new VBox(names[i], new Group(clocks[i]));
+				slots[i].setAlignment(Pos.TOP_CENTER);
+				slots[i].setPadding(new Insets(2));
+				box.getChildren().add(slots[i]);
+			}
+			setGraphic(box);
+			setText(null);
+		}
+
+		@Override
+		protected void updateItem(List<ZoneId> zones, boolean empty) {
+			super.updateItem(zones, empty);
+			shown = (empty || zones == null ? 0 : zones.size());
+			/* Only cells showing zones are ticked. A cell the list view throws away is emptied first, so it is let go here. */
+			if(inUse != shown > 0) {
+				inUse = shown > 0;
+				if(inUse) rows.add(this); else rows.remove(this);
+			}
+			getGraphic().setVisible(shown > 0);
+			for(int i = 0; i < columns; i++) {
+				slots[i].setVisible(i < shown);
+				if(i < shown) {
+					names[i].setText(zones.get(i).getId());
+					clocks[i].setZone(zones.get(i));
+				}
+			}
+		}
+
+		void setCurrentTime(long millis) {
+			for(int i = 0; i < shown; i++) clocks[i].setCurrentTime(millis);
+		}
+
+		void repaint() {
+			for(int i = 0; i < shown; i++) clocks[i].repaint();
+		}
+	}
+}
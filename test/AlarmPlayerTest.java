@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Class: AlarmPlayerTest.java
+ *
+ *  This Class - AlarmPlayer with silent sinks on a VirtualClock (the build runs the tests with -Dclock.audio=null): which alarms
+ *  start a sound, and the latency recorded for each, also for a sound that is still loading when its alarm goes off.
+ */
+public class AlarmPlayerTest {
+
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final VirtualClock clock = new VirtualClock(1790000000000L, ZoneId.of("UTC"));
+
+	/** A silent sink that counts how often it is started and stopped */
+	private static class RecordingSink implements AlarmPlayer.Sink {
+		int plays, stops;
+
+		@Override
+		public void play() {
+			plays++;
+		}
+
+		@Override
+		public void stop() {
+			stops++;
+		}
+	}
+
+	@Test
+	public void latencyIsRecordedWhenTheSoundStarts() throws Exception {
+		FxTestSupport.runOnFx(() -> {
+			AlarmPlayer player = new AlarmPlayer(clock);
+			RecordingSink sink = new RecordingSink();
+			player.addSink("bell", sink);
+			long deadline = clock.nanoTime();
+			clock.advance(3 * MILLI);
+			player.play("bell", "one", deadline);
+			assertEquals(1, sink.plays);
+			assertEquals(1, player.getAlarmCount());
+			assertEquals(3 * MILLI, player.getLastLatencyNanos());
+
+			clock.advance(50 * MILLI);
+			player.play("bell", "two", deadline);		//already playing: nothing starts, nothing recorded
+			assertEquals(1, sink.plays);
+			assertEquals(1, player.getAlarmCount());
+			assertEquals(3 * MILLI, player.getMaxLatencyNanos());
+
+			player.stop("one");
+			assertEquals(0, sink.stops);		//"two" still wants it
+			player.stop("two");
+			assertEquals(1, sink.stops);
+			return null;
+		});
+	}
+
+	@Test
+	public void alarmForASoundStillLoadingIsRecordedOnceItStarts() throws Exception {
+		CountDownLatch loaded = new CountDownLatch(1);
+		RecordingSink sink = new RecordingSink();
+		AlarmPlayer player = FxTestSupport.onFx(() -> {
+			AlarmPlayer p = new AlarmPlayer(clock);
+			p.addSound("slow", () -> {
+				loaded.await();
+				return sink;
+			});
+			p.play("slow", "owner", clock.nanoTime());
+			assertEquals(0, p.getAlarmCount());		//nothing to hear yet
+			clock.advance(200 * MILLI);		//the time it takes to load
+			return p;
+		});
+		loaded.countDown();
+		waitFor(() -> sink.plays == 1);
+		FxTestSupport.runOnFx(() -> {
+			assertEquals(1, player.getAlarmCount());
+			assertEquals(200 * MILLI, player.getLastLatencyNanos());
+			return null;
+		});
+	}
+
+	@Test
+	public void alarmSilencedWhileLoadingIsNeverRecorded() throws Exception {
+		CountDownLatch loaded = new CountDownLatch(1);
+		RecordingSink sink = new RecordingSink();
+		AlarmPlayer player = FxTestSupport.onFx(() -> {
+			AlarmPlayer p = new AlarmPlayer(clock);
+			p.addSound("slow", () -> {
+				loaded.await();
+				return sink;
+			});
+			p.play("slow", "owner", clock.nanoTime());
+			p.stop("owner");
+			return p;
+		});
+		loaded.countDown();
+		FxTestSupport.runOnFx(() -> {
+			player.play("slow", "again", clock.nanoTime());		//starts it, whether it has loaded by now or not
+			return null;
+		});
+		waitFor(() -> sink.plays == 1);
+		FxTestSupport.runOnFx(() -> {
+			assertEquals(1, player.getAlarmCount());	//only for the alarm that was heard
+			assertEquals(0, player.getLastLatencyNanos());
+			return null;
+		});
+	}
+
+	/** A condition checked until it holds */
+	private interface Condition {
+		boolean holds() throws Exception;
+	}
+
+	/** Wait for the loader thread and the JavaFX thread to get the condition to hold, for up to 10 seconds */
+	private static void waitFor(Condition condition) throws Exception {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(!FxTestSupport.onFx(condition::holds)) {
+			assertTrue(System.nanoTime() < end, "timed out");
+			Thread.sleep(5);
+		}
+	}
+}
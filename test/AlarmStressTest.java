@@ -0,0 +1,173 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Class: AlarmStressTest.java
+ *
+ *  This Class - 1000 countdowns expiring in the same instant, on one TimingWheel in simulated time (see CountdownSimulation),
+ *  each one firing the AlarmPipeline as CountdownTimer does and reported through the TimerRegistry. Fails if any countdown is
+ *  missed or goes off twice, if any goes off later than the frame it was due in, if any action run is lost, or if the frame in
+ *  which they all expire takes the JavaFX thread more than a frame of CPU time. CPU time rather than elapsed time, as the
+ *  action threads may take the CPU away from it on a small machine, which the JavaFX thread cannot help.
+ */
+public class AlarmStressTest {
+
+	private static final int TIMERS = 1000;
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final ConcurrentLinkedQueue<Runnable> uiQueue = new ConcurrentLinkedQueue<>();	//stands in for the JavaFX thread
+	private final AlarmPipeline pipeline = new AlarmPipeline(uiQueue::add);
+
+	/** Counts the alarms it is run for, by timer id, after taking the given time, like a script or a webhook would */
+	private static class CountingAction implements AlarmPipeline.Action {
+		final String name;
+		final long millis;
+		final ConcurrentHashMap<Long, AtomicInteger> runs = new ConcurrentHashMap<>();
+		final AtomicInteger uiUpdates = new AtomicInteger();
+
+		CountingAction(String name, long millis) {
+			this.name = name;
+			this.millis = millis;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Runnable run(AlarmPipeline.Alarm alarm) throws Exception {
+			if(millis > 0) Thread.sleep(millis);
+			runs.computeIfAbsent(alarm.timerId, id -> new AtomicInteger()).incrementAndGet();
+			return uiUpdates::incrementAndGet;
+		}
+	}
+
+	@AfterEach
+	public void close() {
+		pipeline.close();
+	}
+
+	@Test
+	public void thousandCountdownsExpiringTogether() throws InterruptedException {
+		CountdownSimulation sim = new CountdownSimulation(1790000000000L, 20).withJitter(2000000);
+		TimerRegistry registry = new TimerRegistry();
+		CountingAction fast = new CountingAction("fast", 0), slow = new CountingAction("slow", 20);
+		pipeline.addAction(fast);
+		pipeline.addAction(slow);
+		ConcurrentHashMap<Long, AtomicInteger> reported = new ConcurrentHashMap<>();
+		registry.addSink(new TimerRegistry.Sink() {
+			@Override
+			public void stateChanged(TimerRegistry.Snapshot snapshot) {}
+
+			@Override
+			public void expired(TimerRegistry.Snapshot snapshot) {
+				reported.computeIfAbsent(snapshot.id, id -> new AtomicInteger()).incrementAndGet();
+			}
+		});
+
+		List<CountdownEngine> engines = new ArrayList<>();
+		for(int i = 0; i < TIMERS; i++) {
+			long id = i;
+			CountdownEngine engine = sim.newEngine();
+			engine.addListener(new CountdownEngine.Listener() {
+				@Override
+				public void expired(CountdownEngine e) {
+					pipeline.fire(new AlarmPipeline.Alarm(id, "", AlarmPlayer.DEFAULT_SOUND, sim.getClock().millis()));
+				}
+			});
+			registry.register(id, engine);
+			engines.add(engine);
+		}
+		/* The first wave warms the code up; the frame of the second is timed */
+		expireTogether(sim, engines, 1);
+		long worstFrame = expireTogether(sim, engines, 2);
+		assertTrue(worstFrame < CountdownSimulation.FRAME_NANOS,
+				"expiring " + TIMERS + " countdowns took " + worstFrame / 1e6 + " ms of CPU in one frame");
+		assertTimes(reported, 2, "reported by the registry");
+
+		/* Every action ran once for every countdown in every wave, none was dropped, and the UI updates came back in batches */
+		long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while(pipeline.getPendingCount() > 0 && System.nanoTime() < waitUntil) Thread.sleep(10);
+		assertEquals(0, pipeline.getPendingCount());
+		assertEquals(4 * TIMERS, pipeline.getCompletedCount());
+		assertEquals(0, pipeline.getRejectedCount());
+		assertEquals(0, pipeline.getFailedCount());
+		assertEquals(0, pipeline.getTimedOutCount());
+		assertTimes(fast.runs, 2, "run by the fast action");
+		assertTimes(slow.runs, 2, "run by the slow action");
+		int batches = uiQueue.size();
+		Runnable batch;
+		while((batch = uiQueue.poll()) != null) batch.run();
+		assertEquals(2 * TIMERS, fast.uiUpdates.get());
+		assertEquals(2 * TIMERS, slow.uiUpdates.get());
+		assertTrue(batches < 2 * TIMERS, "every UI update took its own runLater");
+
+		/* Run them again and reset half of them before they expire: only the other half may go off */
+		for(CountdownEngine engine : engines) {
+			CountdownSimulation.type(engine, "5");
+			engine.start();
+		}
+		sim.runFor(2 * SECOND);
+		for(int i = 0; i < TIMERS; i += 2) engines.get(i).reset();
+		assertTrue(sim.runUntilIdle(10 * SECOND));
+		assertEquals(2 * TIMERS + TIMERS / 2, sim.getExpiries().size());
+		for(CountdownSimulation.Expiry e : sim.getExpiries().subList(2 * TIMERS, sim.getExpiries().size())) {
+			assertTrue(engines.indexOf(e.engine) % 2 == 1, "a countdown that was reset went off");
+		}
+		assertEquals(0, sim.getWheel().size());
+	}
+
+	/**
+	 * Method: expireTogether
+	 * Set every countdown to 10 seconds, start them all in the same instant and run frames until they have all gone off. Checks
+	 * that each went off once, in the frame it was due in.
+	 * @param wave how many waves have been run, this one included
+	 * @return the most CPU time any frame took
+	 */
+	private static long expireTogether(CountdownSimulation sim, List<CountdownEngine> engines, int wave) {
+		for(CountdownEngine engine : engines) CountdownSimulation.type(engine, "10");
+		for(CountdownEngine engine : engines) engine.start();		//in the same instant, so they share one deadline
+		long deadline = engines.get(0).getDeadlineNanos();
+		for(CountdownEngine engine : engines) assertEquals(deadline, engine.getDeadlineNanos());
+
+		long worstFrame = 0;
+		while(!sim.isIdle() && sim.getClock().nanoTime() < deadline + SECOND) {
+			long start = THREADS.getCurrentThreadCpuTime();
+			sim.frame();
+			worstFrame = Math.max(worstFrame, THREADS.getCurrentThreadCpuTime() - start);
+		}
+
+		List<CountdownSimulation.Expiry> expiries = sim.getExpiries();
+		assertEquals(wave * TIMERS, expiries.size());
+		long firedAt = expiries.get(expiries.size() - 1).firedNanos;
+		for(CountdownSimulation.Expiry e : expiries.subList((wave - 1) * TIMERS, expiries.size())) {
+			assertEquals(deadline, e.deadlineNanos);
+			assertEquals(firedAt, e.firedNanos);		//all in the same frame
+			assertTrue(e.errorNanos() >= 0 && e.errorNanos() < e.frameGapNanos + CountdownSimulation.WHEEL_TICK_NANOS,
+					"expired " + e.errorNanos() / 1e6 + " ms late");
+		}
+		assertEquals(0, sim.getWheel().size());
+		return worstFrame;
+	}
+
+	/** Every timer id is in the counts the given number of times */
+	private static void assertTimes(ConcurrentHashMap<Long, AtomicInteger> counts, int times, String what) {
+		for(long id = 0; id < TIMERS; id++) {
+			AtomicInteger count = counts.get(id);
+			assertEquals(times, count == null ? 0 : count.get(), "timer " + id + " " + what);
+		}
+		assertEquals(TIMERS, counts.size());
+	}
+}
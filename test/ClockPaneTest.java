@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.Test;
+
+/** Class: ClockPaneTest.java
+ *
+ *  This Class - ClockPanes in windows on the headless toolkit: a clock taken out of a window that stays open must not be kept
+ *  alive by the listeners it registered with the scene and the window, and a clock whose owner repaints it, as in the world clock
+ *  grid, is left alone by the scene. Also counts the bytes a clock allocates per tick.
+ */
+public class ClockPaneTest {
+
+	/** Most a tick and its repaint may allocate. Painting the clock once took about 194 KB when every tick built new nodes and
+	 * decoded the image again, and 2.7 KB once the nodes were kept, with the time formatted by String.format(). */
+	private static final long MAX_BYTES_PER_TICK = 1024;
+
+	@Test
+	public void clockTakenOutOfAnOpenWindowCanBeCollected() throws Exception {
+		FxTestSupport.assumeTextLayout();		//else the root keeps the clock as currentLayoutChild of the layout that threw
+		StackPane root = FxTestSupport.onFx(() -> {
+			Stage stage = new Stage();
+			stage.setScene(new Scene(new StackPane(), 300, 300));
+			stage.show();
+			return (StackPane) stage.getScene().getRoot();
+		});
+		WeakReference<ClockPane> gone = FxTestSupport.onFx(() -> {
+			ClockPane clock = new ClockPane(ZoneId.of("UTC"));
+			Scene before = new Scene(new Group(clock));		//in a scene with no window yet
+			((Group) before.getRoot()).getChildren().clear();
+			root.getChildren().add(clock);		//then in the open window
+			return new WeakReference<>(clock);
+		});
+		FxTestSupport.drain();		//one pulse in the window, and the image handed over
+		FxTestSupport.runOnFx(() -> {
+			root.getChildren().clear();
+			return null;
+		});
+		FxTestSupport.drain();
+
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(gone.get() != null) {
+			assertTrue(System.nanoTime() < end, "the window still holds on to the clock");
+			System.gc();
+			Thread.sleep(50);
+		}
+		FxTestSupport.runOnFx(() -> {
+			((Stage) root.getScene().getWindow()).close();
+			return null;
+		});
+	}
+
+	/** The digital time the clock shows */
+	private static String shownTime(ClockPane clock) {
+		return ((Label) clock.getChildren().get(4)).getText();
+	}
+
+	@Test
+	public void clockRepaintedByItsOwnerIsLeftAloneByTheScene() throws Exception {
+		FxTestSupport.assumeTextLayout();
+		long millis = 1790000000000L;
+		ClockPane[] clocks = FxTestSupport.onFx(() -> {
+			ClockPane owned = new ClockPane(ZoneId.of("UTC")), own = new ClockPane(ZoneId.of("UTC"));
+			owned.setSelfRepainting(false);
+			Stage stage = new Stage();
+			stage.setScene(new Scene(new StackPane(owned, own), 300, 300));
+			stage.show();
+			return new ClockPane[] { owned, own };
+		});
+		FxTestSupport.drain();
+		String before = FxTestSupport.onFx(() -> shownTime(clocks[0]));
+		String expected = FxTestSupport.onFx(() -> {
+			ClockPane reference = new ClockPane(ZoneId.of("UTC"));
+			reference.setCurrentTime(millis);
+			reference.repaint();
+			clocks[0].setCurrentTime(millis);
+			clocks[1].setCurrentTime(millis);
+			return shownTime(reference);
+		});
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(!FxTestSupport.onFx(() -> expected.equals(shownTime(clocks[1])))) {		//a pulse: the clock that repaints itself shows it
+			assertTrue(System.nanoTime() < end, "no pulse");
+			Thread.sleep(10);
+		}
+		FxTestSupport.runOnFx(() -> {
+			assertEquals(before, shownTime(clocks[0]));
+			clocks[0].repaint();		//as its owner would, before the next layout pass
+			assertEquals(expected, shownTime(clocks[0]));
+			clocks[0].getScene().getWindow().hide();
+			return null;
+		});
+	}
+
+	@Test
+	public void tickAllocatesNextToNothing() throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long perTick = FxTestSupport.onFx(() -> {
+			ClockPane clock = new ClockPane(ZoneId.of("Europe/Berlin"));
+			long millis = 1790000000000L;
+			long before = 0;
+			for(int i = 0; i < 30000; i++) {
+				if(i == 20000) before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());	//after warming up
+				clock.setCurrentTime(millis += 1000);
+				clock.repaint();
+			}
+			return (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before) / 10000;
+		});
+		assertTrue(perTick <= MAX_BYTES_PER_TICK, perTick + " bytes per tick");
+	}
+}
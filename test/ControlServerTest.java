@@ -0,0 +1,155 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Class: ControlServerTest.java
+ *
+ *  This Class - Raw HTTP requests to a ControlServer: which Host and Origin headers are let through, for plain requests and
+ *  WebSocket upgrades, and the 500 a failing command gets. Also what the timers list shows for countdowns on a VirtualClock. Commands run straight on the server's thread instead of the JavaFX
+ *  thread.
+ */
+public class ControlServerTest {
+
+	private static final String WS_HEADERS = "Upgrade: websocket\r\nConnection: Upgrade\r\nSec-WebSocket-Version: 13\r\n"
+			+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n";
+
+	private final TimerRegistry registry = new TimerRegistry();
+	private ControlServer server;
+
+	@BeforeEach
+	public void start() throws IOException {
+		server = new ControlServer(registry, Runnable::run, 0);
+	}
+
+	@AfterEach
+	public void stop() {
+		server.close();
+	}
+
+	/**
+	 * Method: statusOf
+	 * Send a request made of the given request line and headers, and read the status line of the answer.
+	 * @return the status code
+	 */
+	private int statusOf(String requestLine, String headers) throws IOException {
+		try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write((requestLine + "\r\n" + headers + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while((b = in.read()) >= 0 && b != '\n') line.write(b);
+			String status = line.toString("ISO-8859-1");		//e.g. HTTP/1.1 403 Forbidden
+			assertTrue(status.startsWith("HTTP/1.1 "), "no answer: " + status);
+			return Integer.parseInt(status.split(" ")[1]);
+		}
+	}
+
+	/** @return the body of the answer to a GET of the given path from the given server */
+	private static String bodyOf(ControlServer server, String path) throws IOException {
+		try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			ByteArrayOutputStream head = new ByteArrayOutputStream();
+			while(!head.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+				int b = in.read();
+				assertTrue(b >= 0, "no answer: " + head);
+				head.write(b);
+			}
+			String lengthHeader = head.toString(StandardCharsets.ISO_8859_1).split("Content-Length: ")[1];
+			int length = Integer.parseInt(lengthHeader.substring(0, lengthHeader.indexOf('\r')));
+			return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+		}
+	}
+
+	private String host() {
+		return "Host: 127.0.0.1:" + server.getPort() + "\r\n";
+	}
+
+	@Test
+	public void loopbackHostsAreAnswered() throws IOException {
+		assertEquals(200, statusOf("GET /timers HTTP/1.1", host()));
+		assertEquals(200, statusOf("GET /timers HTTP/1.1", "Host: localhost:" + server.getPort() + "\r\n"));
+		assertEquals(200, statusOf("GET /timers HTTP/1.1", "Host: [::1]:" + server.getPort() + "\r\n"));
+		assertEquals(200, statusOf("GET /timers HTTP/1.1", "Host: LOCALHOST\r\n"));
+		assertEquals(404, statusOf("GET /timers/5 HTTP/1.1", host()));
+	}
+
+	@Test
+	public void otherHostsAreRejected() throws IOException {
+		assertEquals(403, statusOf("GET /timers HTTP/1.1", "Host: attacker.example:" + server.getPort() + "\r\n"));	//DNS rebinding
+		assertEquals(403, statusOf("GET /timers HTTP/1.1", "Host: localhost.attacker.example\r\n"));
+		assertEquals(403, statusOf("GET /timers HTTP/1.1", "Host: [::1].attacker.example\r\n"));
+		assertEquals(403, statusOf("GET /timers HTTP/1.1", ""));		//no Host at all
+		assertEquals(403, statusOf("POST /timers HTTP/1.1", "Host: attacker.example\r\n"));
+		assertEquals(403, statusOf("GET /events HTTP/1.1", "Host: attacker.example\r\n" + WS_HEADERS));
+	}
+
+	@Test
+	public void webSocketUpgradesNeedAnAllowedOrigin() throws IOException {
+		assertEquals(101, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS));		//no Origin: not a browser
+		assertEquals(101, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS + "Origin: http://localhost:3000\r\n"));
+		assertEquals(403, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS + "Origin: https://attacker.example\r\n"));
+		assertEquals(403, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS + "Origin: null\r\n"));
+		assertEquals(403, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS + "Origin: https://dashboard.example\r\n"));
+		server.allowOrigin("https://Dashboard.example");
+		assertEquals(101, statusOf("GET /events HTTP/1.1", host() + WS_HEADERS + "Origin: https://dashboard.example\r\n"));
+	}
+
+	@Test
+	public void commandsFromForeignPagesAreRejected() throws IOException {
+		registry.setCreator(() -> 42);
+		assertEquals(403, statusOf("POST /timers HTTP/1.1", host() + "Origin: https://attacker.example\r\n"));
+		assertEquals(201, statusOf("POST /timers HTTP/1.1", host() + "Origin: http://127.0.0.1:8080\r\n"));
+		assertEquals(201, statusOf("POST /timers HTTP/1.1", host()));
+	}
+
+	@Test
+	public void failingCommandGetsA500() throws IOException {
+		registry.setCreator(() -> {
+			throw new NullPointerException("no window");
+		});
+		assertEquals(500, statusOf("POST /timers HTTP/1.1", host()));
+		assertEquals(200, statusOf("GET /timers HTTP/1.1", host()));		//and the server carries on
+	}
+
+	@Test
+	public void timersAreShownAsOnTheirOwnClock() throws IOException {
+		VirtualClock clock = new VirtualClock(1790000000000L, ZoneId.of("UTC"));
+		TimerRegistry onClock = new TimerRegistry(clock);
+		ControlServer other = new ControlServer(onClock, Runnable::run, 0);
+		try {
+			CountdownEngine typed = new CountdownEngine(clock), running = new CountdownEngine(clock);
+			onClock.register(1, typed);
+			onClock.register(2, running);
+			typed.enterDigit(4);		//as in the window, not through the API
+			typed.enterDigit(5);
+			running.enterDigit(9);
+			running.start();
+			clock.advance(TimeUnit.SECONDS.toNanos(2));
+			String body = bodyOf(other, "/timers");
+			assertTrue(body.contains("{\"id\":1,\"state\":\"IDLE\",\"remainingMillis\":45000}"), body);
+			assertTrue(body.contains("{\"id\":2,\"state\":\"RUNNING\",\"remainingMillis\":7000}"), body);
+		}
+		finally {
+			other.close();
+		}
+	}
+}
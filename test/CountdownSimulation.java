@@ -0,0 +1,188 @@
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Class: CountdownSimulation.java
+ *
+ *  This Class - Test harness that runs countdowns in simulated time, thousands of times faster than real time. The countdowns
+ *  share one TimingWheel on a VirtualClock, and the harness turns it frame by frame the way CountdownService does on every JavaFX
+ *  pulse: advance the wheel, then tick every engine for its display. Between frames the clock moves on by one frame period, plus
+ *  whatever disturbances are switched on:
+ *  jitter - a random extra delay of up to the given amount on every frame, like a busy JavaFX thread
+ *  stalls - now and then a frame held up for a long time, like a full GC
+ *  wall jumps - now and then the wall clock stepped forward or back without time passing, like NTP correcting the clock
+ *  suspends - now and then the machine sleeping: the wall clock moves on, the monotonic clock does not
+ *  Every expiry is recorded with how late it came against its deadline, and with the largest gap between two frames so far.
+ *  A countdown can only expire on a frame, so it is never early and never later than the frame gap it expired in, plus one tick
+ *  of the wheel.
+ */
+class CountdownSimulation {
+
+	static final long FRAME_NANOS = 16666667;		//60 frames a second
+	static final long WHEEL_TICK_NANOS = 1000000;	//as in CountdownService
+
+	/** One expiry of one countdown */
+	static final class Expiry {
+		final CountdownEngine engine;
+		final long deadlineNanos, firedNanos, frameGapNanos;
+
+		Expiry(CountdownEngine engine, long deadlineNanos, long firedNanos, long frameGapNanos) {
+			this.engine = engine;
+			this.deadlineNanos = deadlineNanos;
+			this.firedNanos = firedNanos;
+			this.frameGapNanos = frameGapNanos;
+		}
+
+		/** @return how late the countdown expired. Never negative unless it went off early. */
+		long errorNanos() {
+			return firedNanos - deadlineNanos;
+		}
+	}
+
+	private final VirtualClock clock;
+	private final TimingWheel wheel;
+	private final Random random, wallRandom;		//frame timing, and wall-clock steps and suspends, drawn apart so one does not change the other
+	private final List<CountdownEngine> engines = new ArrayList<>();
+	private final List<Expiry> expiries = new ArrayList<>();
+	private long jitterNanos, stallNanos, wallJumpNanos, suspendNanos;
+	private int stallEvery, wallJumpEvery, suspendEvery;
+	private long frames, lastFrameGap, wallJumped, suspended;
+
+	/**
+	 * Construct a simulation.
+	 * @param startMillis wall time to start at
+	 * @param seed seed for the random disturbances, so a failing run can be repeated
+	 */
+	CountdownSimulation(long startMillis, long seed) {
+		clock = new VirtualClock(startMillis, ZoneId.of("UTC"));
+		wheel = new TimingWheel(clock, WHEEL_TICK_NANOS);
+		random = new Random(seed);
+		wallRandom = new Random(~seed);
+	}
+
+	/** Add up to the given extra delay, at random, to every frame. */
+	CountdownSimulation withJitter(long maxNanos) {
+		jitterNanos = maxNanos;
+		return this;
+	}
+
+	/** Hold up about one frame in every given number by the given time. */
+	CountdownSimulation withStalls(int every, long nanos) {
+		stallEvery = every;
+		stallNanos = nanos;
+		return this;
+	}
+
+	/** Step the wall clock forward or back by up to the given time, about once every given number of frames. */
+	CountdownSimulation withWallJumps(int every, long maxNanos) {
+		wallJumpEvery = every;
+		wallJumpNanos = maxNanos;
+		return this;
+	}
+
+	/** Suspend the machine for up to the given time, about once every given number of frames. */
+	CountdownSimulation withSuspends(int every, long maxNanos) {
+		suspendEvery = every;
+		suspendNanos = maxNanos;
+		return this;
+	}
+
+	VirtualClock getClock() {
+		return clock;
+	}
+
+	TimingWheel getWheel() {
+		return wheel;
+	}
+
+	/** @return a new countdown on the simulation's wheel, whose expiries are recorded */
+	CountdownEngine newEngine() {
+		CountdownEngine engine = new CountdownEngine(wheel);
+		engine.addListener(new CountdownEngine.Listener() {
+			@Override
+			public void expired(CountdownEngine e) {
+				expiries.add(new Expiry(e, e.getDeadlineNanos(), clock.nanoTime(), lastFrameGap));
+			}
+		});
+		engines.add(engine);
+		return engine;
+	}
+
+	/** Type the given digits into an idle countdown, as the end user would. */
+	static void type(CountdownEngine engine, String digits) {
+		for(int i = 0; i < digits.length(); i++) engine.enterDigit(digits.charAt(i) - '0');
+	}
+
+	/**
+	 * Method: frame
+	 * Let one frame's worth of time pass, with any disturbances that are due, then turn the wheel and tick every countdown.
+	 */
+	void frame() {
+		long gap = FRAME_NANOS;
+		if(jitterNanos > 0) gap += (long) (random.nextDouble() * jitterNanos);
+		if(stallEvery > 0 && random.nextInt(stallEvery) == 0) gap += stallNanos;
+		clock.advance(gap);
+		lastFrameGap = gap;
+		if(wallJumpEvery > 0 && wallRandom.nextInt(wallJumpEvery) == 0) {
+			long jump = (long) ((wallRandom.nextDouble() * 2 - 1) * wallJumpNanos);
+			clock.jumpWall(jump);
+			wallJumped += Math.abs(jump);
+		}
+		if(suspendEvery > 0 && wallRandom.nextInt(suspendEvery) == 0) {
+			long sleep = (long) (wallRandom.nextDouble() * suspendNanos);
+			clock.suspend(sleep);
+			suspended += sleep;
+		}
+		wheel.advance(clock.nanoTime());
+		for(int i = 0; i < engines.size(); i++) engines.get(i).tick();
+		frames++;
+	}
+
+	/** Run frames until the given simulated time has passed. */
+	void runFor(long nanos) {
+		long end = clock.nanoTime() + nanos;
+		while(clock.nanoTime() < end) frame();
+	}
+
+	/**
+	 * Method: runUntilIdle
+	 * Run frames until no countdown is running any more.
+	 * @param limitNanos give up after this much simulated time
+	 * @return false if some countdown was still running at the limit
+	 */
+	boolean runUntilIdle(long limitNanos) {
+		long end = clock.nanoTime() + limitNanos;
+		while(!isIdle()) {
+			if(clock.nanoTime() >= end) return false;
+			frame();
+		}
+		return true;
+	}
+
+	/** @return true if no countdown is running */
+	boolean isIdle() {
+		for(int i = 0; i < engines.size(); i++) {
+			if(engines.get(i).isRunning()) return false;
+		}
+		return true;
+	}
+
+	List<Expiry> getExpiries() {
+		return expiries;
+	}
+
+	long getFrames() {
+		return frames;
+	}
+
+	/** @return total distance the wall clock was stepped, either way */
+	long getWallJumped() {
+		return wallJumped;
+	}
+
+	/** @return total time spent suspended */
+	long getSuspended() {
+		return suspended;
+	}
+}
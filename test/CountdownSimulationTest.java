@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Class: CountdownSimulationTest.java
+ *
+ *  This Class - Countdowns run in simulated time (see CountdownSimulation): started, paused, resumed and left to expire under
+ *  jitter, GC-like stalls, wall-clock steps and suspends. Checks the time left along the way and the expiry error, and the
+ *  duration of every input that can be typed, 000000 to 999999.
+ */
+public class CountdownSimulationTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1), MINUTE = 60 * SECOND, HOUR = 60 * MINUTE;
+	private static final long START_MILLIS = 1790000000000L;	//some time in 2026
+
+	/** A countdown may go off up to one frame (the one it expired in) plus one wheel tick late, and never early. */
+	private static void assertOnTime(CountdownSimulation.Expiry e) {
+		assertTrue(e.errorNanos() >= 0, "expired " + e.errorNanos() + " ns early");
+		assertTrue(e.errorNanos() < e.frameGapNanos + CountdownSimulation.WHEEL_TICK_NANOS,
+				"expired " + e.errorNanos() / 1e6 + " ms late in a frame of " + e.frameGapNanos / 1e6 + " ms");
+	}
+
+	@Test
+	public void startPauseResumeAndExpire() {
+		CountdownSimulation sim = new CountdownSimulation(START_MILLIS, 1);
+		CountdownEngine engine = sim.newEngine();
+		CountdownSimulation.type(engine, "0130");		//1 min 30 s
+		assertEquals(1, engine.getMin());
+		assertEquals(30, engine.getSec());
+		long started = sim.getClock().nanoTime();
+		assertTrue(engine.start());
+		assertEquals(90 * SECOND, engine.getRemainingNanos());
+
+		sim.runFor(30 * SECOND);
+		long elapsed = sim.getClock().nanoTime() - started;
+		assertEquals(90 * SECOND - elapsed, engine.getRemainingNanos());
+		assertEquals(0, engine.getMin());
+		assertEquals((90 * SECOND - elapsed) / SECOND, engine.getSec());		//the display follows on every frame
+
+		engine.pause();
+		long left = engine.getRemainingNanos();
+		sim.runFor(2 * HOUR);		//a long pause changes nothing
+		assertEquals(CountdownEngine.State.PAUSED, engine.getState());
+		assertEquals(left, engine.getRemainingNanos());
+		assertTrue(sim.getExpiries().isEmpty());
+
+		long resumed = sim.getClock().nanoTime();
+		assertTrue(engine.start());
+		assertEquals(resumed + left, engine.getDeadlineNanos());
+		assertTrue(sim.runUntilIdle(HOUR));
+		assertEquals(1, sim.getExpiries().size());
+		assertOnTime(sim.getExpiries().get(0));
+		assertEquals(CountdownEngine.State.IDLE, engine.getState());
+		assertEquals(0, engine.getRemainingNanos());
+	}
+
+	@Test
+	public void resetStopsTheCountdown() {
+		CountdownSimulation sim = new CountdownSimulation(START_MILLIS, 2);
+		CountdownEngine engine = sim.newEngine();
+		CountdownSimulation.type(engine, "10");
+		engine.start();
+		sim.runFor(5 * SECOND);
+		engine.reset();
+		sim.runFor(MINUTE);
+		assertTrue(sim.getExpiries().isEmpty());
+		assertEquals(0, sim.getWheel().size());		//nothing left behind on the wheel
+	}
+
+	@Test
+	public void tenHourCountdownEndsOnTimeUnderDisturbances() {
+		CountdownSimulation sim = new CountdownSimulation(START_MILLIS, 3)
+				.withJitter(4000000)						//up to 4 ms on every frame
+				.withStalls(20000, 400000000)				//a 400 ms stall every 5 minutes or so
+				.withWallJumps(50000, 30 * MINUTE)			//the wall clock stepped by up to half an hour now and then
+				.withSuspends(200000, HOUR);				//and the odd sleep of up to an hour
+		CountdownEngine engine = sim.newEngine();
+		CountdownSimulation.type(engine, "100000");
+		long started = sim.getClock().nanoTime();
+		long realStart = System.nanoTime();
+		engine.start();
+		assertTrue(sim.runUntilIdle(11 * HOUR));
+		long real = System.nanoTime() - realStart;
+
+		assertEquals(1, sim.getExpiries().size());
+		CountdownSimulation.Expiry e = sim.getExpiries().get(0);
+		assertOnTime(e);
+		assertEquals(started + 10 * HOUR, e.deadlineNanos);		//wall steps and sleeps do not move the deadline
+		assertTrue(sim.getWallJumped() > 0 && sim.getSuspended() > 0, "the disturbances did not happen");
+		double speed = (double) (e.firedNanos - started) / real;
+		assertTrue(speed > 1000, "simulated only " + (int) speed + " times faster than real time");
+	}
+
+	@Test
+	public void wallClockStepsAndSuspendsDoNotMoveCountdowns() {
+		List<Long> undisturbed = expiryTimes(new CountdownSimulation(START_MILLIS, 4).withJitter(3000000));
+		List<Long> disturbed = expiryTimes(new CountdownSimulation(START_MILLIS, 4).withJitter(3000000)
+				.withWallJumps(500, 2 * HOUR).withSuspends(700, 10 * HOUR));
+		assertEquals(undisturbed, disturbed);
+	}
+
+	/** Run a fixed set of countdowns to the end and return when each went off, in monotonic time */
+	private static List<Long> expiryTimes(CountdownSimulation sim) {
+		String[] inputs = { "5", "45", "130", "1000", "5959", "10000", "13000" };
+		for(String input : inputs) {
+			CountdownEngine engine = sim.newEngine();
+			CountdownSimulation.type(engine, input);
+			engine.start();
+		}
+		assertTrue(sim.runUntilIdle(2 * HOUR));
+		List<Long> times = new ArrayList<>();
+		for(CountdownSimulation.Expiry e : sim.getExpiries()) {
+			assertOnTime(e);
+			times.add(e.firedNanos);
+		}
+		assertEquals(inputs.length, times.size());
+		return times;
+	}
+
+	@Test
+	public void manyCountdownsPausedAndResumedRunForExactlyTheirDuration() {
+		CountdownSimulation sim = new CountdownSimulation(START_MILLIS, 5).withJitter(5000000).withStalls(3000, 250000000);
+		Random random = new Random(5);
+		Map<CountdownEngine, long[]> runTime = new HashMap<>();	//{ duration, time spent running, running since }
+		for(int i = 0; i < 200; i++) {
+			CountdownEngine engine = sim.newEngine();
+			int seconds = 1 + random.nextInt(2 * 3600);
+			CountdownSimulation.type(engine, String.format("%02d%02d%02d", seconds / 3600, seconds / 60 % 60, seconds % 60));
+			long[] run = { seconds * SECOND, 0, 0 };
+			runTime.put(engine, run);
+			engine.addListener(new CountdownEngine.Listener() {
+				@Override
+				public void stateChanged(CountdownEngine e, CountdownEngine.State state) {
+					long now = sim.getClock().nanoTime();
+					if(state == CountdownEngine.State.RUNNING) run[2] = now;
+					else run[1] += now - run[2];
+				}
+			});
+			engine.start();
+		}
+		/* Every ten seconds, pause some of the running countdowns and resume some of the paused ones */
+		long limit = sim.getClock().nanoTime() + 100 * HOUR;
+		while(sim.getExpiries().size() < 200 && sim.getClock().nanoTime() < limit) {
+			sim.runFor(10 * SECOND);
+			for(CountdownEngine engine : runTime.keySet()) {
+				if(engine.isRunning() && random.nextInt(10) == 0) engine.pause();
+				else if(engine.isPaused() && random.nextInt(3) == 0) engine.start();
+			}
+		}
+
+		assertEquals(200, sim.getExpiries().size());		//each one exactly once
+		for(CountdownSimulation.Expiry e : sim.getExpiries()) {
+			assertOnTime(e);
+			long[] run = runTime.get(e.engine);
+			long overrun = run[1] - run[0];
+			assertTrue(overrun >= 0 && overrun < e.frameGapNanos + CountdownSimulation.WHEEL_TICK_NANOS,
+					"ran " + overrun / 1e6 + " ms longer than its duration");
+		}
+	}
+
+	/**
+	 * Every input from 000000 to 999999 gives the duration its digits say, e.g. 00:90:00 is 90 minutes, and the display is put
+	 * right (01:30:00) when the countdown starts.
+	 */
+	@Test
+	public void everyTypedInputGivesTheRightDuration() {
+		VirtualClock clock = new VirtualClock(START_MILLIS, java.time.ZoneId.of("UTC"));
+		CountdownEngine engine = new CountdownEngine(clock);
+		for(int input = 0; input <= 999999; input++) {
+			engine.reset();
+			int hh = input / 10000, mm = input / 100 % 100, ss = input % 100;
+			for(int d = 100000; d > 0; d /= 10) engine.enterDigit(input / d % 10);
+			assertEquals(hh, engine.getHour());
+			assertEquals(mm, engine.getMin());
+			assertEquals(ss, engine.getSec());
+			long expected = (hh * 3600L + mm * 60L + ss) * SECOND;
+			if(expected == 0) {
+				assertFalse(engine.start());
+				continue;
+			}
+			assertTrue(engine.start());
+			assertEquals(expected, engine.getRemainingNanos(), "input " + input);
+			assertTrue(engine.getMin() <= 59 && engine.getSec() <= 59, "input " + input + " shown as " + engine.getHour() + ":"
+					+ engine.getMin() + ":" + engine.getSec());
+			assertEquals(expected, ((engine.getHour() * 60L + engine.getMin()) * 60 + engine.getSec()) * SECOND, "input " + input);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import javafx.event.Event;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Class: CountdownTimerSimulationTest.java
+ *
+ *  This Class - The countdown window and the clock face on a VirtualClock. A CountdownTimer is set by typed keys and its play
+ *  button, and run frame by frame the way CountdownService runs it on every pulse, checking what its display shows; a ClockPane
+ *  is taken across a daylight saving change, a wall-clock step and a suspend, checking the time it shows.
+ */
+public class CountdownTimerSimulationTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1), HOUR = 3600 * SECOND;
+	private static final long START_MILLIS = 1790000000000L;	//some time in 2026
+
+	private final VirtualClock clock = new VirtualClock(START_MILLIS, ZoneId.of("UTC"));
+	private final TimingWheel wheel = new TimingWheel(clock, CountdownSimulation.WHEEL_TICK_NANOS);
+	@TempDir
+	File dir;		//for the service's journal and history
+
+	/** Type the given digits into the window, as key events */
+	private static void type(CountdownTimer timer, String digits) {
+		for(int i = 0; i < digits.length(); i++) {
+			String c = digits.substring(i, i + 1);
+			Event.fireEvent(timer, new KeyEvent(KeyEvent.KEY_TYPED, c, "", KeyCode.UNDEFINED, false, false, false, false));
+		}
+	}
+
+	/** @return what the window shows, e.g. "00:01:30" */
+	private static String shown(CountdownTimer timer) {
+		return ((Label) ((HBox) timer.getCenter()).getChildren().get(0)).getText().trim();
+	}
+
+	/** The play / pause button */
+	private static Button playButton(CountdownTimer timer) {
+		return (Button) ((HBox) timer.getBottom()).getChildren().get(0);
+	}
+
+	/** Run frames for the given simulated time: turn the wheel, then refresh the display, as the service and the window do */
+	private void runFor(CountdownTimer timer, long nanos) {
+		long end = clock.nanoTime() + nanos;
+		while(clock.nanoTime() < end) {
+			clock.advance(CountdownSimulation.FRAME_NANOS);
+			wheel.advance(clock.nanoTime());
+			if(timer.getEngine().isRunning()) timer.getEngine().tick();
+		}
+	}
+
+	@Test
+	public void countdownWindowCountsDownPausesAndExpires() throws Exception {
+		FxTestSupport.runOnFx(() -> {
+			CountdownTimer timer = new CountdownTimer(new Stage(), new CountdownService(wheel, new PulseScheduler(), dir));
+			CountdownEngine engine = timer.getEngine();
+			assertEquals("00:00:00", shown(timer));
+			type(timer, "0130");
+			assertEquals("00:01:30", shown(timer));
+			type(timer, "x");		//not a digit
+			assertEquals("00:01:30", shown(timer));
+
+			playButton(timer).fire();
+			assertEquals(CountdownEngine.State.RUNNING, engine.getState());
+			assertEquals("||", playButton(timer).getText());
+			type(timer, "5");		//ignored while running
+			runFor(timer, 30 * SECOND);
+			assertEquals("00:00:59", shown(timer));		//30 s and a few frames gone, and the display counts whole seconds down
+
+			playButton(timer).fire();
+			assertEquals(CountdownEngine.State.PAUSED, engine.getState());
+			assertEquals(">", playButton(timer).getText());
+			long left = engine.getRemainingNanos();
+			runFor(timer, HOUR);
+			assertEquals(left, engine.getRemainingNanos());
+			assertEquals("00:00:59", shown(timer));
+
+			playButton(timer).fire();
+			runFor(timer, left - SECOND);
+			assertEquals(CountdownEngine.State.RUNNING, engine.getState());
+			assertEquals("00:00:00", shown(timer));		//the last second
+			runFor(timer, SECOND + CountdownSimulation.FRAME_NANOS);	//goes off on the first frame at or past the deadline
+			assertEquals(CountdownEngine.State.IDLE, engine.getState());	//expired and reset itself
+			assertEquals("00:00:00", shown(timer));
+			assertEquals(0, wheel.size());
+			timer.resetTimer();
+			return null;
+		});
+	}
+
+	@Test
+	public void resetWindowCanBeSetAgain() throws Exception {
+		FxTestSupport.runOnFx(() -> {
+			CountdownTimer timer = new CountdownTimer(new Stage(), new CountdownService(wheel, new PulseScheduler(), dir));
+			type(timer, "10");
+			playButton(timer).fire();
+			runFor(timer, 3 * SECOND);
+			timer.resetTimer();
+			assertEquals("00:00:00", shown(timer));
+			assertEquals(0, wheel.size());
+			type(timer, "2");
+			assertEquals("00:00:02", shown(timer));
+			timer.resetTimer();
+			return null;
+		});
+	}
+
+	@Test
+	public void clockFaceFollowsDaylightSavingStepsAndSuspends() throws Exception {
+		FxTestSupport.runOnFx(() -> {
+			VirtualClock berlin = new VirtualClock(1774745998000L, ZoneId.of("Europe/Berlin"));	//2026-03-29 00:59:58 UTC
+			ClockPane pane = new ClockPane();
+			pane.setTimeSource(berlin);
+			assertEquals(LocalTime.of(1, 59, 58), pane.getTime());		//CET, UTC+1
+
+			berlin.advance(3 * SECOND);
+			pane.setCurrentTime();
+			assertEquals(LocalTime.of(3, 0, 1), pane.getTime());		//summer time started: 02:00 CET is 03:00 CEST
+			assertFalse(pane.isPM());
+			assertEquals(3, pane.getHour());
+
+			berlin.jumpWall(-HOUR);		//wall clock stepped back over the change
+			pane.setCurrentTime();
+			assertEquals(LocalTime.of(1, 0, 1), pane.getTime());
+
+			berlin.suspend(11 * HOUR);	//asleep until the afternoon
+			pane.setCurrentTime();
+			assertEquals(LocalTime.of(13, 0, 1), pane.getTime());
+			assertTrue(pane.isPM());
+			assertEquals(1, pane.getHour());
+			return null;
+		});
+	}
+}
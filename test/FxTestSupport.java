@@ -0,0 +1,90 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.text.Text;
+import org.junit.jupiter.api.Assumptions;
+
+/** Class: FxTestSupport.java
+ *
+ *  This Class - Starts the JavaFX toolkit once for all tests in the JVM, and runs test code on the JavaFX thread. The build runs
+ *  the tests headless on Monocle (see the surefire argLine in pom.xml), so no display is needed.
+ */
+final class FxTestSupport {
+
+	/** Code to run on the JavaFX thread. May throw anything. */
+	interface FxCode<T> {
+		T call() throws Exception;
+	}
+
+	private static boolean started;
+	private static Boolean textLayout;		//whether JavaFX can lay out text here. null until checked.
+
+	private FxTestSupport() {}
+
+	/** Start the JavaFX toolkit, unless an earlier test already did. */
+	static synchronized void startToolkit() throws InterruptedException {
+		if(started) return;
+		CountDownLatch latch = new CountDownLatch(1);
+		Platform.startup(latch::countDown);
+		latch.await();
+		Platform.setImplicitExit(false);		//tests open and close windows; the toolkit must outlive them
+		started = true;
+	}
+
+	/**
+	 * Method: onFx
+	 * Run the given code on the JavaFX thread and wait for it, starting the toolkit if needed.
+	 * @return what the code returned. Whatever it threw is thrown here.
+	 */
+	static <T> T onFx(FxCode<T> code) throws Exception {
+		startToolkit();
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Platform.runLater(() -> {
+			try {
+				result.complete(code.call());
+			}
+			catch(Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+		try {
+			return result.get(30, TimeUnit.SECONDS);
+		}
+		catch(ExecutionException e) {
+			if(e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	/** Run the given code on the JavaFX thread and wait for it. */
+	static void runOnFx(FxCode<?> code) throws Exception {
+		onFx(code);
+	}
+
+	/**
+	 * Method: assumeTextLayout
+	 * Skip the calling test unless JavaFX can lay out text on this machine. On Linux that takes the host's pango library, even
+	 * headless. Without it, every pulse that lays out text throws, and the layout it broke off holds on to nodes: tests of what a
+	 * shown window paints or lets go of cannot pass.
+	 */
+	static synchronized void assumeTextLayout() throws Exception {
+		if(textLayout == null) textLayout = onFx(() -> {
+			try {
+				new Text("0").getLayoutBounds();
+				return true;
+			}
+			catch(LinkageError e) {		//UnsatisfiedLinkError, or NoClassDefFoundError once that has happened
+				return false;
+			}
+		});
+		Assumptions.assumeTrue(textLayout, "JavaFX cannot lay out text without the native pango library");
+	}
+
+	/** Wait until the JavaFX thread has worked through everything queued so far, e.g. results posted with Platform.runLater(). */
+	static void drain() throws Exception {
+		onFx(() -> null);
+	}
+}
@@ -0,0 +1,19 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** Class: JsonTest.java
+ *
+ *  This Class - Json.quote() on every character that has to be escaped, and on the ones that do not.
+ */
+public class JsonTest {
+
+	@Test
+	public void controlCharactersAreEscaped() {
+		assertEquals("\"a\\\"b\\\\c\"", Json.quote("a\"b\\c"));
+		assertEquals("\"\\n\\r\\t\\b\\f\"", Json.quote("\n\r\t\b\f"));
+		assertEquals("\"\\u0000\\u0001\\u001b\\u001f\"", Json.quote("\0\u0001\u001b\u001f"));
+		assertEquals("\" ~\u007fé☃\"", Json.quote(" ~\u007fé☃"));
+		assertEquals("\"null\"", Json.quote(null));
+	}
+}
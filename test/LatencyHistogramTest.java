@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Class: LatencyHistogramTest.java
+ *
+ *  This Class - Checks the percentiles of LatencyHistogram against the exact percentiles of the same values, sorted: never below
+ *  the true value, and at most one bucket (1/16 of the value) above it.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void emptyHistogramReportsZero() {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(99));
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getMean());
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(int v = 1; v <= 10; v++) h.record(v);
+		assertEquals(1, h.getPercentile(0));
+		assertEquals(5, h.getPercentile(50));
+		assertEquals(9, h.getPercentile(90));
+		assertEquals(10, h.getPercentile(100));
+		assertEquals(10, h.getMax());
+		assertEquals(5, h.getMean());	//55 / 10, rounded down
+	}
+
+	@Test
+	public void percentilesAreWithinOneBucketOfTheTruth() {
+		Random random = new Random(42);
+		long[] values = new long[100000];
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 7);	//1 us to 10 s, spread evenly over the orders of magnitude
+			h.record(values[i]);
+		}
+		Arrays.sort(values);
+		for(double p : new double[] { 1, 25, 50, 90, 99, 99.9, 99.99 }) {
+			long exact = values[(int) Math.ceil(values.length * p / 100) - 1];
+			long reported = h.getPercentile(p);
+			assertTrue(reported >= exact, "p" + p + " reported " + reported + " below the true " + exact);
+			assertTrue(reported <= exact + exact / 16 + 1, "p" + p + " reported " + reported + ", more than a bucket above " + exact);
+		}
+		assertEquals(values[values.length - 1], h.getMax());
+		assertEquals(values[values.length - 1], h.getPercentile(100));
+	}
+
+	@Test
+	public void percentileNeverExceedsMax() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(1000001);		//the bucket reaches well past it
+		assertEquals(1000001, h.getPercentile(50));
+		assertEquals(1000001, h.getPercentile(99));
+	}
+
+	@Test
+	public void extremeValuesFitTheBuckets() {
+		LatencyHistogram h = new LatencyHistogram();
+		h.record(Long.MAX_VALUE);
+		h.record(-5);		//counted as zero
+		assertEquals(2, h.getCount());
+		assertEquals(0, h.getPercentile(50));
+		assertEquals(Long.MAX_VALUE, h.getPercentile(100));
+	}
+
+	@Test
+	public void resetForgetsEverything() {
+		LatencyHistogram h = new LatencyHistogram();
+		for(int i = 0; i < 100; i++) h.record(i * 1000);
+		h.reset();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getPercentile(50));
+		h.record(7);
+		assertEquals(7, h.getPercentile(50));
+	}
+
+	@Test
+	public void concurrentRecordingLosesNothing() throws InterruptedException {
+		LatencyHistogram h = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for(int i = 0; i < 50000; i++) h.record(i);
+			});
+			threads[t].start();
+		}
+		for(Thread t : threads) t.join();
+		assertEquals(200000, h.getCount());
+		assertEquals(49999, h.getMax());
+	}
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Class: PulseSchedulerTest.java
+ *
+ *  This Class - How often a PulseScheduler wakes the JavaFX thread, in real time: handles falling due close together share one
+ *  wakeup, and a wakeup that was replaced after it had already fired is neither run nor counted.
+ */
+public class PulseSchedulerTest {
+
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** Busy-wait on the calling thread, so the JavaFX thread stays with the test meanwhile */
+	private static void spin(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while(System.nanoTime() < end) Thread.onSpinWait();
+	}
+
+	@Test
+	public void handlesDueTogetherShareAWakeup() throws Exception {
+		List<Long> runs = new ArrayList<>();
+		PulseScheduler scheduler = FxTestSupport.onFx(() -> {
+			PulseScheduler s = new PulseScheduler();
+			long first = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+			for(int i = 0; i < 10; i++) {
+				s.every(TimeUnit.SECONDS.toNanos(1), runs::add).startIn(first + i * MILLI - System.nanoTime());	//a millisecond apart
+			}
+			return s;
+		});
+		Thread.sleep(3500);
+		FxTestSupport.runOnFx(() -> {
+			/* Without coalescing, 30 wakeups. The first wakeup was arranged for the first handle alone and runs it by itself; from
+			 * then on all ten run together, once a second. */
+			assertEquals(30, runs.size());
+			assertTrue(new TreeSet<>(runs).size() <= 4, "separate wakeups: " + new TreeSet<>(runs).size());
+			assertEquals(2, new TreeSet<>(runs.subList(10, 30)).size());
+			assertEquals(1, scheduler.getWakeupsPerSecond());
+			return null;
+		});
+	}
+
+	@Test
+	public void staleWakeupIsIgnored() throws Exception {
+		List<Long> runs = new ArrayList<>();
+		PulseScheduler scheduler = FxTestSupport.onFx(() -> {
+			PulseScheduler s = new PulseScheduler();
+			PulseScheduler.Handle soon = s.every(TimeUnit.SECONDS.toNanos(10), now -> {});
+			soon.startIn(MILLI);
+			spin(50 * MILLI);		//its wakeup fires and queues up behind this
+			soon.stop();		//and is cancelled, too late
+			s.every(TimeUnit.SECONDS.toNanos(10), runs::add).startIn(300 * MILLI);
+			return s;
+		});
+		FxTestSupport.drain();		//the stale wakeup
+		Thread.sleep(600);
+		FxTestSupport.runOnFx(() -> {
+			assertEquals(1, runs.size());
+			assertEquals(1, scheduler.getWakeupsPerSecond(), "wakeups besides the one that ran the handle");
+			return null;
+		});
+	}
+}
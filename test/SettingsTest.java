@@ -0,0 +1,156 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Class: SettingsTest.java
+ *
+ *  This Class - Settings loaded and saved through a temporary directory. A queue stands in for the JavaFX thread, so the test
+ *  decides when the loaded values are handed over and can check that nothing is written before then.
+ */
+public class SettingsTest {
+
+	@TempDir
+	Path dir;
+
+	private final LinkedBlockingQueue<Runnable> fxQueue = new LinkedBlockingQueue<>();
+
+	/** Run the next task handed to the JavaFX thread, waiting for it if need be */
+	private void runNextOnFx() throws InterruptedException {
+		Runnable task = fxQueue.poll(10, TimeUnit.SECONDS);
+		assertTrue(task != null, "nothing was handed to the JavaFX thread");
+		task.run();
+	}
+
+	private File file() {
+		return dir.resolve("ClockAnimation.properties").toFile();
+	}
+
+	private void store(Properties props) throws IOException {
+		try(OutputStream out = new FileOutputStream(file())) {
+			props.store(out, null);
+		}
+	}
+
+	private Properties stored() throws IOException {
+		Properties props = new Properties();
+		try(InputStream in = new FileInputStream(file())) {
+			props.load(in);
+		}
+		return props;
+	}
+
+	/** Wait for the settings thread to write the file with the given value, for up to 10 seconds */
+	private Properties waitForWrite(String key, String value) throws Exception {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(!(file().exists() && value.equals(stored().getProperty(key)))) {
+			assertTrue(System.nanoTime() < end, "the settings were not written");
+			Thread.sleep(20);
+		}
+		return stored();
+	}
+
+	@Test
+	public void loadedValuesAreAppliedOnTheFxThread() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("version", "1");
+		props.setProperty("alwaysOnTop", "true");
+		props.setProperty("theme", ClockPane.THEME_DARK);
+		props.setProperty("timer.durations", "90,3600");
+		props.setProperty("window.x", "12.5");
+		props.setProperty("window.y", "40");
+		store(props);
+
+		Settings settings = new Settings(file(), dir.resolve("ClockAnimation.sav").toFile(), fxQueue::add);
+		Settings[] callback = new Settings[1];
+		settings.load(loaded -> callback[0] = loaded);
+		Thread.sleep(100);		//time enough to read the file
+		assertFalse(settings.isLoaded());
+		assertFalse(settings.isAlwaysOnTop());		//nothing changes off the JavaFX thread
+		assertEquals(ClockPane.THEME_CLASSIC, settings.getTheme());
+
+		runNextOnFx();
+		assertTrue(settings.isLoaded());
+		assertTrue(callback[0] == settings);
+		assertTrue(settings.isAlwaysOnTop());
+		assertEquals(ClockPane.THEME_DARK, settings.getTheme());
+		assertEquals(Arrays.asList(90, 3600), settings.getTimerDurations());
+		assertEquals(12.5, settings.getWindowX());
+		assertEquals(40, settings.getWindowY());
+		settings.setTheme(ClockPane.THEME_CLASSIC);
+		settings.close();
+		waitForWrite("theme", ClockPane.THEME_CLASSIC);		//the last write, done on the way out
+	}
+
+	@Test
+	public void changesBeforeLoadDoNotOverwriteTheFile() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("theme", ClockPane.THEME_DARK);
+		props.setProperty("sweep", "true");
+		store(props);		//without a version, as written by no version of Settings
+		String before = new String(Files.readAllBytes(file().toPath()), "ISO-8859-1");
+
+		Settings settings = new Settings(file(), dir.resolve("ClockAnimation.sav").toFile(), fxQueue::add);
+		settings.load(loaded -> {});
+		settings.setWindowPosition(100, 200);		//e.g. the window placed while the file is still being read
+		settings.changed();
+		Thread.sleep(1000);		//twice the write delay
+		assertEquals(before, new String(Files.readAllBytes(file().toPath()), "ISO-8859-1"));
+
+		runNextOnFx();		//loaded: the write that was held back goes ahead, with the loaded values
+		Properties saved = waitForWrite("version", String.valueOf(Settings.VERSION));
+		assertEquals(ClockPane.THEME_DARK, saved.getProperty("theme"));
+		assertEquals("true", saved.getProperty("sweep"));
+		settings.setSweep(false);
+		settings.close();
+		waitForWrite("sweep", "false");
+	}
+
+	@Test
+	public void closeBeforeLoadLeavesTheFileAlone() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("alwaysOnTop", "true");
+		store(props);
+		String before = new String(Files.readAllBytes(file().toPath()), "ISO-8859-1");
+
+		Settings settings = new Settings(file(), dir.resolve("ClockAnimation.sav").toFile(), fxQueue::add);
+		boolean[] called = new boolean[1];
+		settings.load(loaded -> called[0] = true);
+		settings.close();		//e.g. the window closed straight away
+		Thread.sleep(200);
+		assertEquals(before, new String(Files.readAllBytes(file().toPath()), "ISO-8859-1"));
+		assertEquals("true", stored().getProperty("alwaysOnTop"));
+		for(Runnable task; (task = fxQueue.poll()) != null; ) task.run();		//a hand-over that got out before close()
+		assertFalse(settings.isLoaded());
+		assertFalse(called[0]);
+		assertFalse(settings.isAlwaysOnTop());
+	}
+
+	@Test
+	public void legacyFileIsMigrated() throws Exception {
+		File legacy = dir.resolve("ClockAnimation.sav").toFile();
+		Files.write(legacy.toPath(), "true\n".getBytes("ISO-8859-1"));
+		Settings settings = new Settings(file(), legacy, fxQueue::add);
+		settings.load(loaded -> {});
+		runNextOnFx();
+		assertTrue(settings.isAlwaysOnTop());
+		waitForWrite("alwaysOnTop", "true");
+		settings.setAlwaysOnTop(false);
+		settings.close();
+		waitForWrite("alwaysOnTop", "false");
+	}
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/** Class: TimeFormatterTest.java
+ *
+ *  This Class - TimeFormatter against the String.format() calls it replaced, for the templates the clock and the timers use and
+ *  for values at the edges: negative, wider than their field, Integer.MIN_VALUE and MAX_VALUE.
+ */
+public class TimeFormatterTest {
+
+	private static final int[] VALUES = { 0, 7, 59, 99, 100, 999, 1000, 123456, Integer.MAX_VALUE,
+			-1, -7, -59, -99, -100, -123456, Integer.MIN_VALUE };
+
+	@Test
+	public void clockDigitsMatchStringFormat() {
+		TimeFormatter fmt = new TimeFormatter("00:00:00 ");
+		for(int h : VALUES) {
+			for(int m : VALUES) {
+				fmt.set(0, h);
+				fmt.set(1, m);
+				fmt.set(2, -m);
+				fmt.setSuffix(h < 0 ? "PM" : "AM");
+				assertEquals(String.format("%02d:%02d:%02d %s", h, m, -m, h < 0 ? "PM" : "AM"), fmt.toString());
+			}
+		}
+	}
+
+	@Test
+	public void millisecondsAndDatesMatchStringFormat() {
+		TimeFormatter millis = new TimeFormatter("000");
+		TimeFormatter date = new TimeFormatter("Today: 00/00/0000");
+		for(int v : VALUES) {
+			millis.set(0, v);
+			assertEquals(String.format("%03d", v), millis.toString());
+			date.set(0, 12);
+			date.set(1, 31);
+			date.set(2, v);
+			assertEquals(String.format("Today: %02d/%02d/%04d", 12, 31, v), date.toString());
+		}
+	}
+
+	@Test
+	public void textIsOnlyRebuiltWhenAValueChanges() {
+		TimeFormatter fmt = new TimeFormatter("00:00:00 ");
+		assertTrue(fmt.set(0, 9) | fmt.set(1, 5) | fmt.set(2, 0) | fmt.setSuffix("AM"));
+		String text = fmt.toString();
+		assertEquals("09:05:00 AM", text);
+		assertFalse(fmt.set(0, 9) | fmt.set(1, 5) | fmt.set(2, 0) | fmt.setSuffix("AM"));
+		assertSame(text, fmt.toString());
+		assertTrue(fmt.set(2, -1));
+		assertEquals("09:05:-1 AM", fmt.toString());
+	}
+}
@@ -0,0 +1,158 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Class: TimerJournalTest.java
+ *
+ *  This Class - Countdowns written to a TimerJournal in a temporary directory and read back by a new one, as after a restart:
+ *  notes of any size, journals compacted along the way, a record torn by a crash, and an intact record of a state there is not.
+ */
+public class TimerJournalTest {
+
+	@TempDir
+	Path dir;
+
+	private File file() {
+		return dir.resolve("ClockAnimation.journal").toFile();
+	}
+
+	/** Load the journal as a restarted application would, and close it again */
+	private List<TimerJournal.Entry> reload() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		CompletableFuture<Collection<TimerJournal.Entry>> loaded = new CompletableFuture<>();
+		journal.load(loaded::complete);
+		List<TimerJournal.Entry> entries = new ArrayList<>(loaded.get(10, TimeUnit.SECONDS));
+		journal.close();
+		return entries;
+	}
+
+	/** A note of the given length, with 1, 2, 3 and 4 byte UTF-8 characters in it */
+	private static String note(int chars) {
+		StringBuilder note = new StringBuilder(chars);
+		String pattern = "aé€🔔";		//a, e acute, euro, bell (two chars)
+		while(note.length() < chars) note.append(pattern);
+		note.setLength(chars);
+		if(Character.isHighSurrogate(note.charAt(chars - 1))) note.setCharAt(chars - 1, '!');	//no half characters
+		return note.toString();
+	}
+
+	@Test
+	public void notesLongerThan64KbAreKept() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		journal.load(entries -> {});
+		String note = note(100000);		//about 250 KB of UTF-8, far more than writeUTF() takes
+		journal.record(new TimerJournal.Entry(1, CountdownEngine.State.PAUSED, 90000, "coolNotes", note));
+		journal.record(new TimerJournal.Entry(2, CountdownEngine.State.RUNNING, 1790000000000L, "bell", "short"));
+		journal.close();
+
+		List<TimerJournal.Entry> entries = reload();
+		assertEquals(2, entries.size());
+		assertEquals(note, entries.get(0).note);
+		assertEquals(90000, entries.get(0).time);
+		assertEquals("short", entries.get(1).note);
+		assertEquals("bell", entries.get(1).alarmSound);
+	}
+
+	@Test
+	public void overlongNotesAreCutWithoutSplittingACharacter() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		journal.load(entries -> {});
+		String note = note(TimerJournal.MAX_NOTE_CHARS + 1001);		//a bell straddles the limit
+		journal.record(new TimerJournal.Entry(1, CountdownEngine.State.PAUSED, 5000, "coolNotes", note));
+		journal.close();
+
+		String saved = reload().get(0).note;
+		assertTrue(saved.length() <= TimerJournal.MAX_NOTE_CHARS && saved.length() >= TimerJournal.MAX_NOTE_CHARS - 1);
+		assertEquals(note.substring(0, saved.length()), saved);
+		assertTrue(!Character.isHighSurrogate(saved.charAt(saved.length() - 1)));
+	}
+
+	@Test
+	public void compactionKeepsTheLiveCountdowns() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		journal.load(entries -> {});
+		for(int i = 0; i < 1000; i++) {
+			journal.record(new TimerJournal.Entry(i % 10, CountdownEngine.State.PAUSED, i, "coolNotes", note(1000 + i)));
+			if(i % 10 == 9 && i < 990) journal.record(new TimerJournal.Entry(i % 10, CountdownEngine.State.IDLE, 0, "", ""));
+		}
+		journal.close();
+		assertTrue(file().length() < 1000000, "not compacted: " + file().length() + " bytes");		//all of it would be 2.7 MB
+
+		List<TimerJournal.Entry> entries = reload();
+		assertEquals(10, entries.size());
+		for(TimerJournal.Entry e : entries) {
+			assertEquals(990 + e.id, e.time);
+			assertEquals(note(1000 + (int) e.time), e.note);
+		}
+	}
+
+	@Test
+	public void recordWithAnUnknownStateEndsTheJournal() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		journal.load(entries -> {});
+		journal.record(new TimerJournal.Entry(1, CountdownEngine.State.PAUSED, 1000, "coolNotes", "kept"));
+		journal.close();
+		long whole = file().length();
+		try(FileOutputStream out = new FileOutputStream(file(), true)) {
+			writeRecord(out, 2, 0x40 | 9, 1000, "coolNotes", "dropped");	//intact, but no such state
+			writeRecord(out, 3, CountdownEngine.State.PAUSED.ordinal(), 1000, "coolNotes", "after it");	//no record without the flag
+		}
+
+		List<TimerJournal.Entry> entries = reload();
+		assertEquals(1, entries.size());
+		assertEquals("kept", entries.get(0).note);
+		assertEquals(whole, file().length());
+	}
+
+	@Test
+	public void tornRecordIsDropped() throws Exception {
+		TimerJournal journal = new TimerJournal(file());
+		journal.load(entries -> {});
+		journal.record(new TimerJournal.Entry(1, CountdownEngine.State.PAUSED, 1000, "coolNotes", "kept"));
+		journal.close();
+		long whole = file().length();
+		try(FileOutputStream out = new FileOutputStream(file(), true)) {
+			out.write(new byte[] { 0, 0, 1, 0, 42 });		//the start of a record the crash cut short
+		}
+
+		List<TimerJournal.Entry> entries = reload();
+		assertEquals(1, entries.size());
+		assertEquals("kept", entries.get(0).note);
+		assertEquals(whole, file().length());
+	}
+
+	/** Write a record with an intact length and CRC, and the given state byte */
+	private static void writeRecord(FileOutputStream out, long id, int kind, long time, String sound, String note) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream rec = new DataOutputStream(payload);
+		rec.writeLong(id);
+		rec.writeByte(kind);
+		rec.writeLong(time);
+		for(String string : new String[] { sound, note }) {
+			byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+			rec.writeInt(utf8.length);
+			rec.write(utf8);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload.toByteArray());
+		DataOutputStream frame = new DataOutputStream(out);
+		frame.writeInt(payload.size());
+		payload.writeTo(frame);
+		frame.writeInt((int) crc.getValue());
+	}
+}
@@ -0,0 +1,120 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/** Class: TimingWheelTest.java
+ *
+ *  This Class - A TimingWheel on a VirtualClock against a plain list of deadlines: tasks spread from a millisecond to weeks out,
+ *  some cancelled, some scheduled from inside a running task, with the clock moved on by frames and by jumps of hours and days.
+ *  Every task must run exactly once, on the first advance() at or after the tick holding its deadline.
+ */
+public class TimingWheelTest {
+
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1), FRAME = 16666667;
+
+	private final VirtualClock clock = new VirtualClock(1790000000000L, ZoneId.of("UTC"));
+	private final long origin = clock.nanoTime();
+	private final TimingWheel wheel = new TimingWheel(clock, TICK);
+	private final Random random = new Random(7);
+	private final List<Task> tasks = new ArrayList<>();
+
+	private final class Task implements Runnable {
+		final long deadline;
+		TimingWheel.Timeout timeout;
+		boolean cancelled;
+		int runs;
+		long ranAt;
+
+		Task(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void run() {
+			runs++;
+			ranAt = clock.nanoTime();
+			if(random.nextInt(4) == 0) schedule(randomDelay());		//as a countdown restarted when it expires
+		}
+	}
+
+	private Task schedule(long delay) {
+		Task task = new Task(clock.nanoTime() + delay);
+		task.timeout = wheel.schedule(task.deadline, task);
+		tasks.add(task);
+		return task;
+	}
+
+	/** Anything from a tick to three weeks, most of them short */
+	private long randomDelay() {
+		switch(random.nextInt(3)) {
+		case 0: return 1 + random.nextInt((int) (64 * TICK));
+		case 1: return 1 + (long) (random.nextDouble() * TimeUnit.HOURS.toNanos(2));
+		default: return 1 + (long) (random.nextDouble() * TimeUnit.DAYS.toNanos(21));
+		}
+	}
+
+	/** Move the clock on, advance the wheel, and check every task against its deadline */
+	private void step(long nanos) {
+		clock.advance(nanos);
+		long now = clock.nanoTime();
+		int due = 0;
+		for(Task t : tasks) {
+			if(t.runs == 0 && !t.cancelled && Math.floorDiv(now - origin, TICK) >= Math.floorDiv(t.deadline - origin + TICK - 1, TICK)) due++;
+		}
+		assertEquals(due, wheel.advance(now));		//a cancelled task is off the wheel at once, so it is never counted
+		for(Task t : tasks) {
+			boolean reached = Math.floorDiv(now - origin, TICK) >= Math.floorDiv(t.deadline - origin + TICK - 1, TICK);
+			if(t.cancelled) assertEquals(0, t.runs);
+			else if(reached) {
+				assertEquals(1, t.runs, "task due at " + t.deadline);
+				assertTrue(t.ranAt >= t.deadline, "ran early");
+			}
+			else assertEquals(0, t.runs, "task due at " + t.deadline + " ran at " + now);
+		}
+	}
+
+	@Test
+	public void everyTaskRunsOnceOnTimeThroughFramesAndJumps() {
+		for(int i = 0; i < 2000; i++) schedule(randomDelay());
+		for(int round = 0; round < 400; round++) {
+			switch(random.nextInt(5)) {
+			case 0: step(TimeUnit.HOURS.toNanos(1 + random.nextInt(12))); break;	//asleep, or hidden
+			case 1: step(TimeUnit.DAYS.toNanos(1)); break;
+			default: step(FRAME * (1 + random.nextInt(8))); break;
+			}
+			for(int i = 0; i < 5; i++) schedule(randomDelay());
+			Task victim = tasks.get(random.nextInt(tasks.size()));
+			if(victim.runs == 0 && !victim.cancelled) {
+				victim.timeout.cancel();
+				victim.cancelled = true;
+			}
+		}
+		step(TimeUnit.DAYS.toNanos(30));		//everything is due by now, except what the last tasks started again
+		int pending = 0;
+		for(Task t : tasks) {
+			if(t.runs == 0 && !t.cancelled) pending++;
+		}
+		assertEquals(pending, wheel.size());
+	}
+
+	@Test
+	public void longJumpRunsOnlyWhatIsDue() {
+		Task soon = schedule(TimeUnit.SECONDS.toNanos(5));
+		Task later = schedule(TimeUnit.DAYS.toNanos(400));
+		Task never = schedule(TimeUnit.DAYS.toNanos(300));
+		never.timeout.cancel();
+		never.cancelled = true;
+		step(TimeUnit.DAYS.toNanos(365));		//one advance() over 31.5 billion ticks
+		assertEquals(1, soon.runs);
+		assertEquals(0, later.runs);
+		assertEquals(1, wheel.size());
+		step(TimeUnit.DAYS.toNanos(35));
+		assertEquals(1, later.runs);
+	}
+}